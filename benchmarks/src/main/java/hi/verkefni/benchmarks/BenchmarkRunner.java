@@ -0,0 +1,48 @@
+package hi.verkefni.benchmarks;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once for each thread count and writes all results to
+ * one JSON file, so runs can be compared to find regressions.
+ *
+ * The usual JMH command line options are accepted, e.g. a benchmark name
+ * filter or -p flights=10000 -p seatsPerFlight=100. Thread counts are set
+ * with -Dbench.threads=1,4,8 and the output file with -Dbench.result=...
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, FileNotFoundException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String[] threadCounts = System.getProperty("bench.threads", "1,4,8").split(",");
+        String resultFile = System.getProperty("bench.result", "target/benchmark-results.json");
+
+        List<RunResult> results = new ArrayList<>();
+        for (String threadCount : threadCounts) {
+            Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .threads(Integer.parseInt(threadCount.trim()))
+                .build();
+            Collection<RunResult> run = new Runner(options).run();
+            results.addAll(run);
+        }
+
+        try (PrintStream out = new PrintStream(resultFile)) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("Results written to " + resultFile);
+    }
+}
@@ -0,0 +1,86 @@
+package hi.verkefni.benchmarks;
+
+import hi.verkefni.vidmot.BookingController;
+import hi.verkefni.vidmot.CustomerController;
+import hi.verkefni.vidmot.FlightController;
+import hi.verkefni.vinnsla.Booking;
+import hi.verkefni.vinnsla.Customer;
+import hi.verkefni.vinnsla.Flight;
+import hi.verkefni.vinnsla.Seat;
+import hi.verkefni.vinnsla.SeatInventory;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingControllerBenchmark {
+
+    /**
+     * The controllers wired up the same way as in FlightBookerApplication
+     */
+    @State(Scope.Benchmark)
+    public static class Controllers {
+        BookingController bookingController;
+        private final AtomicInteger nextSeat = new AtomicInteger();
+        private PrintStream out;
+
+        @Setup(Level.Trial)
+        public void setUp(DatabaseState db) {
+            FlightController flightController = new FlightController(db.flightDB);
+            CustomerController customerController = new CustomerController(db.customerDB);
+            SeatInventory seatInventory = new SeatInventory(db.bookingDB);
+            seatInventory.recover();
+            bookingController = new BookingController(db.bookingDB, flightController, customerController, seatInventory);
+
+            // createBooking logs every booking, which would otherwise be measured as well
+            out = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.setOut(out);
+        }
+
+        /**
+         * @return The next free seat, every seat in the dataset is handed out once
+         */
+        int nextSeat(DatabaseState db) {
+            int seat = nextSeat.getAndIncrement();
+            if (seat >= db.flights * db.seatsPerFlight) {
+                throw new IllegalStateException("All seats in the dataset are booked, use a larger dataset");
+            }
+            return seat;
+        }
+    }
+
+    @Benchmark
+    public Booking createBooking(DatabaseState db, Controllers controllers) {
+        int seat = controllers.nextSeat(db);
+        int flightIndex = seat / db.seatsPerFlight;
+        String flightNumber = Dataset.flightNumber(flightIndex);
+
+        Customer customer = new Customer(Dataset.customerId(seat % db.customers), null, null, null);
+        Flight flight = new Flight(flightNumber, Dataset.origin(flightIndex), Dataset.destination(flightIndex),
+                                   Dataset.departure(flightIndex), Dataset.departure(flightIndex).plusHours(2));
+        return controllers.bookingController.createBooking(customer, flight,
+            new Seat(Dataset.seatNumber(seat % db.seatsPerFlight), false, flightNumber));
+    }
+}
@@ -0,0 +1,157 @@
+package hi.verkefni.benchmarks;
+
+import hi.verkefni.vinnsla.Booking;
+import hi.verkefni.vinnsla.GroupCommitPolicy;
+import hi.verkefni.vinnsla.Seat;
+import hi.verkefni.vinnsla.SeatConflictException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingDBBenchmark {
+
+    /**
+     * Hands out every seat of the dataset in order across all threads,
+     * starting over from the first seat once every seat has been booked
+     */
+    @State(Scope.Benchmark)
+    public static class SeatSequence {
+        private final AtomicInteger next = new AtomicInteger();
+
+        int nextSeat(DatabaseState db) {
+            return next.getAndIncrement() % (db.flights * db.seatsPerFlight);
+        }
+    }
+
+    /**
+     * Group commit through a BookingWriter, or one transaction per booking when batchSize is 0
+     */
+    @State(Scope.Benchmark)
+    public static class GroupCommit {
+        @Param({"0", "8", "32"})
+        public int batchSize;
+
+        @Setup(Level.Trial)
+        public void setUp(DatabaseState db) {
+            if (batchSize > 0) {
+                GroupCommitPolicy defaults = GroupCommitPolicy.defaults();
+                db.bookingDB.startGroupCommit(new GroupCommitPolicy(batchSize, defaults.getMaxDelayMillis(),
+                                                                    defaults.getQueueCapacity()));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown(DatabaseState db) {
+            db.bookingDB.stopGroupCommit();
+        }
+    }
+
+    /**
+     * One booking per thread, moved to a new seat on every update
+     */
+    @State(Scope.Thread)
+    public static class ThreadBooking {
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        Booking booking;
+        int flightIndex;
+        int seatIndex;
+
+        @Setup(Level.Trial)
+        public void setUp(DatabaseState db) {
+            // Each thread moves around its own flight, so the updates only fight over seats
+            // when there are more threads than flights
+            int thread = threads.getAndIncrement();
+            flightIndex = thread % db.flights;
+            seatIndex = thread / db.flights;
+            while (true) {
+                booking = new Booking("U" + thread, Dataset.customerId(0), Dataset.flightNumber(flightIndex),
+                                      Dataset.seatNumber(seatIndex % db.seatsPerFlight));
+                try {
+                    db.bookingDB.insert(booking);
+                    return;
+                } catch (SeatConflictException e) {
+                    seatIndex++;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Seat> getAvailableSeats(DatabaseState db) {
+        int flightIndex = ThreadLocalRandom.current().nextInt(db.flights);
+        return db.bookingDB.getAvailableSeats(Dataset.flightNumber(flightIndex));
+    }
+
+    @Benchmark
+    public Booking insert(DatabaseState db, SeatSequence seats) {
+        return book(db, seats);
+    }
+
+    /**
+     * Bookings per second with and without group commit. Group commit only
+     * pays off with many threads booking at once, so run it at several
+     * thread counts: -Dbench.threads=1,16,64 BookingDBBenchmark.insertGroupCommit
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Booking insertGroupCommit(DatabaseState db, SeatSequence seats, GroupCommit groupCommit) {
+        return book(db, seats);
+    }
+
+    // Books the next seat of the sequence
+    private static Booking book(DatabaseState db, SeatSequence seats) {
+        int seat = seats.nextSeat(db);
+        // One booking ID per seat, so the booking left from the last round through the seats can be found
+        Booking booking = new Booking("I" + seat,
+                                      Dataset.customerId(seat % db.customers),
+                                      Dataset.flightNumber(seat / db.seatsPerFlight),
+                                      Dataset.seatNumber(seat % db.seatsPerFlight));
+        while (true) {
+            try {
+                db.bookingDB.insert(booking);
+                return booking;
+            } catch (SeatConflictException e) {
+                // Every seat has been booked, free this one again
+                db.bookingDB.delete(booking.getBookingId());
+            }
+        }
+    }
+
+    @Benchmark
+    public Booking update(DatabaseState db, ThreadBooking thread) {
+        Booking booking = thread.booking;
+        booking.setBookingDate(LocalDateTime.now());
+        while (true) {
+            thread.seatIndex = (thread.seatIndex + 1) % db.seatsPerFlight;
+            booking.setSeatNumber(Dataset.seatNumber(thread.seatIndex));
+            try {
+                db.bookingDB.update(booking);
+                return booking;
+            } catch (SeatConflictException e) {
+                // Another thread on the same flight has the seat, try the next one
+            }
+        }
+    }
+}
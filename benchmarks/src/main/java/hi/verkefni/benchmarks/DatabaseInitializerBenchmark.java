@@ -0,0 +1,77 @@
+package hi.verkefni.benchmarks;
+
+import hi.verkefni.vinnsla.DatabaseInitializer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Application startup: bringing the database up to date from the scripts
+ * in db/, either for a fresh install without a database file or for a
+ * database that is already up to date. Each thread uses its own file.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class DatabaseInitializerBenchmark {
+    private static final String SCRIPTS_DIR = System.getProperty("bench.scripts", "../db");
+
+    private Path dbFile;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dbFile = Files.createTempFile("flightbooker-init", ".db");
+        Files.delete(dbFile);
+    }
+
+    // A second database, already initialized before the measurement
+    @State(Scope.Thread)
+    public static class ExistingDatabase {
+        private Path dbFile;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dbFile = Files.createTempFile("flightbooker-existing", ".db");
+            Files.delete(dbFile);
+            DatabaseInitializer.initialize(dbFile.toString(), SCRIPTS_DIR);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(dbFile);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dbFile);
+        Files.deleteIfExists(Path.of(dbFile + "-wal"));
+        Files.deleteIfExists(Path.of(dbFile + "-shm"));
+    }
+
+    @Benchmark
+    public void initialize() {
+        DatabaseInitializer.initialize(dbFile.toString(), SCRIPTS_DIR);
+    }
+
+    @Benchmark
+    public void initializeExisting(ExistingDatabase existing) {
+        DatabaseInitializer.initialize(existing.dbFile.toString(), SCRIPTS_DIR);
+    }
+}
@@ -0,0 +1,56 @@
+package hi.verkefni.benchmarks;
+
+import hi.verkefni.vinnsla.BookingDB;
+import hi.verkefni.vinnsla.ConnectionProvider;
+import hi.verkefni.vinnsla.CustomerDB;
+import hi.verkefni.vinnsla.FlightDB;
+import hi.verkefni.vinnsla.StorageMode;
+import java.io.IOException;
+import java.sql.SQLException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A generated database shared by all benchmark threads, opened through the
+ * same connection provider setup as the application uses.
+ * The dataset size is set with -p flights=... -p seatsPerFlight=...
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+    @Param({"10000"})
+    public int flights;
+
+    @Param({"100"})
+    public int seatsPerFlight;
+
+    @Param({"1000"})
+    public int customers;
+
+    public Dataset dataset;
+    public ConnectionProvider connectionProvider;
+    public FlightDB flightDB;
+    public BookingDB bookingDB;
+    public CustomerDB customerDB;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        dataset = Dataset.generate(flights, seatsPerFlight, customers);
+        connectionProvider = new ConnectionProvider(dataset.getUrl());
+        connectionProvider.setStorageMode(StorageMode.WAL);
+        connectionProvider.warmUp();
+
+        flightDB = new FlightDB(connectionProvider);
+        bookingDB = new BookingDB(connectionProvider);
+        customerDB = new CustomerDB(connectionProvider);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connectionProvider.shutdown();
+        dataset.delete();
+    }
+}
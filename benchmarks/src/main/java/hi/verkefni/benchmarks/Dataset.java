@@ -0,0 +1,175 @@
+package hi.verkefni.benchmarks;
+
+import hi.verkefni.vinnsla.MigrationRunner;
+import hi.verkefni.vinnsla.Timestamps;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Generated database for the benchmarks.
+ *
+ * Flights are spread evenly over the routes between a fixed set of airports
+ * and over DAYS days, so every (origin, destination, day) search finds about
+ * the same number of flights. Every flight gets the same seat layout, with
+ * four seats per row (1A, 1B, 1C, 1D, 2A, ...) and all seats free.
+ */
+public class Dataset {
+    public static final String[] AIRPORTS = {
+        "Reykjavík", "Akureyri", "Egilsstaðir", "Ísafjörður", "Vestmannaeyjar",
+        "London", "Kaupmannahöfn", "Osló", "París", "Berlín"
+    };
+    public static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+    public static final int DAYS = 30;
+    public static final String MIGRATIONS_DIR = System.getProperty("bench.migrations", "../db/migrations");
+    private static final int BATCH_SIZE = 10_000;
+
+    private final Path file;
+    private final int flights;
+    private final int seatsPerFlight;
+    private final int customers;
+
+    private Dataset(Path file, int flights, int seatsPerFlight, int customers) {
+        this.file = file;
+        this.flights = flights;
+        this.seatsPerFlight = seatsPerFlight;
+        this.customers = customers;
+    }
+
+    /**
+     * Creates a new database file in the temp directory, migrated to the
+     * latest schema and filled with generated data
+     */
+    public static Dataset generate(int flights, int seatsPerFlight, int customers) throws IOException, SQLException {
+        Path file = Files.createTempFile("flightbooker-bench", ".db");
+        Dataset dataset = new Dataset(file, flights, seatsPerFlight, customers);
+
+        try (Connection conn = DriverManager.getConnection(dataset.getUrl())) {
+            new MigrationRunner(conn, MIGRATIONS_DIR).migrate();
+
+            conn.setAutoCommit(false);
+            dataset.insertFlights(conn);
+            dataset.insertSeats(conn);
+            dataset.insertCustomers(conn);
+            conn.commit();
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+        }
+        return dataset;
+    }
+
+    public static String flightNumber(int index) {
+        return String.format("%05d", index);
+    }
+
+    public static String seatNumber(int index) {
+        return (index / 4 + 1) + String.valueOf((char) ('A' + index % 4));
+    }
+
+    public static String customerId(int index) {
+        return String.format("C%05d", index);
+    }
+
+    public static String origin(int flightIndex) {
+        return AIRPORTS[flightIndex % AIRPORTS.length];
+    }
+
+    public static String destination(int flightIndex) {
+        // Never the same as the origin
+        int offset = 1 + (flightIndex / AIRPORTS.length) % (AIRPORTS.length - 1);
+        return AIRPORTS[(flightIndex + offset) % AIRPORTS.length];
+    }
+
+    public static LocalDateTime departure(int flightIndex) {
+        int routes = AIRPORTS.length * (AIRPORTS.length - 1);
+        int day = (flightIndex / routes) % DAYS;
+        int minute = (flightIndex * 7) % (24 * 60);
+        return FIRST_DAY.plusDays(day).atStartOfDay().plusMinutes(minute);
+    }
+
+    private void insertFlights(Connection conn) throws SQLException {
+        String sql = "INSERT INTO Flight(flightNumber, origin, destination, departureTime, arrivalTime) VALUES(?,?,?,?,?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < flights; i++) {
+                LocalDateTime departure = departure(i);
+                pstmt.setString(1, flightNumber(i));
+                pstmt.setString(2, origin(i));
+                pstmt.setString(3, destination(i));
+                pstmt.setLong(4, Timestamps.toEpochSecond(departure));
+                pstmt.setLong(5, Timestamps.toEpochSecond(departure.plusHours(2)));
+                pstmt.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private void insertSeats(Connection conn) throws SQLException {
+        String sql = "INSERT INTO Seat(seatNumber, seatStatus, flightNumber) VALUES(?,?,?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            long count = 0;
+            for (int i = 0; i < flights; i++) {
+                for (int s = 0; s < seatsPerFlight; s++) {
+                    pstmt.setString(1, seatNumber(s));
+                    pstmt.setBoolean(2, false);
+                    pstmt.setString(3, flightNumber(i));
+                    pstmt.addBatch();
+                    if (++count % BATCH_SIZE == 0) {
+                        pstmt.executeBatch();
+                    }
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private void insertCustomers(Connection conn) throws SQLException {
+        String sql = "INSERT INTO Customer(customerId, name, email, phoneNumber) VALUES(?,?,?,?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < customers; i++) {
+                pstmt.setString(1, customerId(i));
+                pstmt.setString(2, "Customer " + i);
+                pstmt.setString(3, "customer" + i + "@example.com");
+                pstmt.setString(4, String.format("%07d", i));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    public String getUrl() {
+        return "jdbc:sqlite:" + file;
+    }
+
+    public int getFlights() {
+        return flights;
+    }
+
+    public int getSeatsPerFlight() {
+        return seatsPerFlight;
+    }
+
+    public int getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Deletes the database file and its write-ahead log
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + "-wal"));
+        Files.deleteIfExists(Path.of(file + "-shm"));
+    }
+}
@@ -0,0 +1,36 @@
+package hi.verkefni.benchmarks;
+
+import hi.verkefni.vinnsla.Flight;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlightDBBenchmark {
+
+    // A route and day that has flights, picked at random so the page cache isn't always hit the same way
+    @Benchmark
+    public List<Flight> searchFlights(DatabaseState db) {
+        int flightIndex = ThreadLocalRandom.current().nextInt(db.flights);
+        LocalDateTime date = Dataset.departure(flightIndex);
+        return db.flightDB.searchFlights(Dataset.origin(flightIndex), Dataset.destination(flightIndex), date);
+    }
+
+    @Benchmark
+    public Flight selectByFlightNumber(DatabaseState db) {
+        int flightIndex = ThreadLocalRandom.current().nextInt(db.flights);
+        return db.flightDB.selectByFlightNumber(Dataset.flightNumber(flightIndex));
+    }
+}
@@ -4,12 +4,13 @@ VALUES
 ('2404012071', 'Bjarki', 'bja34@hi.is', '7654321'),
 ('2404012072', 'Davíð', 'daf17@hi.is', '2345678');
 
+-- Times are stored as epoch seconds (UTC)
 INSERT INTO Flight (flightNumber, origin, destination, departureTime, arrivalTime)
 VALUES
-('FI101', 'KEF', 'JFK', '2020-11-01 12:00:00', '2020-11-01 18:00:00'),
-('FI102', 'JFK', 'KEF', '2020-11-02 12:00:00', '2020-11-02 18:00:00'),
-('FI103', 'KEF', 'LHR', '2020-11-03 12:00:00', '2020-11-03 18:00:00'),
-('FI104', 'LHR', 'KEF', '2020-11-04 12:00:00', '2020-11-04 18:00:00');
+('FI101', 'KEF', 'JFK', strftime('%s', '2020-11-01 12:00:00'), strftime('%s', '2020-11-01 18:00:00')),
+('FI102', 'JFK', 'KEF', strftime('%s', '2020-11-02 12:00:00'), strftime('%s', '2020-11-02 18:00:00')),
+('FI103', 'KEF', 'LHR', strftime('%s', '2020-11-03 12:00:00'), strftime('%s', '2020-11-03 18:00:00')),
+('FI104', 'LHR', 'KEF', strftime('%s', '2020-11-04 12:00:00'), strftime('%s', '2020-11-04 18:00:00'));
 
 INSERT INTO Seat (seatNumber, seatStatus, flightNumber)
 VALUES
@@ -176,9 +177,9 @@ VALUES
 
 INSERT INTO Booking (bookingId, bookingDate, status, customerId, flightNumber, seatNumber)
 VALUES
-('B101', '2020-10-01 12:00:00', 'CONFIRMED', '2404012070', 'FI101', 'A1'),
-('B102', '2020-10-02 12:00:00', 'CONFIRMED', '2404012071', 'FI101', 'A2'),
-('B103', '2020-10-03 12:00:00', 'CONFIRMED', '2404012072', 'FI102', 'A1');
+('B101', strftime('%s', '2020-10-01 12:00:00'), 'CONFIRMED', '2404012070', 'FI101', 'A1'),
+('B102', strftime('%s', '2020-10-02 12:00:00'), 'CONFIRMED', '2404012071', 'FI101', 'A2'),
+('B103', strftime('%s', '2020-10-03 12:00:00'), 'CONFIRMED', '2404012072', 'FI102', 'A1');
 
 -- Update corresponding seats to reflect they are booked
 UPDATE Seat SET seatStatus = 1 WHERE flightNumber = 'FI101' AND seatNumber = 'A1';
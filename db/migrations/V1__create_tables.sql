@@ -1,8 +1,3 @@
-DROP TABLE IF EXISTS Booking;
-DROP TABLE IF EXISTS Seat;
-DROP TABLE IF EXISTS Customer;
-DROP TABLE IF EXISTS Flight;
-
 CREATE TABLE Flight (
     flightNumber VARCHAR(5) PRIMARY KEY,
     origin VARCHAR(50),
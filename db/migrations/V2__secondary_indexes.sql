@@ -0,0 +1,30 @@
+-- Departure date stored as its own column so searches by day can use an index
+-- instead of evaluating date(departureTime) on every row
+ALTER TABLE Flight ADD COLUMN departureDate VARCHAR(10);
+
+UPDATE Flight SET departureDate = date(departureTime);
+
+CREATE TRIGGER trg_flight_departure_date_insert AFTER INSERT ON Flight
+BEGIN
+    UPDATE Flight SET departureDate = date(NEW.departureTime) WHERE flightNumber = NEW.flightNumber;
+END;
+
+CREATE TRIGGER trg_flight_departure_date_update AFTER UPDATE OF departureTime ON Flight
+BEGIN
+    UPDATE Flight SET departureDate = date(NEW.departureTime) WHERE flightNumber = NEW.flightNumber;
+END;
+
+-- Flight search by origin, origin + destination and origin + destination + day
+CREATE INDEX idx_flight_route ON Flight (origin, destination, departureDate, departureTime, arrivalTime, flightNumber);
+
+-- Flight search by destination and destination + day
+CREATE INDEX idx_flight_destination ON Flight (destination, departureDate, departureTime, origin, arrivalTime, flightNumber);
+
+-- Flight search by day only
+CREATE INDEX idx_flight_departure_date ON Flight (departureDate, departureTime, origin, destination, arrivalTime, flightNumber);
+
+-- Bookings for a customer
+CREATE INDEX idx_booking_customer ON Booking (customerId, bookingId, bookingDate, status, flightNumber, seatNumber);
+
+-- Available seats for a flight
+CREATE INDEX idx_seat_flight_status ON Seat (flightNumber, seatStatus, seatNumber);
@@ -0,0 +1,55 @@
+-- Store departure, arrival and booking times as epoch seconds (UTC) instead of
+-- 'yyyy-MM-dd HH:mm:ss' text. Rows are decoded without parsing and a range of
+-- departure times is a plain integer comparison, which makes the separate
+-- departureDate column from V2 unnecessary.
+
+CREATE TABLE Flight_new (
+    flightNumber VARCHAR(5) PRIMARY KEY,
+    origin VARCHAR(50),
+    destination VARCHAR(50),
+    departureTime INTEGER,
+    arrivalTime INTEGER
+);
+
+INSERT INTO Flight_new (flightNumber, origin, destination, departureTime, arrivalTime)
+SELECT flightNumber, origin, destination,
+       CAST(strftime('%s', departureTime) AS INTEGER),
+       CAST(strftime('%s', arrivalTime) AS INTEGER)
+FROM Flight;
+
+-- Also drops the departureDate triggers and the V2 flight indexes
+DROP TABLE Flight;
+
+ALTER TABLE Flight_new RENAME TO Flight;
+
+CREATE TABLE Booking_new (
+    bookingId VARCHAR(10) PRIMARY KEY,
+    bookingDate INTEGER,
+    status VARCHAR(20),
+    customerId VARCHAR(10),
+    flightNumber VARCHAR(5),
+    seatNumber VARCHAR(3),
+    FOREIGN KEY (customerId) REFERENCES Customer(customerId),
+    FOREIGN KEY (flightNumber) REFERENCES Flight(flightNumber),
+    FOREIGN KEY (flightNumber, seatNumber) REFERENCES Seat(flightNumber, seatNumber)
+);
+
+INSERT INTO Booking_new (bookingId, bookingDate, status, customerId, flightNumber, seatNumber)
+SELECT bookingId, CAST(strftime('%s', bookingDate) AS INTEGER), status, customerId, flightNumber, seatNumber
+FROM Booking;
+
+DROP TABLE Booking;
+
+ALTER TABLE Booking_new RENAME TO Booking;
+
+-- Flight search by origin, origin + destination and either with a departure time range
+CREATE INDEX idx_flight_route ON Flight (origin, destination, departureTime, arrivalTime, flightNumber);
+
+-- Flight search by destination, optionally with a departure time range
+CREATE INDEX idx_flight_destination ON Flight (destination, departureTime, origin, arrivalTime, flightNumber);
+
+-- Flight search by departure time range only
+CREATE INDEX idx_flight_departure ON Flight (departureTime, origin, destination, arrivalTime, flightNumber);
+
+-- Bookings for a customer
+CREATE INDEX idx_booking_customer ON Booking (customerId, bookingId, bookingDate, status, flightNumber, seatNumber);
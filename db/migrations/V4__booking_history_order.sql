@@ -0,0 +1,7 @@
+-- Read a customer's booking history newest first, a page at a time.
+-- Same columns as before, but ordered by booking date so a page is a range
+-- scan of the index that continues where the previous page ended.
+
+DROP INDEX idx_booking_customer;
+
+CREATE INDEX idx_booking_customer ON Booking (customerId, bookingDate, bookingId, status, flightNumber, seatNumber);
@@ -0,0 +1,5 @@
+-- Flights from one origin in departure order, for range searches that
+-- leave the destination open. Without it such a search reads every flight
+-- from the origin and sorts them before it can stop at the limit.
+
+CREATE INDEX idx_flight_origin ON Flight (origin, departureTime, destination, arrivalTime, flightNumber);
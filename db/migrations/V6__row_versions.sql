@@ -0,0 +1,13 @@
+-- Row versions for optimistic concurrency. Every change to a booking or a
+-- seat adds one to its version, and a change is only made if the version is
+-- still the one that was read, so two agents changing the same booking can't
+-- overwrite each other without noticing.
+
+ALTER TABLE Booking ADD COLUMN version INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE Seat ADD COLUMN version INTEGER NOT NULL DEFAULT 0;
+
+-- Booking history still reads only the index, now with the version as well
+DROP INDEX idx_booking_customer;
+
+CREATE INDEX idx_booking_customer ON Booking (customerId, bookingDate, bookingId, status, flightNumber, seatNumber, version);
@@ -0,0 +1,129 @@
+package hi.verkefni.vidmot;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs controller calls off the JavaFX application thread.
+ *
+ * Each call runs on its own virtual thread, so a slow database query never
+ * freezes the window, and its result or error is handed back on the JavaFX
+ * application thread where it is safe to update controls.
+ */
+public class AsyncService {
+    private static AsyncService defaultService;
+
+    private final Executor executor;
+    private final Executor uiExecutor;
+
+    public AsyncService() {
+        this(Executors.newVirtualThreadPerTaskExecutor(), Platform::runLater);
+    }
+
+    /**
+     * @param executor Runs the calls
+     * @param uiExecutor Runs the result handlers, normally on the JavaFX application thread
+     */
+    public AsyncService(Executor executor, Executor uiExecutor) {
+        this.executor = executor;
+        this.uiExecutor = uiExecutor;
+    }
+
+    /**
+     * @return The service shared by the controllers of the application
+     */
+    public static synchronized AsyncService getDefault() {
+        if (defaultService == null) {
+            defaultService = new AsyncService();
+        }
+        return defaultService;
+    }
+
+    /**
+     * Runs a call in the background
+     *
+     * @param work The call, e.g. a controller method
+     * @return Completes with the result of the call, on the background thread
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, executor);
+    }
+
+    /**
+     * Runs a call in the background and handles its outcome on the JavaFX application thread
+     *
+     * @param work The call, e.g. a controller method
+     * @param onSuccess Given the result of the call
+     * @param onError Given the exception the call threw
+     * @return Completes once the outcome has been handled
+     */
+    public <T> CompletableFuture<Void> run(Supplier<T> work, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        return supply(work).handleAsync((result, error) -> {
+            if (error != null) {
+                onError.accept(unwrap(error));
+            } else {
+                onSuccess.accept(result);
+            }
+            return null;
+        }, uiExecutor);
+    }
+
+    /**
+     * @return A request slot where starting a new call makes the previous one stale
+     */
+    public LatestRequest latest() {
+        return new LatestRequest();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Calls that replace each other, such as searches run as the user
+     * changes the criteria. When a new call is started the previous one is
+     * cancelled and its outcome is ignored, even if it already finished, so
+     * an old result never overwrites a newer one.
+     */
+    public class LatestRequest {
+        private final AtomicLong generation = new AtomicLong();
+        private CompletableFuture<?> current;
+
+        public synchronized <T> CompletableFuture<Void> run(Supplier<T> work, Consumer<T> onSuccess,
+                                                             Consumer<Throwable> onError) {
+            cancel();
+            long requestGeneration = generation.get();
+            CompletableFuture<Void> future = AsyncService.this.run(work,
+                result -> {
+                    if (generation.get() == requestGeneration) {
+                        onSuccess.accept(result);
+                    }
+                },
+                error -> {
+                    if (generation.get() == requestGeneration) {
+                        onError.accept(error);
+                    }
+                });
+            current = future;
+            return future;
+        }
+
+        /**
+         * Makes the current call stale, its outcome will not be handled
+         */
+        public synchronized void cancel() {
+            generation.incrementAndGet();
+            if (current != null) {
+                current.cancel(false);
+                current = null;
+            }
+        }
+    }
+}
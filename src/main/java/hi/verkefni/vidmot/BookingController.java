@@ -2,18 +2,60 @@ package hi.verkefni.vidmot;
 
 import hi.verkefni.vinnsla.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 public class BookingController {
+    // Times a change to a booking is tried when other agents keep changing it first
+    static final int MAX_CHANGE_ATTEMPTS = 3;
+    
     private BookingDB bookingDB;
     private FlightController flightController;
     private CustomerController customerController;
+    private SeatInventory seatInventory;
+    // Log of every change to a booking, or null if changes are only saved to the tables
+    private volatile BookingEventStore eventStore;
     
     public BookingController(BookingDB bookingDB, FlightController flightController, CustomerController customerController) {
+        this(bookingDB, flightController, customerController, new SeatInventory(bookingDB));
+    }
+    
+    public BookingController(BookingDB bookingDB, FlightController flightController, 
+                             CustomerController customerController, SeatInventory seatInventory) {
+        this(bookingDB, flightController, customerController, seatInventory, null);
+    }
+    
+    public BookingController(BookingDB bookingDB, FlightController flightController, 
+                             CustomerController customerController, SeatInventory seatInventory,
+                             BookingEventStore eventStore) {
         this.bookingDB = bookingDB;
         this.flightController = flightController;
         this.customerController = customerController;
+        this.seatInventory = seatInventory;
+        if (eventStore != null) {
+            attach(eventStore);
+        }
+    }
+    
+    /**
+     * Logs every change to a booking from now on, e.g. once the log has been
+     * opened in the background. The log is first brought up to date with the
+     * bookings already made, including those made before it was set.
+     * 
+     * @param eventStore The booking event log
+     */
+    public void setEventStore(BookingEventStore eventStore) {
+        attach(eventStore);
+    }
+    
+    private void attach(BookingEventStore eventStore) {
+        // The database logs every change it commits, in commit order
+        bookingDB.attachEventStore(eventStore);
+        this.eventStore = eventStore;
     }
     
     /**
@@ -23,10 +65,12 @@ public class BookingController {
      * @param flight The flight to book
      * @param seat The seat to book
      * @return The created booking
+     * @throws SeatConflictException if someone else has already booked the seat
+     * @throws IllegalStateException if the booking couldn't be saved
      */
     public Booking createBooking(Customer customer, Flight flight, Seat seat) {
         // Validate customer
-        if (customer == null || customerController.getCustomer(customer.getCustomerId()) == null) {
+        if (customer == null || !customerController.customerExists(customer.getCustomerId())) {
             throw new IllegalArgumentException("Invalid customer");
         }
         
@@ -45,8 +89,18 @@ public class BookingController {
             throw new IllegalArgumentException("Seat " + seat.getSeatNumber() + " is already booked");
         }
         
+        if (!seatInventory.hasSeat(seat.getFlightNumber(), seat.getSeatNumber())) {
+            throw new IllegalArgumentException("Seat " + seat.getSeatNumber() + " does not exist on flight " 
+                                               + seat.getFlightNumber());
+        }
+        
+        // Claim the seat, only one booker can win it even if the Seat object above was stale
+        if (!seatInventory.claim(seat.getFlightNumber(), seat.getSeatNumber())) {
+            throw new SeatConflictException(seat.getFlightNumber(), seat.getSeatNumber());
+        }
+        
         // Generate a unique booking ID
-        String bookingId = "B" + UUID.randomUUID().toString().substring(0, 6);
+        String bookingId = newBookingId();
         
         // Create the booking with the seat
         Booking booking = new Booking(
@@ -63,30 +117,136 @@ public class BookingController {
         System.out.println("Flight number: " + seat.getFlightNumber());
         System.out.println("Seat number: " + seat.getSeatNumber());
         
-        // Insert into database
-        bookingDB.insert(booking);
+        // Insert into database, giving the seat back if that fails
+        boolean saved;
+        try {
+            saved = bookingDB.insert(booking);
+        } catch (SeatConflictException e) {
+            // The database has the seat as taken, so the seats in memory are out of date
+            seatInventory.invalidate(seat.getFlightNumber());
+            throw e;
+        } catch (RuntimeException e) {
+            seatInventory.release(seat.getFlightNumber(), seat.getSeatNumber());
+            throw e;
+        }
+        if (!saved) {
+            // Nothing was written, the seat is still free in the database
+            seatInventory.release(seat.getFlightNumber(), seat.getSeatNumber());
+            throw new IllegalStateException("Booking could not be saved");
+        }
         
         return booking;
     }
     
     /**
-     * Cancels an existing booking
+     * Books several seats on one flight for a customer, e.g. for a family or group.
+     * The seats are booked all together in one transaction, or not at all.
      * 
-     * @param bookingId The booking ID to cancel
-     * @return true if cancelled successfully, false otherwise
+     * @param customer The customer making the booking
+     * @param flight The flight to book
+     * @param seats The seats to book
+     * @return One result per seat, in the same order as the seats
      */
-    public boolean cancelBooking(String bookingId) {
-        Booking booking = bookingDB.selectById(bookingId);
+    public List<SeatBookingResult> createBookings(Customer customer, Flight flight, List<Seat> seats) {
+        // Validate customer
+        if (customer == null || !customerController.customerExists(customer.getCustomerId())) {
+            throw new IllegalArgumentException("Invalid customer");
+        }
         
-        if (booking == null) {
-            return false;
+        // Validate flight
+        if (flight == null || flightController.getFlightByNumber(flight.getFlightNumber()) == null) {
+            throw new IllegalArgumentException("Invalid flight");
+        }
+        
+        // Validate seats
+        if (seats == null || seats.isEmpty()) {
+            throw new IllegalArgumentException("No seats selected");
+        }
+        
+        Set<String> seatNumbers = new HashSet<>();
+        for (Seat seat : seats) {
+            if (!seatNumbers.add(seat.getSeatNumber())) {
+                throw new IllegalArgumentException("Seat " + seat.getSeatNumber() + " is selected twice");
+            }
+            if (!seatInventory.hasSeat(flight.getFlightNumber(), seat.getSeatNumber())) {
+                throw new IllegalArgumentException("Seat " + seat.getSeatNumber() + " does not exist on flight " 
+                                                   + flight.getFlightNumber());
+            }
+        }
+        
+        // Claim every seat, remembering which ones someone else already has
+        List<Seat> claimed = new ArrayList<>();
+        Set<String> taken = new HashSet<>();
+        for (Seat seat : seats) {
+            if (seatInventory.claim(flight.getFlightNumber(), seat.getSeatNumber())) {
+                claimed.add(seat);
+            } else {
+                taken.add(seat.getSeatNumber());
+            }
+        }
+        
+        List<Booking> bookings = new ArrayList<>();
+        if (taken.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            for (Seat seat : seats) {
+                bookings.add(new Booking(newBookingId(), now, "CONFIRMED", customer.getCustomerId(),
+                                         flight.getFlightNumber(), seat.getSeatNumber()));
+            }
         }
         
-        // Update status to CANCELLED
-        booking.setStatus("CANCELLED");
-        bookingDB.update(booking);
+        // Save all bookings in one transaction, give every seat back if any seat failed
+        boolean saved = false;
+        boolean conflict = false;
+        try {
+            saved = taken.isEmpty() && bookingDB.insertAll(bookings);
+        } catch (SeatConflictException e) {
+            // The database had the seat as taken even though it was free in memory
+            taken.add(e.getSeatNumber());
+            conflict = true;
+        } finally {
+            if (!saved) {
+                for (Seat seat : claimed) {
+                    seatInventory.release(flight.getFlightNumber(), seat.getSeatNumber());
+                }
+            }
+        }
+        if (conflict) {
+            seatInventory.invalidate(flight.getFlightNumber());
+        }
         
-        return true;
+        List<SeatBookingResult> results = new ArrayList<>();
+        for (int i = 0; i < seats.size(); i++) {
+            Seat seat = seats.get(i);
+            if (saved) {
+                results.add(new SeatBookingResult(seat, SeatBookingResult.Status.BOOKED, bookings.get(i)));
+            } else if (taken.contains(seat.getSeatNumber())) {
+                results.add(new SeatBookingResult(seat, SeatBookingResult.Status.SEAT_TAKEN, null));
+            } else {
+                results.add(new SeatBookingResult(seat, SeatBookingResult.Status.NOT_BOOKED, null));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Cancels an existing booking
+     * 
+     * @param bookingId The booking ID to cancel
+     * @return true if cancelled successfully, false otherwise
+     * @throws BookingChangedException if other agents kept changing the booking at the same time
+     */
+    public boolean cancelBooking(String bookingId) {
+        return retryOnChange(() -> {
+            Booking booking = bookingDB.selectById(bookingId);
+            
+            if (booking == null) {
+                return false;
+            }
+            
+            // Update status to CANCELLED
+            booking.setStatus("CANCELLED");
+            return bookingDB.update(booking);
+        });
     }
     
     /**
@@ -94,9 +254,17 @@ public class BookingController {
      * 
      * @param bookingId The booking ID to update
      * @param newSeat New seat to assign to this booking
-     * @return The updated booking
+     * @return The updated booking, unchanged if it already has that seat
+     * @throws SeatConflictException if someone else has already booked the new seat
+     * @throws BookingChangedException if other agents kept changing the booking at the same time
+     * @throws IllegalStateException if the booking couldn't be saved
      */
     public Booking updateBooking(String bookingId, Seat newSeat) {
+        return retryOnChange(() -> moveToSeat(bookingId, newSeat));
+    }
+    
+    // One attempt at moving a booking to a new seat, reading the booking fresh
+    private Booking moveToSeat(String bookingId, Seat newSeat) {
         Booking booking = bookingDB.selectById(bookingId);
         
         if (booking == null) {
@@ -107,18 +275,65 @@ public class BookingController {
             throw new IllegalArgumentException("No seat selected");
         }
         
+        // Already in that seat, which is taken by this very booking
+        if (newSeat.getSeatNumber().equals(booking.getSeatNumber())) {
+            return booking;
+        }
+        
         // Check if seat is available
         if (newSeat.isBooked()) {
             throw new IllegalArgumentException("Seat " + newSeat.getSeatNumber() + " is already booked");
         }
         
+        // Claim the new seat before giving up the old one
+        String oldSeatNumber = booking.getSeatNumber();
+        if (!seatInventory.claim(booking.getFlightNumber(), newSeat.getSeatNumber())) {
+            throw new SeatConflictException(booking.getFlightNumber(), newSeat.getSeatNumber());
+        }
+        
         // Update booking with new seat
         booking.setSeatNumber(newSeat.getSeatNumber());
-        bookingDB.update(booking);
+        boolean saved;
+        try {
+            saved = bookingDB.update(booking);
+        } catch (SeatConflictException e) {
+            booking.setSeatNumber(oldSeatNumber);
+            seatInventory.invalidate(booking.getFlightNumber());
+            throw e;
+        } catch (RuntimeException e) {
+            booking.setSeatNumber(oldSeatNumber);
+            seatInventory.release(booking.getFlightNumber(), newSeat.getSeatNumber());
+            throw e;
+        }
+        if (!saved) {
+            // Nothing was written, the booking still holds its old seat in the database
+            booking.setSeatNumber(oldSeatNumber);
+            seatInventory.release(booking.getFlightNumber(), newSeat.getSeatNumber());
+            throw new IllegalStateException("Booking " + bookingId + " could not be saved");
+        }
+        seatInventory.release(booking.getFlightNumber(), oldSeatNumber);
         
         return booking;
     }
     
+    /**
+     * Runs a read-change-save of a booking, starting over from a fresh read
+     * when someone else saved the booking in between
+     */
+    private <T> T retryOnChange(Supplier<T> change) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return change.get();
+            } catch (BookingChangedException e) {
+                // A retry is the normal outcome of two agents saving at once, only giving up is worth reporting
+                if (attempt >= MAX_CHANGE_ATTEMPTS) {
+                    System.out.println(e.getMessage() + " (gave up after " + MAX_CHANGE_ATTEMPTS + " attempts)");
+                    throw e;
+                }
+            }
+        }
+    }
+    
     /**
      * Retrieves booking details
      * 
@@ -139,6 +354,32 @@ public class BookingController {
         return bookingDB.selectByCustomerId(customerId);
     }
     
+    /**
+     * Gets all bookings for a customer together with the route of each
+     * booking's flight, for showing them in a list
+     * 
+     * @param customerId The customer ID
+     * @return List of booking summaries for the customer
+     */
+    public List<BookingSummary> getBookingSummariesByCustomer(String customerId) {
+        return bookingDB.selectSummariesByCustomerId(customerId);
+    }
+    
+    /**
+     * Gets one page of a customer's bookings, newest first
+     * 
+     * @param customerId The customer ID
+     * @param after Last booking of the previous page, or null for the first page
+     * @param pageSize Maximum number of bookings in the page
+     * @return The bookings, fewer than pageSize on the last page
+     */
+    public List<BookingSummary> getBookingSummaryPage(String customerId, BookingSummary after, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        return bookingDB.selectSummaryPage(customerId, after, pageSize);
+    }
+    
     /**
      * Gets available seats for a flight
      * 
@@ -146,7 +387,57 @@ public class BookingController {
      * @return List of available seats
      */
     public List<Seat> getAvailableSeats(String flightNumber) {
-        return bookingDB.getAvailableSeats(flightNumber);
+        return seatInventory.getAvailableSeats(flightNumber);
+    }
+    
+    /**
+     * Gets every seat of a flight, taken or not, for drawing the cabin
+     * 
+     * @param flightNumber The flight number
+     * @return The seat map
+     */
+    public SeatMap getSeatMap(String flightNumber) {
+        return seatInventory.getSeatMap(flightNumber);
+    }
+    
+    /**
+     * Gets a flight's seat map again, reusing the previous one if no seat has changed since
+     * 
+     * @param flightNumber The flight number
+     * @param previous The seat map shown so far, or null
+     * @return previous if nothing changed, otherwise a new seat map
+     */
+    public SeatMap getSeatMap(String flightNumber, SeatMap previous) {
+        return seatInventory.getSeatMap(flightNumber, previous);
+    }
+    
+    /**
+     * Gets everything that happened to a booking, from the booking event log
+     * 
+     * @param bookingId The booking ID
+     * @return The booking's events, oldest first, none if there is no event log
+     */
+    public List<BookingEvent> getBookingHistory(String bookingId) {
+        return eventStore == null ? List.of() : eventStore.getHistory(bookingId);
+    }
+    
+    /**
+     * Rebuilds the Booking and Seat tables from the booking event log and
+     * reloads the seats in memory. No bookings should be made while it runs.
+     * 
+     * @return true if the tables were rebuilt
+     */
+    public boolean rebuildTablesFromEventLog() {
+        if (eventStore == null) {
+            throw new IllegalStateException("There is no booking event log");
+        }
+        boolean rebuilt = bookingDB.replaceAllBookings(eventStore.getBookings());
+        seatInventory.recover();
+        return rebuilt;
+    }
+    
+    private String newBookingId() {
+        return "B" + UUID.randomUUID().toString().substring(0, 6);
     }
     
     /**
@@ -17,8 +17,12 @@ import java.util.List;
 public class CreateBookingController {
     private BookingController bookingController;
     private FlightController flightController;
+    private AsyncService asyncService;
+    private AsyncService.LatestRequest seatsRequest;
     private Customer customer;
     private boolean bookingCreated = false;
+    // Set while a booking is being made, Book stays disabled until it is done
+    private boolean bookingInFlight = false;
     
     @FXML
     private Label customerNameLabel;
@@ -44,9 +48,18 @@ public class CreateBookingController {
     public CreateBookingController(BookingController bookingController, 
                                  FlightController flightController, 
                                  Customer customer) {
+        this(bookingController, flightController, customer, AsyncService.getDefault());
+    }
+    
+    public CreateBookingController(BookingController bookingController, 
+                                 FlightController flightController, 
+                                 Customer customer,
+                                 AsyncService asyncService) {
         this.bookingController = bookingController;
         this.flightController = flightController;
         this.customer = customer;
+        this.asyncService = asyncService;
+        this.seatsRequest = asyncService.latest();
     }
     
     @FXML
@@ -69,7 +82,7 @@ public class CreateBookingController {
         try {
             // Open the flight search dialog
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/flight-search-view.fxml"));
-            FlightSearchController controller = new FlightSearchController(flightController);
+            FlightSearchController controller = new FlightSearchController(flightController, asyncService);
             loader.setController(controller);
             
             Parent root = loader.load();
@@ -128,18 +141,26 @@ public class CreateBookingController {
     
     private void updateAvailableSeats() {
         if (selectedFlight != null) {
-            List<Seat> availableSeats = bookingController.getAvailableSeats(selectedFlight.getFlightNumber());
-            seatsListView.setItems(FXCollections.observableArrayList(availableSeats));
-            
-            if (availableSeats.isEmpty()) {
-                showAlert(Alert.AlertType.INFORMATION, "No Seats Available", 
-                        "There are no available seats on this flight");
-            }
+            // Seats of a flight selected earlier are dropped if they arrive late
+            String flightNumber = selectedFlight.getFlightNumber();
+            seatsRequest.run(() -> bookingController.getAvailableSeats(flightNumber),
+                this::showAvailableSeats,
+                error -> showAlert(Alert.AlertType.ERROR, "Error", "Could not load seats: " + error.getMessage()));
         } else {
+            seatsRequest.cancel();
             seatsListView.getItems().clear();
         }
     }
     
+    private void showAvailableSeats(List<Seat> availableSeats) {
+        seatsListView.setItems(FXCollections.observableArrayList(availableSeats));
+        
+        if (availableSeats.isEmpty()) {
+            showAlert(Alert.AlertType.INFORMATION, "No Seats Available", 
+                    "There are no available seats on this flight");
+        }
+    }
+    
     @FXML
     private void handleBookButton() {
         Seat selectedSeat = seatsListView.getSelectionModel().getSelectedItem();
@@ -156,25 +177,34 @@ public class CreateBookingController {
             return;
         }
         
-        try {
-            Booking booking = bookingController.createBooking(customer, selectedFlight, selectedSeat);
-            bookingCreated = true;
-            
-            showAlert(Alert.AlertType.INFORMATION, "Booking Confirmed", 
-                    "Booking created successfully!\nBooking ID: " + booking.getBookingId());
-            
-            // Close the window
-            Stage stage = (Stage) bookButton.getScene().getWindow();
-            stage.close();
-            
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Booking Error", 
-                    "Error creating booking: " + e.getMessage());
-        }
+        // Not clickable again until this booking has gone through, so it isn't made twice,
+        // also not when another seat is selected meanwhile
+        bookingInFlight = true;
+        updateButtonStates();
+        Flight flight = selectedFlight;
+        asyncService.run(() -> bookingController.createBooking(customer, flight, selectedSeat),
+            booking -> {
+                bookingInFlight = false;
+                bookingCreated = true;
+                
+                showAlert(Alert.AlertType.INFORMATION, "Booking Confirmed", 
+                        "Booking created successfully!\nBooking ID: " + booking.getBookingId());
+                
+                // Close the window
+                Stage stage = (Stage) bookButton.getScene().getWindow();
+                stage.close();
+            },
+            error -> {
+                bookingInFlight = false;
+                updateButtonStates();
+                showAlert(Alert.AlertType.ERROR, "Booking Error", 
+                        "Error creating booking: " + error.getMessage());
+            });
     }
     
     @FXML
     private void handleCancelButton() {
+        seatsRequest.cancel();
         Stage stage = (Stage) cancelButton.getScene().getWindow();
         stage.close();
     }
@@ -183,7 +213,7 @@ public class CreateBookingController {
         boolean flightSelected = selectedFlight != null;
         boolean seatSelected = seatsListView.getSelectionModel().getSelectedItem() != null;
         
-        bookButton.setDisable(!(flightSelected && seatSelected));
+        bookButton.setDisable(bookingInFlight || !(flightSelected && seatSelected));
         seatsListView.setDisable(!flightSelected);
     }
     
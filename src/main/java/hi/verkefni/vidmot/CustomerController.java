@@ -2,6 +2,7 @@ package hi.verkefni.vidmot;
 
 import hi.verkefni.vinnsla.Customer;
 import hi.verkefni.vinnsla.CustomerDB;
+import hi.verkefni.vinnsla.TtlCache;
 
 // CustomerController
 // + registerCustomer(customer: Customer) : Customer
@@ -15,23 +16,54 @@ import hi.verkefni.vinnsla.CustomerDB;
 // + delete(customerId: String) : void
 
 public class CustomerController {
+    private static final int CUSTOMER_CACHE_SIZE = 10_000;
+    private static final long CUSTOMER_CACHE_TTL_MILLIS = 5 * 60 * 1000;
+    // Unknown IDs are forgotten sooner, in case the customer is registered elsewhere
+    private static final long UNKNOWN_CUSTOMER_TTL_MILLIS = 30 * 1000;
+    
     private CustomerDB customerDB;
+    private TtlCache<String, Customer> customerCache;
     
     public CustomerController(CustomerDB customerDB) {
+        this(customerDB, new TtlCache<>(CUSTOMER_CACHE_SIZE, CUSTOMER_CACHE_TTL_MILLIS, UNKNOWN_CUSTOMER_TTL_MILLIS));
+    }
+    
+    public CustomerController(CustomerDB customerDB, TtlCache<String, Customer> customerCache) {
         this.customerDB = customerDB;
+        this.customerCache = customerCache;
     }
     
     public Customer registerCustomer(Customer customer) {
         customerDB.insert(customer);
+        customerCache.invalidate(customer.getCustomerId());
         return customer;
     }
     
     public Customer updateCustomer(Customer customer) {
         customerDB.update(customer);
+        customerCache.invalidate(customer.getCustomerId());
         return customer;
     }
     
     public Customer getCustomer(String customerId) {
-        return customerDB.selectById(customerId);
+        return customerCache.get(customerId, customerDB::selectById);
+    }
+    
+    /**
+     * Checks that a customer is registered, answered from the customer cache
+     * after the first lookup of each ID, including IDs that don't exist
+     * 
+     * @param customerId The customer ID
+     * @return true if the customer exists
+     */
+    public boolean customerExists(String customerId) {
+        return customerId != null && getCustomer(customerId) != null;
+    }
+    
+    /**
+     * @return The cache used by getCustomer, for hit-rate statistics
+     */
+    public TtlCache<String, Customer> getCustomerCache() {
+        return customerCache;
     }
 }
@@ -15,16 +15,36 @@ import javafx.stage.Stage;
 import javafx.util.Callback;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
 
 public class FlightBookerApplication extends Application {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    // Bookings are loaded a page at a time, the next page once the list is scrolled close to the end
+    private static final int BOOKINGS_PAGE_SIZE = 50;
+    private static final int BOOKINGS_PREFETCH_DISTANCE = 10;
+    // Booking event log and its snapshots, next to the database file
+    private static final String EVENT_LOG_DIR = "flightbooker-events";
+    
+    // Shared database connections
+    private ConnectionProvider connectionProvider;
+    private BookingDB bookingDB;
+    // Log of every change to a booking, null until it is opened or if it couldn't be
+    private volatile BookingEventStore eventStore;
+    
     // Controllers
     private CustomerController customerController;
     private FlightController flightController;
     private BookingController bookingController;
     
+    // Runs database calls off the JavaFX application thread
+    private AsyncService asyncService = AsyncService.getDefault();
+    // Loads the bookings list, a newer search or refresh replaces an older one
+    private AsyncService.LatestRequest bookingsRequest = asyncService.latest();
+    
     // UI components
     @FXML
     private TextField customerIdTextField;
@@ -36,7 +56,7 @@ public class FlightBookerApplication extends Application {
     private VBox customerInfoBox;
     
     @FXML
-    private ListView<Booking> bookingsListView;
+    private ListView<BookingSummary> bookingsListView;
     
     @FXML
     private Button searchButton;
@@ -55,21 +75,37 @@ public class FlightBookerApplication extends Application {
     
     // Data
     private Customer currentCustomer;
-    private ObservableList<Booking> bookingsObservableList = FXCollections.observableArrayList();
+    private ObservableList<BookingSummary> bookingsObservableList = FXCollections.observableArrayList();
+    private boolean moreBookings = false;
+    private boolean loadingBookings = false;
     
     @Override
     public void start(Stage stage) throws IOException {
-        // Initialize database
+        // Bring the database up to date, only pending migrations are applied
         DatabaseInitializer.initialize();
         
+        // Share the pooled connections for the lifetime of the application
+        // WAL mode lets flight searches keep reading while bookings are written
+        connectionProvider = ConnectionProvider.getDefault();
+        connectionProvider.setStorageMode(StorageMode.WAL);
+        connectionProvider.startCheckpoints(CheckpointPolicy.defaults());
+        
         // Initialize controllers
-        CustomerDB customerDB = new CustomerDB();
-        FlightDB flightDB = new FlightDB();
-        BookingDB bookingDB = new BookingDB();
+        CustomerDB customerDB = new CustomerDB(connectionProvider);
+        FlightDB flightDB = new FlightDB(connectionProvider);
+        bookingDB = new BookingDB(connectionProvider);
+        // Bookings made at the same time share one commit instead of each waiting for the disk
+        bookingDB.startGroupCommit(GroupCommitPolicy.defaults());
         
         customerController = new CustomerController(customerDB);
         flightController = new FlightController(flightDB);
-        bookingController = new BookingController(bookingDB, flightController, customerController);
+        SeatInventory seatInventory = new SeatInventory(bookingDB);
+        
+        bookingController = new BookingController(bookingDB, flightController, customerController, seatInventory);
+        
+        // Open the connections and the booking event log, and load the seat maps and flight search index
+        // while the window is shown, flights used before that are loaded on demand
+        warmUpInBackground(seatInventory);
         
         // Load UI
         FXMLLoader fxmlLoader = new FXMLLoader(FlightBookerApplication.class.getResource("/main-view.fxml"));
@@ -86,6 +122,62 @@ public class FlightBookerApplication extends Application {
         updateUIState();
     }
     
+    private void warmUpInBackground(SeatInventory seatInventory) {
+        Thread warmUp = new Thread(() -> {
+            try {
+                connectionProvider.warmUp();
+            } catch (SQLException e) {
+                System.err.println("Error opening database connections: " + e.getMessage());
+            }
+            openEventLog();
+            seatInventory.preload();
+            flightController.getSearchIndex();
+            importSchedules(seatInventory);
+        }, "cache-warmup");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+    
+    // Replaying the log can take a while, bookings made before it is set are caught up when it is
+    private void openEventLog() {
+        try {
+            BookingEventStore store = new BookingEventStore(Path.of(EVENT_LOG_DIR));
+            // Brings the log up to date with the bookings already made, all of them the first time
+            bookingController.setEventStore(store);
+            eventStore = store;
+        } catch (IOException e) {
+            System.err.println("Error opening booking event log, bookings are not logged: " + e.getMessage());
+        }
+    }
+    
+    // Feeds given as --import-flights=<file> and --import-seats=<file> are imported while the app runs.
+    // Searches and seat maps are refreshed after every batch, seats already claimed by bookings are kept.
+    private void importSchedules(SeatInventory seatInventory) {
+        ScheduleImporter importer = new ScheduleImporter(connectionProvider, ScheduleImporter.DEFAULT_BATCH_SIZE,
+            flightNumbers -> {
+                flightController.invalidateFlights();
+                flightNumbers.forEach(seatInventory::invalidate);
+            });
+        DatabaseInitializer.importSchedules(importer, getParameters().getRaw());
+    }
+    
+    @Override
+    public void stop() {
+        if (bookingDB != null) {
+            bookingDB.stopGroupCommit();
+        }
+        if (eventStore != null) {
+            try {
+                eventStore.close();
+            } catch (IOException e) {
+                System.err.println("Error closing booking event log: " + e.getMessage());
+            }
+        }
+        if (connectionProvider != null) {
+            connectionProvider.shutdown();
+        }
+    }
+    
     @FXML
     public void initialize() {
         // Bind the observable list to the ListView
@@ -97,31 +189,23 @@ public class FlightBookerApplication extends Application {
     
     private void setupBookingsListView() {
         // Define how each booking should be displayed in the list
-        bookingsListView.setCellFactory(new Callback<ListView<Booking>, ListCell<Booking>>() {
+        // The flight route comes with each booking, so drawing a cell never touches the database
+        bookingsListView.setCellFactory(new Callback<ListView<BookingSummary>, ListCell<BookingSummary>>() {
             @Override
-            public ListCell<Booking> call(ListView<Booking> param) {
-                return new ListCell<Booking>() {
+            public ListCell<BookingSummary> call(ListView<BookingSummary> param) {
+                return new ListCell<BookingSummary>() {
                     @Override
-                    protected void updateItem(Booking booking, boolean empty) {
-                        super.updateItem(booking, empty);
+                    protected void updateItem(BookingSummary summary, boolean empty) {
+                        super.updateItem(summary, empty);
                         
-                        if (empty || booking == null) {
+                        if (empty || summary == null) {
                             setText(null);
                         } else {
-                            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-                            Flight flight = flightController.getFlightByNumber(booking.getFlightNumber());
+                            setText(formatBooking(summary));
                             
-                            String flightInfo = flight != null ? 
-                                flight.getOrigin() + " to " + flight.getDestination() : 
-                                booking.getFlightNumber();
-                            
-                            setText(String.format("Booking #%s - %s - Flight %s (%s) - Seat %s - %s", 
-                                      booking.getBookingId(),
-                                      booking.getBookingDate().format(formatter),
-                                      booking.getFlightNumber(),
-                                      flightInfo,
-                                      booking.getSeatNumber(),
-                                      booking.getStatus()));
+                            if (getIndex() >= bookingsObservableList.size() - BOOKINGS_PREFETCH_DISTANCE) {
+                                loadNextBookingsPage();
+                            }
                         }
                     }
                 };
@@ -129,6 +213,21 @@ public class FlightBookerApplication extends Application {
         });
     }
     
+    private static String formatBooking(BookingSummary summary) {
+        Booking booking = summary.getBooking();
+        String flightInfo = summary.hasFlight() ? 
+            summary.getOrigin() + " to " + summary.getDestination() : 
+            booking.getFlightNumber();
+        
+        return String.format("Booking #%s - %s - Flight %s (%s) - Seat %s - %s", 
+                  booking.getBookingId(),
+                  booking.getBookingDate().format(DATE_FORMAT),
+                  booking.getFlightNumber(),
+                  flightInfo,
+                  booking.getSeatNumber(),
+                  booking.getStatus());
+    }
+    
     @FXML
     private void handleSearchButton() {
         String customerId = customerIdTextField.getText().trim();
@@ -138,12 +237,31 @@ public class FlightBookerApplication extends Application {
             return;
         }
         
-        // Lookup customer
+        // Lookup customer and their bookings, no further pages are loaded meanwhile
+        loadingBookings = true;
+        bookingsRequest.run(() -> loadCustomer(customerId), this::showCustomer,
+            error -> {
+                loadingBookings = false;
+                showAlert(Alert.AlertType.ERROR, "Error", "Could not look up customer: " + error.getMessage());
+            });
+    }
+    
+    // Runs in the background
+    private CustomerBookings loadCustomer(String customerId) {
         Customer customer = customerController.getCustomer(customerId);
+        if (customer == null) {
+            return new CustomerBookings(customerId, null, List.of());
+        }
+        return new CustomerBookings(customerId, customer,
+                                    bookingController.getBookingSummaryPage(customerId, null, BOOKINGS_PAGE_SIZE));
+    }
+    
+    private void showCustomer(CustomerBookings result) {
+        Customer customer = result.customer;
         
         if (customer == null) {
             showAlert(Alert.AlertType.WARNING, "Customer Not Found", 
-                    "No customer found with ID: " + customerId);
+                    "No customer found with ID: " + result.customerId);
             clearCustomerInfo();
             return;
         }
@@ -155,11 +273,8 @@ public class FlightBookerApplication extends Application {
         // Display customer info
         updateCustomerInfo(customer);
         
-        // Get and display bookings
-        List<Booking> customerBookings = bookingController.getBookingsByCustomer(customerId);
-        
-        bookingsObservableList.clear();
-        bookingsObservableList.addAll(customerBookings);
+        // Display the first page of bookings
+        showFirstBookingsPage(result.bookings);
         
         // Update UI state
         updateUIState();
@@ -177,10 +292,13 @@ public class FlightBookerApplication extends Application {
     }
     
     private void clearCustomerInfo() {
+        bookingsRequest.cancel();
         currentCustomer = null;
         customerNameLabel.setText("Customer: Not selected");
         customerInfoBox.getChildren().clear();
         bookingsObservableList.clear();
+        moreBookings = false;
+        loadingBookings = false;
         updateUIState();
     }
     
@@ -196,7 +314,7 @@ public class FlightBookerApplication extends Application {
             // Open the booking creation dialog/window
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/create-booking-view.fxml"));
             CreateBookingController controller = new CreateBookingController(
-                    bookingController, flightController, currentCustomer);
+                    bookingController, flightController, currentCustomer, asyncService);
             loader.setController(controller);
             
             Parent root = loader.load();
@@ -219,9 +337,9 @@ public class FlightBookerApplication extends Application {
     
     @FXML
     private void handleViewBooking() {
-        Booking selectedBooking = bookingsListView.getSelectionModel().getSelectedItem();
+        BookingSummary selected = bookingsListView.getSelectionModel().getSelectedItem();
         
-        if (selectedBooking == null) {
+        if (selected == null) {
             showAlert(Alert.AlertType.WARNING, "No Booking Selected", 
                     "Please select a booking to view");
             return;
@@ -231,7 +349,8 @@ public class FlightBookerApplication extends Application {
             // Open the booking details dialog/window
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/view-booking-view.fxml"));
             ViewBookingController controller = new ViewBookingController(
-                    bookingController, flightController, customerController, selectedBooking.getBookingId());
+                    bookingController, flightController, customerController, selected.getBooking().getBookingId(),
+                    asyncService);
             loader.setController(controller);
             
             Parent root = loader.load();
@@ -240,9 +359,9 @@ public class FlightBookerApplication extends Application {
             stage.setScene(new Scene(root));
             stage.showAndWait();
             
-            // Refresh bookings if needed
+            // Refresh the booking if it was changed
             if (controller.isBookingUpdated()) {
-                refreshBookingsList();
+                refreshBooking(selected);
             }
             
         } catch (IOException e) {
@@ -253,13 +372,14 @@ public class FlightBookerApplication extends Application {
     
     @FXML
     private void handleCancelBooking() {
-        Booking selectedBooking = bookingsListView.getSelectionModel().getSelectedItem();
+        BookingSummary selected = bookingsListView.getSelectionModel().getSelectedItem();
         
-        if (selectedBooking == null) {
+        if (selected == null) {
             showAlert(Alert.AlertType.WARNING, "No Booking Selected", 
                     "Please select a booking to cancel");
             return;
         }
+        Booking selectedBooking = selected.getBooking();
         
         // Ask for confirmation
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
@@ -271,16 +391,19 @@ public class FlightBookerApplication extends Application {
         
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            boolean success = bookingController.cancelBooking(selectedBooking.getBookingId());
-            
-            if (success) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", 
-                        "Booking cancelled successfully");
-                refreshBookingsList();
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Error", 
-                        "Failed to cancel booking");
-            }
+            asyncService.run(() -> bookingController.cancelBooking(selectedBooking.getBookingId()),
+                success -> {
+                    if (success) {
+                        showAlert(Alert.AlertType.INFORMATION, "Success", 
+                                "Booking cancelled successfully");
+                        refreshBooking(selected);
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Error", 
+                                "Failed to cancel booking");
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Error", 
+                        "Failed to cancel booking: " + error.getMessage()));
         }
     }
     
@@ -289,7 +412,7 @@ public class FlightBookerApplication extends Application {
         try {
             // Open the flight search dialog
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/flight-search-view.fxml"));
-            FlightSearchController controller = new FlightSearchController(flightController);
+            FlightSearchController controller = new FlightSearchController(flightController, asyncService);
             loader.setController(controller);
             
             Parent root = loader.load();
@@ -318,30 +441,75 @@ public class FlightBookerApplication extends Application {
         alert.setTitle("Flight Details");
         alert.setHeaderText("Flight " + flight.getFlightNumber());
         
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-        
         String content = String.format(
             "From: %s\nTo: %s\nDeparture: %s\nArrival: %s",
             flight.getOrigin(),
             flight.getDestination(),
-            flight.getDepartureTime().format(formatter),
-            flight.getArrivalTime().format(formatter)
+            flight.getDepartureTime().format(DATE_FORMAT),
+            flight.getArrivalTime().format(DATE_FORMAT)
         );
         
         alert.setContentText(content);
         alert.showAndWait();
     }
     
+    // Starts over from the newest bookings
     private void refreshBookingsList() {
         if (currentCustomer != null) {
-            List<Booking> customerBookings = bookingController.getBookingsByCustomer(
-                    currentCustomer.getCustomerId());
-            
-            bookingsObservableList.clear();
-            bookingsObservableList.addAll(customerBookings);
+            String customerId = currentCustomer.getCustomerId();
+            loadingBookings = true;
+            bookingsRequest.run(() -> bookingController.getBookingSummaryPage(customerId, null, BOOKINGS_PAGE_SIZE),
+                this::showFirstBookingsPage,
+                error -> {
+                    loadingBookings = false;
+                    showAlert(Alert.AlertType.ERROR, "Error", "Could not load bookings: " + error.getMessage());
+                });
         }
     }
     
+    private void showFirstBookingsPage(List<BookingSummary> page) {
+        bookingsObservableList.setAll(page);
+        moreBookings = page.size() == BOOKINGS_PAGE_SIZE;
+        loadingBookings = false;
+    }
+    
+    // Appends the page after the last loaded booking, unless it is already loading
+    private void loadNextBookingsPage() {
+        if (!moreBookings || loadingBookings || currentCustomer == null || bookingsObservableList.isEmpty()) {
+            return;
+        }
+        loadingBookings = true;
+        
+        String customerId = currentCustomer.getCustomerId();
+        BookingSummary last = bookingsObservableList.get(bookingsObservableList.size() - 1);
+        bookingsRequest.run(() -> bookingController.getBookingSummaryPage(customerId, last, BOOKINGS_PAGE_SIZE),
+            page -> {
+                bookingsObservableList.addAll(page);
+                moreBookings = page.size() == BOOKINGS_PAGE_SIZE;
+                loadingBookings = false;
+            },
+            error -> {
+                // Not retried on every scroll, the list can be reloaded by searching again
+                moreBookings = false;
+                loadingBookings = false;
+                showAlert(Alert.AlertType.ERROR, "Error", "Could not load bookings: " + error.getMessage());
+            });
+    }
+    
+    // Reloads one booking in place, keeping the pages loaded so far
+    private void refreshBooking(BookingSummary summary) {
+        String bookingId = summary.getBooking().getBookingId();
+        asyncService.run(() -> bookingController.viewBooking(bookingId),
+            booking -> {
+                int index = bookingsObservableList.indexOf(summary);
+                if (booking != null && index >= 0) {
+                    bookingsObservableList.set(index, new BookingSummary(
+                        booking, summary.getOrigin(), summary.getDestination(), summary.getDepartureTime()));
+                }
+            },
+            error -> showAlert(Alert.AlertType.ERROR, "Error", "Could not load booking: " + error.getMessage()));
+    }
+    
     private void updateUIState() {
         boolean customerSelected = currentCustomer != null;
         boolean bookingSelected = bookingsListView.getSelectionModel().getSelectedItem() != null;
@@ -361,6 +529,21 @@ public class FlightBookerApplication extends Application {
     }
     
     public static void main(String[] args) {
-        launch();
+        launch(args);
+    }
+    
+    /**
+     * A customer looked up by ID together with their bookings, null if there is no such customer
+     */
+    private static class CustomerBookings {
+        private final String customerId;
+        private final Customer customer;
+        private final List<BookingSummary> bookings;
+        
+        CustomerBookings(String customerId, Customer customer, List<BookingSummary> bookings) {
+            this.customerId = customerId;
+            this.customer = customer;
+            this.bookings = bookings;
+        }
     }
 }
\ No newline at end of file
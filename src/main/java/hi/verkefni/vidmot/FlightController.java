@@ -1,23 +1,187 @@
 package hi.verkefni.vidmot;
 
+import hi.verkefni.vinnsla.DepartureRange;
 import hi.verkefni.vinnsla.Flight;
 import hi.verkefni.vinnsla.FlightDB;
+import hi.verkefni.vinnsla.FlightSearchIndex;
+import hi.verkefni.vinnsla.Itinerary;
+import hi.verkefni.vinnsla.RouteGraph;
+import hi.verkefni.vinnsla.TtlCache;
 import java.time.LocalDateTime;
 import java.util.List;
 
 public class FlightController {
+    private static final int FLIGHT_CACHE_SIZE = 1000;
+    private static final long FLIGHT_CACHE_TTL_MILLIS = 5 * 60 * 1000;
+    private static final long MIN_CONNECTION_MILLIS = 45 * 60 * 1000;
+    private static final int MAX_LEGS = 3;
+    
     private FlightDB flightDB;
+    private TtlCache<String, Flight> flightCache;
+    // Loaded from the database on first use and kept up to date as flights change
+    private volatile FlightSearchIndex searchIndex;
+    // Built from the search index on first use and dropped whenever a flight changes
+    private volatile RouteGraph routeGraph;
+    // Bumped by every change, so an index or graph built from flights read before one isn't kept
+    private long flightsVersion = 0;
     
     public FlightController(FlightDB flightDB) {
+        this(flightDB, new TtlCache<>(FLIGHT_CACHE_SIZE, FLIGHT_CACHE_TTL_MILLIS, false));
+    }
+    
+    public FlightController(FlightDB flightDB, TtlCache<String, Flight> flightCache) {
         this.flightDB = flightDB;
+        this.flightCache = flightCache;
     }
     
+    /**
+     * Looks up a flight, from the flight cache when possible
+     * 
+     * @param flightNumber The flight number
+     * @return The flight, or null if there is no such flight
+     */
     public Flight getFlightByNumber(String flightNumber) {
-        return flightDB.selectByFlightNumber(flightNumber);
+        return flightCache.get(flightNumber, flightDB::selectByFlightNumber);
+    }
+    
+    /**
+     * Moves a flight to new departure and arrival times
+     * 
+     * @param flightNumber The flight to reschedule
+     * @param departureTime New departure time
+     * @param arrivalTime New arrival time
+     * @return The rescheduled flight
+     */
+    public Flight rescheduleFlight(String flightNumber, LocalDateTime departureTime, LocalDateTime arrivalTime) {
+        Flight flight = flightDB.selectByFlightNumber(flightNumber);
+        if (flight == null) {
+            throw new IllegalArgumentException("Flight not found");
+        }
+        
+        if (!arrivalTime.isAfter(departureTime)) {
+            throw new IllegalArgumentException("Arrival must be after departure");
+        }
+        
+        flight.setDepartureTime(departureTime);
+        flight.setArrivalTime(arrivalTime);
+        flightDB.update(flight);
+        flightChanged(flightNumber, flight);
+        
+        return flight;
     }
     
     /**
-     * Flexible flight search that handles null or empty parameters
+     * Drops a flight from the cache and reloads it into the search index,
+     * call whenever the flight is added or changed
+     * 
+     * @param flightNumber The flight number
+     */
+    public void invalidateFlight(String flightNumber) {
+        flightChanged(flightNumber, flightDB.selectByFlightNumber(flightNumber));
+    }
+    
+    /**
+     * Drops everything loaded from the Flight table, call after many flights
+     * have been changed outside this controller, e.g. by a timetable import
+     */
+    public synchronized void invalidateFlights() {
+        flightsVersion++;
+        searchIndex = null;
+        routeGraph = null;
+        flightCache.invalidateAll();
+    }
+    
+    // Brings the search index up to date with a changed flight, null if it was removed
+    private void flightChanged(String flightNumber, Flight flight) {
+        flightCache.invalidate(flightNumber);
+        synchronized (this) {
+            if (searchIndex != null) {
+                if (flight != null) {
+                    searchIndex.put(flight);
+                } else {
+                    searchIndex.remove(flightNumber);
+                }
+            }
+            flightsVersion++;
+            routeGraph = null;
+        }
+    }
+    
+    /**
+     * @return The search index of all flights, loaded if there is none yet
+     */
+    public FlightSearchIndex getSearchIndex() {
+        FlightSearchIndex index = searchIndex;
+        if (index == null) {
+            long versionBeforeLoad;
+            synchronized (this) {
+                versionBeforeLoad = flightsVersion;
+            }
+            index = new FlightSearchIndex(flightDB.getAllFlights());
+            synchronized (this) {
+                if (flightsVersion == versionBeforeLoad && searchIndex == null) {
+                    searchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * @return The route graph of all flights, built if there is none yet
+     */
+    public RouteGraph getRouteGraph() {
+        RouteGraph graph = routeGraph;
+        if (graph == null) {
+            long versionBeforeLoad;
+            synchronized (this) {
+                versionBeforeLoad = flightsVersion;
+            }
+            graph = new RouteGraph(getSearchIndex().getAllFlights(), MIN_CONNECTION_MILLIS);
+            synchronized (this) {
+                if (flightsVersion == versionBeforeLoad) {
+                    routeGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+    
+    /**
+     * Finds the trip, direct or with connections, that arrives soonest
+     * 
+     * @param origin Origin airport code
+     * @param destination Destination airport code
+     * @param departAfter Earliest departure of the first flight
+     * @return The trip, or null if the destination can't be reached
+     */
+    public Itinerary findEarliestArrival(String origin, String destination, LocalDateTime departAfter) {
+        return getRouteGraph().findEarliestArrival(origin, destination, departAfter);
+    }
+    
+    /**
+     * Finds trips with up to two connections, earliest arrival first
+     * 
+     * @param origin Origin airport code
+     * @param destination Destination airport code
+     * @param departAfter Earliest departure of the first flight
+     * @param maxResults Most trips to return
+     * @return List of trips
+     */
+    public List<Itinerary> findConnections(String origin, String destination, LocalDateTime departAfter, int maxResults) {
+        return getRouteGraph().findItineraries(origin, destination, departAfter, maxResults, MAX_LEGS);
+    }
+    
+    /**
+     * @return The cache used by getFlightByNumber, for hit-rate statistics
+     */
+    public TtlCache<String, Flight> getFlightCache() {
+        return flightCache;
+    }
+    
+    /**
+     * Flexible flight search that handles null or empty parameters,
+     * answered from the search index without going to the database
      * 
      * @param origin Origin airport code (can be null/empty)
      * @param destination Destination airport code (can be null/empty)
@@ -29,7 +193,21 @@ public class FlightController {
         if (origin != null && origin.trim().isEmpty()) origin = null;
         if (destination != null && destination.trim().isEmpty()) destination = null;
         
-        return flightDB.searchFlights(origin, destination, date);
+        return getSearchIndex().search(origin, destination, date);
+    }
+    
+    /**
+     * Finds flights departing in a range of time, e.g. a few days either
+     * side of a date or a window of each day, answered from the search index
+     * 
+     * @param origin Origin airport code (can be null/empty)
+     * @param destination Destination airport code (can be null/empty)
+     * @param range Departure times to accept
+     * @param limit Most flights to return
+     * @return List of matching flights, earliest departure first
+     */
+    public List<Flight> searchFlights(String origin, String destination, DepartureRange range, int limit) {
+        return getSearchIndex().search(origin, destination, range, limit);
     }
     
     /**
@@ -39,7 +217,7 @@ public class FlightController {
      * @return List of matching flights
      */
     public List<Flight> searchByOrigin(String origin) {
-        return flightDB.searchByOrigin(origin);
+        return getSearchIndex().search(origin, null, null);
     }
     
     /**
@@ -49,7 +227,7 @@ public class FlightController {
      * @return List of matching flights
      */
     public List<Flight> searchByDestination(String destination) {
-        return flightDB.searchByDestination(destination);
+        return getSearchIndex().search(null, destination, null);
     }
     
     /**
@@ -59,7 +237,7 @@ public class FlightController {
      * @return List of matching flights
      */
     public List<Flight> searchByDate(LocalDateTime date) {
-        return flightDB.searchByDate(date);
+        return getSearchIndex().search(null, null, date);
     }
     
     /**
@@ -68,7 +246,7 @@ public class FlightController {
      * @return List of all flights
      */
     public List<Flight> getAllFlights() {
-        return flightDB.getAllFlights();
+        return getSearchIndex().getAllFlights();
     }
     
     /**
@@ -77,7 +255,7 @@ public class FlightController {
      * @return List of airport codes
      */
     public List<String> getAllOrigins() {
-        return flightDB.getAllOrigins();
+        return getSearchIndex().getOrigins();
     }
     
     /**
@@ -86,6 +264,17 @@ public class FlightController {
      * @return List of airport codes
      */
     public List<String> getAllDestinations() {
-        return flightDB.getAllDestinations();
+        return getSearchIndex().getDestinations();
+    }
+    
+    /**
+     * Get the airports with direct flights from an origin, for narrowing
+     * down the destinations once an origin has been picked
+     * 
+     * @param origin The origin airport code
+     * @return List of airport codes
+     */
+    public List<String> getDestinationsFrom(String origin) {
+        return getSearchIndex().getDestinationsFrom(origin);
     }
 }
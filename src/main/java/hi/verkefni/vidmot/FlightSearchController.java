@@ -1,5 +1,6 @@
 package hi.verkefni.vidmot;
 
+import hi.verkefni.vinnsla.DepartureRange;
 import hi.verkefni.vinnsla.Flight;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
@@ -8,11 +9,19 @@ import javafx.stage.Stage;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 public class FlightSearchController {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int FLEXIBLE_DAYS = 3;
+    private static final int RANGE_SEARCH_LIMIT = 500;
+    
     private FlightController flightController;
+    private AsyncService asyncService;
+    private AsyncService.LatestRequest searchRequest;
+    private AsyncService.LatestRequest destinationsRequest;
     private Flight selectedFlight;
     
     @FXML
@@ -33,6 +42,12 @@ public class FlightSearchController {
     @FXML
     private DatePicker departureDatePicker;
     
+    @FXML
+    private CheckBox flexibleDateCheckBox;
+    
+    @FXML
+    private ComboBox<TimeOfDay> timeOfDayComboBox;
+    
     @FXML
     private Button searchFlightsButton;
     
@@ -49,14 +64,29 @@ public class FlightSearchController {
     private Button cancelButton;
     
     public FlightSearchController(FlightController flightController) {
+        this(flightController, AsyncService.getDefault());
+    }
+    
+    public FlightSearchController(FlightController flightController, AsyncService asyncService) {
         this.flightController = flightController;
+        this.asyncService = asyncService;
+        this.searchRequest = asyncService.latest();
+        this.destinationsRequest = asyncService.latest();
     }
     
     @FXML
     public void initialize() {
-        // Populate origin and destination dropdowns
-        originComboBox.setItems(FXCollections.observableArrayList(flightController.getAllOrigins()));
-        destinationComboBox.setItems(FXCollections.observableArrayList(flightController.getAllDestinations()));
+        // Populate origin and destination dropdowns once they have been loaded
+        asyncService.run(flightController::getAllOrigins,
+            origins -> originComboBox.setItems(FXCollections.observableArrayList(origins)),
+            this::showLoadError);
+        updateDestinations();
+        
+        // Only offer destinations with a direct flight from the chosen origin
+        originComboBox.valueProperty().addListener((obs, oldVal, newVal) -> updateDestinations());
+        
+        timeOfDayComboBox.setItems(FXCollections.observableArrayList(TimeOfDay.values()));
+        timeOfDayComboBox.setValue(TimeOfDay.ANY);
         
         // Configure flight list cell factory
         setupFlightsListView();
@@ -69,6 +99,23 @@ public class FlightSearchController {
             (obs, oldVal, newVal) -> selectFlightButton.setDisable(newVal == null));
     }
     
+    private void updateDestinations() {
+        String origin = originCheckBox.isSelected() ? originComboBox.getValue() : null;
+        if (origin == null || origin.isEmpty()) {
+            destinationsRequest.run(flightController::getAllDestinations, this::showDestinations, this::showLoadError);
+        } else {
+            destinationsRequest.run(() -> flightController.getDestinationsFrom(origin),
+                this::showDestinations, this::showLoadError);
+        }
+    }
+    
+    private void showDestinations(List<String> destinations) {
+        // Keep the chosen destination if it can still be reached
+        String selected = destinationComboBox.getValue();
+        destinationComboBox.setItems(FXCollections.observableArrayList(destinations));
+        destinationComboBox.setValue(destinations.contains(selected) ? selected : null);
+    }
+    
     private void setupFlightsListView() {
         flightsListView.setCellFactory(param -> new ListCell<Flight>() {
             @Override
@@ -78,13 +125,12 @@ public class FlightSearchController {
                 if (empty || flight == null) {
                     setText(null);
                 } else {
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
                     setText(String.format("%s: %s to %s - Depart: %s - Arrive: %s", 
                                       flight.getFlightNumber(),
                                       flight.getOrigin(),
                                       flight.getDestination(),
-                                      flight.getDepartureTime().format(formatter),
-                                      flight.getArrivalTime().format(formatter)));
+                                      flight.getDepartureTime().format(DATE_FORMAT),
+                                      flight.getArrivalTime().format(DATE_FORMAT)));
                 }
             }
         });
@@ -94,8 +140,10 @@ public class FlightSearchController {
     private void handleSearchOptionChanged() {
         // Enable/disable controls based on checkbox state
         originComboBox.setDisable(!originCheckBox.isSelected());
+        updateDestinations();
         destinationComboBox.setDisable(!destinationCheckBox.isSelected());
         departureDatePicker.setDisable(!dateCheckBox.isSelected());
+        flexibleDateCheckBox.setDisable(!dateCheckBox.isSelected());
         
         // Require at least one search option
         searchFlightsButton.setDisable(
@@ -123,12 +171,26 @@ public class FlightSearchController {
             return;
         }
         
+        // Flexible dates and times of day are one range search, not a search per day
+        TimeOfDay timeOfDay = timeOfDayComboBox.getValue();
+        boolean flexible = hasDate && flexibleDateCheckBox.isSelected();
+        if (flexible || (timeOfDay != null && timeOfDay != TimeOfDay.ANY)) {
+            DepartureRange range = hasDate ? DepartureRange.around(date, flexible ? FLEXIBLE_DAYS : 0) : DepartureRange.anyDate();
+            DepartureRange window = timeOfDay == null ? range : range.withTimeOfDay(timeOfDay.start, timeOfDay.end);
+            searchRequest.run(() -> flightController.searchFlights(origin, destination, window, RANGE_SEARCH_LIMIT),
+                this::showFlights, this::showLoadError);
+            return;
+        }
+        
         // Convert LocalDate to LocalDateTime (start of day) if date is provided
         LocalDateTime departureDateTime = hasDate ? date.atStartOfDay() : null;
         
-        // Search flights with flexible parameters
-        List<Flight> flights = flightController.searchFlights(origin, destination, departureDateTime);
-        
+        // Search flights with flexible parameters, a newer search replaces one still running
+        searchRequest.run(() -> flightController.searchFlights(origin, destination, departureDateTime),
+            this::showFlights, this::showLoadError);
+    }
+    
+    private void showFlights(List<Flight> flights) {
         flightsListView.setItems(FXCollections.observableArrayList(flights));
         
         if (flights.isEmpty()) {
@@ -143,15 +205,18 @@ public class FlightSearchController {
         originCheckBox.setSelected(false);
         destinationCheckBox.setSelected(false);
         dateCheckBox.setSelected(false);
+        flexibleDateCheckBox.setSelected(false);
         
         originComboBox.setValue(null);
         destinationComboBox.setValue(null);
         departureDatePicker.setValue(null);
+        timeOfDayComboBox.setValue(TimeOfDay.ANY);
         
         // Reset controls state
         handleSearchOptionChanged();
         
-        // Clear results
+        // Clear results, including those of a search still running
+        searchRequest.cancel();
         flightsListView.getItems().clear();
     }
     
@@ -169,6 +234,7 @@ public class FlightSearchController {
     @FXML
     private void handleCancel() {
         // Reset selection and close dialog
+        searchRequest.cancel();
         selectedFlight = null;
         Stage stage = (Stage) cancelButton.getScene().getWindow();
         stage.close();
@@ -182,6 +248,10 @@ public class FlightSearchController {
         alert.showAndWait();
     }
     
+    private void showLoadError(Throwable error) {
+        showAlert(Alert.AlertType.ERROR, "Error", "Could not load flights: " + error.getMessage());
+    }
+    
     /**
      * Get the flight selected by the user
      * 
@@ -190,4 +260,30 @@ public class FlightSearchController {
     public Flight getSelectedFlight() {
         return selectedFlight;
     }
+    
+    /**
+     * Parts of the day a search can be narrowed to
+     */
+    private enum TimeOfDay {
+        ANY("Any time", null, null),
+        NIGHT("Night (00-06)", LocalTime.MIDNIGHT, LocalTime.of(6, 0)),
+        MORNING("Morning (06-12)", LocalTime.of(6, 0), LocalTime.NOON),
+        AFTERNOON("Afternoon (12-18)", LocalTime.NOON, LocalTime.of(18, 0)),
+        EVENING("Evening (18-24)", LocalTime.of(18, 0), LocalTime.MIDNIGHT);
+        
+        private final String label;
+        private final LocalTime start;
+        private final LocalTime end;
+        
+        TimeOfDay(String label, LocalTime start, LocalTime end) {
+            this.label = label;
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
 }
\ No newline at end of file
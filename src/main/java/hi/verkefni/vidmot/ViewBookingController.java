@@ -14,6 +14,8 @@ public class ViewBookingController {
     private BookingController bookingController;
     private FlightController flightController;
     private CustomerController customerController;
+    private AsyncService asyncService;
+    private AsyncService.LatestRequest seatsRequest;
     private String bookingId;
     private Booking booking;
     private boolean bookingUpdated = false;
@@ -67,25 +69,53 @@ public class ViewBookingController {
                                FlightController flightController,
                                CustomerController customerController,
                                String bookingId) {
+        this(bookingController, flightController, customerController, bookingId, AsyncService.getDefault());
+    }
+    
+    public ViewBookingController(BookingController bookingController, 
+                               FlightController flightController,
+                               CustomerController customerController,
+                               String bookingId,
+                               AsyncService asyncService) {
         this.bookingController = bookingController;
         this.flightController = flightController;
         this.customerController = customerController;
         this.bookingId = bookingId;
+        this.asyncService = asyncService;
+        this.seatsRequest = asyncService.latest();
     }
     
     @FXML
     public void initialize() {
-        // Load booking details
-        booking = bookingController.viewBooking(bookingId);
+        // Nothing can be changed until the booking has loaded
+        changeSeatButton.setDisable(true);
+        cancelBookingButton.setDisable(true);
         
-        if (booking == null) {
+        // Load booking details and related data
+        asyncService.run(this::loadDetails, this::showDetails,
+            error -> showAlert(Alert.AlertType.ERROR, "Error", "Could not load booking: " + error.getMessage()));
+    }
+    
+    // Runs in the background
+    private BookingDetails loadDetails() {
+        Booking loaded = bookingController.viewBooking(bookingId);
+        if (loaded == null) {
+            return null;
+        }
+        return new BookingDetails(loaded,
+                                  customerController.getCustomer(loaded.getCustomerId()),
+                                  flightController.getFlightByNumber(loaded.getFlightNumber()));
+    }
+    
+    private void showDetails(BookingDetails details) {
+        if (details == null) {
             showAlert(Alert.AlertType.ERROR, "Error", "Booking not found");
             return;
         }
         
-        // Load related data
-        Customer customer = customerController.getCustomer(booking.getCustomerId());
-        Flight flight = flightController.getFlightByNumber(booking.getFlightNumber());
+        booking = details.booking;
+        Customer customer = details.customer;
+        Flight flight = details.flight;
         
         // Set data
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
@@ -119,8 +149,11 @@ public class ViewBookingController {
     }
     
     private void loadAvailableSeats() {
-        List<Seat> availableSeats = bookingController.getAvailableSeats(booking.getFlightNumber());
-        availableSeatsComboBox.setItems(FXCollections.observableArrayList(availableSeats));
+        // Only the seats from the latest load are shown, e.g. after changing seat twice
+        String flightNumber = booking.getFlightNumber();
+        seatsRequest.run(() -> bookingController.getAvailableSeats(flightNumber),
+            availableSeats -> availableSeatsComboBox.setItems(FXCollections.observableArrayList(availableSeats)),
+            error -> showAlert(Alert.AlertType.ERROR, "Error", "Could not load seats: " + error.getMessage()));
         
         // Set cell factory to display seat numbers properly
         availableSeatsComboBox.setCellFactory(param -> new ListCell<Seat>() {
@@ -160,24 +193,31 @@ public class ViewBookingController {
             return;
         }
         
-        try {
-            bookingController.updateBooking(booking.getBookingId(), selectedSeat);
-            bookingUpdated = true;
-            
-            // Refresh booking details
-            booking = bookingController.viewBooking(bookingId);
-            currentSeatLabel.setText(booking.getSeatNumber());
-            
-            // Reload available seats
-            loadAvailableSeats();
-            
-            showAlert(Alert.AlertType.INFORMATION, "Success", 
-                    "Seat changed successfully to " + selectedSeat.getSeatNumber());
-            
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Error", 
-                    "Error changing seat: " + e.getMessage());
-        }
+        changeSeatButton.setDisable(true);
+        asyncService.run(() -> changeSeat(selectedSeat),
+            updated -> {
+                bookingUpdated = true;
+                booking = updated;
+                currentSeatLabel.setText(booking.getSeatNumber());
+                changeSeatButton.setDisable(false);
+                
+                // Reload available seats
+                loadAvailableSeats();
+                
+                showAlert(Alert.AlertType.INFORMATION, "Success", 
+                        "Seat changed successfully to " + selectedSeat.getSeatNumber());
+            },
+            error -> {
+                changeSeatButton.setDisable(false);
+                showAlert(Alert.AlertType.ERROR, "Error", 
+                        "Error changing seat: " + error.getMessage());
+            });
+    }
+    
+    // Runs in the background, returns the refreshed booking details
+    private Booking changeSeat(Seat newSeat) {
+        bookingController.updateBooking(bookingId, newSeat);
+        return bookingController.viewBooking(bookingId);
     }
     
     @FXML
@@ -190,30 +230,39 @@ public class ViewBookingController {
         
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            boolean success = bookingController.cancelBooking(booking.getBookingId());
-            
-            if (success) {
-                bookingUpdated = true;
-                
-                // Refresh booking details
-                booking = bookingController.viewBooking(bookingId);
-                statusLabel.setText(booking.getStatus());
-                
-                // Update button states
-                changeSeatButton.setDisable(true);
-                cancelBookingButton.setDisable(true);
-                
-                showAlert(Alert.AlertType.INFORMATION, "Success", 
-                        "Booking cancelled successfully");
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Error", 
-                        "Failed to cancel booking");
-            }
+            cancelBookingButton.setDisable(true);
+            // Refreshed booking details, or null if the booking couldn't be cancelled
+            asyncService.run(() -> bookingController.cancelBooking(bookingId)
+                                   ? bookingController.viewBooking(bookingId) : null,
+                cancelled -> {
+                    if (cancelled != null) {
+                        bookingUpdated = true;
+                        booking = cancelled;
+                        statusLabel.setText(booking.getStatus());
+                        
+                        // Update button states
+                        changeSeatButton.setDisable(true);
+                        cancelBookingButton.setDisable(true);
+                        
+                        showAlert(Alert.AlertType.INFORMATION, "Success", 
+                                "Booking cancelled successfully");
+                    } else {
+                        cancelBookingButton.setDisable(false);
+                        showAlert(Alert.AlertType.ERROR, "Error", 
+                                "Failed to cancel booking");
+                    }
+                },
+                error -> {
+                    cancelBookingButton.setDisable(false);
+                    showAlert(Alert.AlertType.ERROR, "Error", 
+                            "Failed to cancel booking: " + error.getMessage());
+                });
         }
     }
     
     @FXML
     private void handleClose() {
+        seatsRequest.cancel();
         Stage stage = (Stage) closeButton.getScene().getWindow();
         stage.close();
     }
@@ -229,4 +278,19 @@ public class ViewBookingController {
     public boolean isBookingUpdated() {
         return bookingUpdated;
     }
+    
+    /**
+     * A booking together with its customer and flight, loaded in one go
+     */
+    private static class BookingDetails {
+        private final Booking booking;
+        private final Customer customer;
+        private final Flight flight;
+        
+        BookingDetails(Booking booking, Customer customer, Flight flight) {
+            this.booking = booking;
+            this.customer = customer;
+            this.flight = flight;
+        }
+    }
 }
\ No newline at end of file
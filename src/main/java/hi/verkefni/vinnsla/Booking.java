@@ -9,6 +9,8 @@ public class Booking {
     private String customerId;
     private String flightNumber;
     private String seatNumber;
+    // Row version the booking was read at, updates only succeed if the row is still at this version
+    private long version;
     
     public Booking(String bookingId, LocalDateTime bookingDate, String status, 
                   String customerId, String flightNumber, String seatNumber) {
@@ -78,4 +80,12 @@ public class Booking {
     public void setSeatNumber(String seatNumber) {
         this.seatNumber = seatNumber;
     }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
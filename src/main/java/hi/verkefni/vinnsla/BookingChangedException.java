@@ -0,0 +1,21 @@
+package hi.verkefni.vinnsla;
+
+/**
+ * Thrown when a booking is saved but someone else changed it after it was
+ * read, so saving it would overwrite their change. Nothing has been saved;
+ * read the booking again and redo the change.
+ */
+public class BookingChangedException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final String bookingId;
+
+    public BookingChangedException(String bookingId) {
+        super("Booking " + bookingId + " was changed by someone else, please try again");
+        this.bookingId = bookingId;
+    }
+
+    public String getBookingId() {
+        return bookingId;
+    }
+}
@@ -1,46 +1,56 @@
 package hi.verkefni.vinnsla;
 
+import java.io.IOException;
 import java.sql.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class BookingDB {
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-    private Connection connect() {
-        // SQLite connection string
-        String url = "jdbc:sqlite:flightbooker.db";
-        Connection conn = null;
-        try {
-            conn = DriverManager.getConnection(url);
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-        return conn;
+    private static final String SUMMARY_SQL =
+        "SELECT b.bookingId, b.bookingDate, b.status, b.customerId, b.flightNumber, b.seatNumber, b.version, " +
+        "f.origin, f.destination, f.departureTime " +
+        "FROM Booking b LEFT JOIN Flight f ON f.flightNumber = b.flightNumber " +
+        "WHERE b.customerId = ? ";
+    
+    // Compare-and-set on the seat status, changes no row if the seat is taken or doesn't exist
+    private static final String CLAIM_SEAT_SQL =
+        "UPDATE Seat SET seatStatus = 1, version = version + 1 " +
+        "WHERE flightNumber = ? AND seatNumber = ? AND seatStatus = 0";
+    
+    private final ConnectionProvider connectionProvider;
+    // Writes go through this when group commit is on
+    private volatile BookingWriter writer;
+    // Committed changes are logged here when it is attached
+    private volatile BookingEventStore eventStore;
+    
+    public BookingDB() {
+        this(ConnectionProvider.getDefault());
+    }
+    
+    public BookingDB(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
     }
     
     // Select a booking by ID
     public Booking selectById(String bookingId) {
-        String sql = "SELECT bookingId, bookingDate, status, customerId, flightNumber, seatNumber " +
+        String sql = "SELECT bookingId, bookingDate, status, customerId, flightNumber, seatNumber, version " +
                      "FROM Booking WHERE bookingId = ?";
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, bookingId);
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
-                return new Booking(
-                    rs.getString("bookingId"),
-                    LocalDateTime.parse(rs.getString("bookingDate"), formatter),
-                    rs.getString("status"),
-                    rs.getString("customerId"),
-                    rs.getString("flightNumber"),
-                    rs.getString("seatNumber")
-                );
+                return toBooking(rs);
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -50,26 +60,19 @@ public class BookingDB {
     
     // Get bookings by customer ID
     public List<Booking> selectByCustomerId(String customerId) {
-        String sql = "SELECT bookingId, bookingDate, status, customerId, flightNumber, seatNumber " +
+        String sql = "SELECT bookingId, bookingDate, status, customerId, flightNumber, seatNumber, version " +
                      "FROM Booking WHERE customerId = ?";
         
         List<Booking> bookings = new ArrayList<>();
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, customerId);
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                bookings.add(new Booking(
-                    rs.getString("bookingId"),
-                    LocalDateTime.parse(rs.getString("bookingDate"), formatter),
-                    rs.getString("status"),
-                    rs.getString("customerId"),
-                    rs.getString("flightNumber"),
-                    rs.getString("seatNumber")
-                ));
+                bookings.add(toBooking(rs));
             }
         } catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -77,112 +80,600 @@ public class BookingDB {
         return bookings;
     }
     
-    // Insert a new booking
-    public void insert(Booking booking) {
-        String sql = "INSERT INTO Booking(bookingId, bookingDate, status, customerId, flightNumber, seatNumber) " +
-                     "VALUES(?,?,?,?,?,?)";
+    // Get every booking, e.g. to start a booking event log from what is already in the database
+    public List<Booking> selectAll() {
+        try (Connection conn = connectionProvider.getReadConnection()) {
+            return selectAll(conn);
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    // Reads every booking on the given connection
+    private List<Booking> selectAll(Connection conn) throws SQLException {
+        String sql = "SELECT bookingId, bookingDate, status, customerId, flightNumber, seatNumber, version " +
+                     "FROM Booking ORDER BY bookingDate, bookingId";
+        List<Booking> bookings = new ArrayList<>();
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                bookings.add(toBooking(rs));
+            }
+        }
+        return bookings;
+    }
+    
+    // Get bookings by customer ID with the route of each booking's flight, in one query
+    public List<BookingSummary> selectSummariesByCustomerId(String customerId) {
+        List<BookingSummary> summaries = new ArrayList<>();
+        streamSummariesByCustomerId(customerId, summaries::add);
+        return summaries;
+    }
+    
+    /**
+     * Gets one page of a customer's bookings, newest first. The next page
+     * continues after the last booking of the previous one, so each page
+     * takes the same time to load no matter how far into the history it is.
+     * 
+     * @param customerId The customer ID
+     * @param after Last booking of the previous page, or null for the first page
+     * @param limit Maximum number of bookings in the page
+     * @return The bookings, fewer than limit on the last page
+     */
+    public List<BookingSummary> selectSummaryPage(String customerId, BookingSummary after, int limit) {
+        String sql = SUMMARY_SQL +
+                     (after != null ? "AND (b.bookingDate, b.bookingId) < (?, ?) " : "") +
+                     "ORDER BY b.bookingDate DESC, b.bookingId DESC LIMIT ?";
+        
+        List<BookingSummary> summaries = new ArrayList<>();
+        
+        try (Connection conn = connectionProvider.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            pstmt.setString(index++, customerId);
+            if (after != null) {
+                pstmt.setLong(index++, Timestamps.toEpochSecond(after.getBooking().getBookingDate()));
+                pstmt.setString(index++, after.getBooking().getBookingId());
+            }
+            pstmt.setInt(index, limit);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                summaries.add(toSummary(rs));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return summaries;
+    }
+    
+    /**
+     * Hands a customer's bookings to an action one at a time, newest first,
+     * without holding them all in memory. A read connection is held until
+     * the last booking has been handled, so the action should be quick.
+     * 
+     * @param customerId The customer ID
+     * @param action Called with each booking
+     */
+    public void streamSummariesByCustomerId(String customerId, Consumer<BookingSummary> action) {
+        String sql = SUMMARY_SQL + "ORDER BY b.bookingDate DESC, b.bookingId DESC";
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-             
-            // Set transaction to handle multi-table operations atomically
-            conn.setAutoCommit(false);
             
+            pstmt.setString(1, customerId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                action.accept(toSummary(rs));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+    
+    private static Booking toBooking(ResultSet rs) throws SQLException {
+        Booking booking = new Booking(
+            rs.getString("bookingId"),
+            Timestamps.fromEpochSecond(rs.getLong("bookingDate")),
+            rs.getString("status"),
+            rs.getString("customerId"),
+            rs.getString("flightNumber"),
+            rs.getString("seatNumber")
+        );
+        booking.setVersion(rs.getLong("version"));
+        return booking;
+    }
+    
+    private static BookingSummary toSummary(ResultSet rs) throws SQLException {
+        Booking booking = toBooking(rs);
+        // No departure time if the flight wasn't found
+        long departureTime = rs.getLong("departureTime");
+        boolean noFlight = rs.wasNull();
+        return new BookingSummary(
+            booking,
+            rs.getString("origin"),
+            rs.getString("destination"),
+            noFlight ? null : Timestamps.fromEpochSecond(departureTime)
+        );
+    }
+    
+    /**
+     * Sends inserts, updates and deletes through a single writer thread that
+     * commits them in shared transactions. The write methods then wait for
+     * the transaction their change was part of, and behave as before.
+     * 
+     * @param policy Batch size and delay of the shared transactions
+     * @return The writer, for handing it changes without waiting
+     */
+    public synchronized BookingWriter startGroupCommit(GroupCommitPolicy policy) {
+        if (writer == null) {
+            writer = new BookingWriter(this, connectionProvider, policy);
+            writer.start();
+        }
+        return writer;
+    }
+    
+    /**
+     * Writes the changes still waiting in the writer and goes back to one transaction per change
+     */
+    public synchronized void stopGroupCommit() {
+        if (writer != null) {
+            writer.shutdown();
+            writer = null;
+        }
+    }
+    
+    /**
+     * Logs every change committed from now on to a booking event store. A
+     * change is logged right after its commit, before the next transaction
+     * can start, so the log has the changes in the order they were committed.
+     * 
+     * The store is first brought up to date with the Booking table, so it
+     * isn't missing bookings made before it was attached, e.g. while it was
+     * being opened, or all of them if the store is new.
+     * 
+     * @param store The event store
+     * @return Number of events recorded to bring the store up to date, or -1 on a database error, the store isn't attached then
+     */
+    public int attachEventStore(BookingEventStore store) {
+        // Read on the writer connection, so no change can be committed between the read and attaching
+        Integer recorded = callInTransaction((conn, events) -> attach(store, selectAll(conn)));
+        return recorded == null ? -1 : recorded;
+    }
+    
+    // Brings the store up to date with the bookings and logs to it from now on
+    int attach(BookingEventStore store, List<Booking> bookings) {
+        List<BookingEvent> events = new ArrayList<>();
+        Set<String> bookingIds = new HashSet<>();
+        for (Booking booking : bookings) {
+            bookingIds.add(booking.getBookingId());
+        }
+        // Bookings deleted while nothing was logging
+        for (Booking logged : store.getBookings()) {
+            if (!bookingIds.contains(logged.getBookingId())) {
+                events.add(BookingEvent.deleted(logged));
+            }
+        }
+        for (Booking booking : bookings) {
+            Booking logged = store.getBooking(booking.getBookingId());
+            if (logged == null) {
+                events.add(BookingEvent.created(booking));
+            } else if (logged.getVersion() != booking.getVersion() || !sameFields(logged, booking)) {
+                events.add(BookingEvent.updated(booking));
+            }
+        }
+        record(store, events);
+        eventStore = store;
+        return events.size();
+    }
+    
+    /**
+     * @return The event store changes are logged to, or null if none is attached
+     */
+    public BookingEventStore getEventStore() {
+        return eventStore;
+    }
+    
+    // Logs the changes of a committed transaction, called before the writer connection is given back
+    void logEvents(List<BookingEvent> events) {
+        BookingEventStore store = eventStore;
+        if (store != null) {
+            record(store, events);
+        }
+    }
+    
+    // A failing log doesn't undo the change, it is committed already
+    private static void record(BookingEventStore store, List<BookingEvent> events) {
+        for (BookingEvent event : events) {
+            try {
+                store.record(event);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error logging booking event: " + e.getMessage());
+            }
+        }
+    }
+    
+    private static boolean isCancelled(Booking booking) {
+        return "CANCELLED".equals(booking.getStatus());
+    }
+    
+    private static boolean sameFields(Booking a, Booking b) {
+        return Objects.equals(a.getBookingDate(), b.getBookingDate()) && Objects.equals(a.getStatus(), b.getStatus())
+            && Objects.equals(a.getCustomerId(), b.getCustomerId())
+            && Objects.equals(a.getFlightNumber(), b.getFlightNumber())
+            && Objects.equals(a.getSeatNumber(), b.getSeatNumber());
+    }
+    
+    // The booking as committed at the given row version, for its events
+    private static Booking committed(Booking booking, long version) {
+        Booking committed = new Booking(booking.getBookingId(), booking.getBookingDate(), booking.getStatus(),
+                                        booking.getCustomerId(), booking.getFlightNumber(), booking.getSeatNumber());
+        committed.setVersion(version);
+        return committed;
+    }
+    
+    /**
+     * Events of an update: a seat change and a cancellation are logged as
+     * such, any other change, or none, as the whole booking being updated
+     * 
+     * @param stored The booking before the update
+     * @param saved The booking as committed, at its new version
+     */
+    static List<BookingEvent> updateEvents(Booking stored, Booking saved) {
+        boolean seatChanged = !stored.getFlightNumber().equals(saved.getFlightNumber()) ||
+                              !stored.getSeatNumber().equals(saved.getSeatNumber());
+        boolean cancelled = isCancelled(saved) && !isCancelled(stored);
+        boolean otherChange = !Objects.equals(stored.getBookingDate(), saved.getBookingDate())
+            || !Objects.equals(stored.getCustomerId(), saved.getCustomerId())
+            || (!cancelled && !Objects.equals(stored.getStatus(), saved.getStatus()));
+        
+        List<BookingEvent> events = new ArrayList<>();
+        if (otherChange || (!seatChanged && !cancelled)) {
+            events.add(BookingEvent.updated(saved));
+        } else {
+            if (seatChanged) {
+                events.add(BookingEvent.seatChanged(saved));
+            }
+            if (cancelled) {
+                events.add(BookingEvent.cancelled(saved));
+            }
+        }
+        return events;
+    }
+    
+    /**
+     * Inserts a new booking and marks its seat as taken, in one transaction
+     * 
+     * @param booking The booking
+     * @return true if the booking was saved, false on a database error
+     * @throws SeatConflictException if the seat was already taken, nothing is saved then
+     */
+    public boolean insert(Booking booking) {
+        BookingWriter groupCommit = writer;
+        if (groupCommit != null) {
+            return await(groupCommit.insert(booking));
+        }
+        return runInTransaction((conn, events) -> insert(conn, booking, events));
+    }
+    
+    // Inserts a booking inside the caller's transaction, adding the event to log once it commits
+    void insert(Connection conn, Booking booking, List<BookingEvent> events) throws SQLException {
+        String sql = "INSERT INTO Booking(bookingId, bookingDate, status, customerId, flightNumber, seatNumber) " +
+                     "VALUES(?,?,?,?,?,?)";
+        
+        // Claim the seat first, a seat that is already taken rolls back the whole booking
+        claimSeat(conn, booking.getFlightNumber(), booking.getSeatNumber());
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, booking.getBookingId());
-            pstmt.setString(2, booking.getBookingDate().format(formatter));
+            pstmt.setLong(2, Timestamps.toEpochSecond(booking.getBookingDate()));
             pstmt.setString(3, booking.getStatus());
             pstmt.setString(4, booking.getCustomerId());
             pstmt.setString(5, booking.getFlightNumber());
             pstmt.setString(6, booking.getSeatNumber());
             pstmt.executeUpdate();
-            
-            // Update seat status in Seat table
-            updateSeatStatus(conn, booking.getFlightNumber(), booking.getSeatNumber(), true);
-            
-            conn.commit();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
         }
+        // New rows start at version 0
+        events.add(BookingEvent.created(committed(booking, 0)));
     }
     
-    // Update an existing booking
-    public void update(Booking booking) {
-        // First get the old booking to know which seat to free
-        Booking oldBooking = selectById(booking.getBookingId());
-        if (oldBooking == null) {
-            return;
+    /**
+     * Inserts several bookings in one transaction, either all of them are saved or none
+     * 
+     * @param bookings The bookings
+     * @return true if the bookings were saved, false on a database error
+     * @throws SeatConflictException if one of the seats was already taken, nothing is saved then
+     */
+    public boolean insertAll(List<Booking> bookings) {
+        BookingWriter groupCommit = writer;
+        if (groupCommit != null) {
+            return await(groupCommit.insertAll(bookings));
         }
+        return runInTransaction((conn, events) -> insertAll(conn, bookings, events));
+    }
+    
+    // Inserts several bookings inside the caller's transaction, adding the events to log once it commits
+    void insertAll(Connection conn, List<Booking> bookings, List<BookingEvent> events) throws SQLException {
+        String bookingSql = "INSERT INTO Booking(bookingId, bookingDate, status, customerId, flightNumber, seatNumber) " +
+                            "VALUES(?,?,?,?,?,?)";
         
-        String sql = "UPDATE Booking SET bookingDate = ?, status = ?, customerId = ?, " +
-                     "flightNumber = ?, seatNumber = ? WHERE bookingId = ?";
-        
-        try (Connection conn = this.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            // Set transaction to handle multi-table update atomically
-            conn.setAutoCommit(false);
+        try (PreparedStatement bookingStmt = conn.prepareStatement(bookingSql);
+             PreparedStatement seatStmt = conn.prepareStatement(CLAIM_SEAT_SQL)) {
             
-            // If the seat has changed, free the old one and book the new one
-            if (!oldBooking.getSeatNumber().equals(booking.getSeatNumber()) || 
-                !oldBooking.getFlightNumber().equals(booking.getFlightNumber())) {
-                // Free the old seat
-                updateSeatStatus(conn, oldBooking.getFlightNumber(), oldBooking.getSeatNumber(), false);
+            // Send all rows as two JDBC batches
+            for (Booking booking : bookings) {
+                bookingStmt.setString(1, booking.getBookingId());
+                bookingStmt.setLong(2, Timestamps.toEpochSecond(booking.getBookingDate()));
+                bookingStmt.setString(3, booking.getStatus());
+                bookingStmt.setString(4, booking.getCustomerId());
+                bookingStmt.setString(5, booking.getFlightNumber());
+                bookingStmt.setString(6, booking.getSeatNumber());
+                bookingStmt.addBatch();
                 
-                // Book the new seat
-                updateSeatStatus(conn, booking.getFlightNumber(), booking.getSeatNumber(), true);
+                seatStmt.setString(1, booking.getFlightNumber());
+                seatStmt.setString(2, booking.getSeatNumber());
+                seatStmt.addBatch();
+            }
+            
+            // Every seat must go from free to taken, otherwise someone else got it first
+            int[] claimed = seatStmt.executeBatch();
+            for (int i = 0; i < claimed.length; i++) {
+                if (claimed[i] != 1) {
+                    Booking conflict = bookings.get(i);
+                    throw new SeatConflictException(conflict.getFlightNumber(), conflict.getSeatNumber());
+                }
             }
+            bookingStmt.executeBatch();
+        }
+        for (Booking booking : bookings) {
+            events.add(BookingEvent.created(committed(booking, 0)));
+        }
+    }
+    
+    /**
+     * Updates an existing booking, moving it to its new seat if the seat
+     * changed. The booking is only saved if nobody changed it since it was
+     * read, checked against its version inside the same transaction that
+     * saves it. The booking's version is moved on when it is saved.
+     * 
+     * @param booking The booking with its new values, at the version it was read at
+     * @return true if the booking was saved, false if there is no such booking or on a database error
+     * @throws BookingChangedException if the booking was changed since it was read, nothing is saved then
+     * @throws SeatConflictException if the new seat was already taken, nothing is saved then
+     */
+    public boolean update(Booking booking) {
+        BookingWriter groupCommit = writer;
+        if (groupCommit != null) {
+            CompletableFuture<Boolean> saved = groupCommit.update(booking);
+            return await(saved) && saved.join();
+        }
+        Boolean saved = callInTransaction((conn, events) -> update(conn, booking, events));
+        if (saved == null || !saved) {
+            return false;
+        }
+        booking.setVersion(booking.getVersion() + 1);
+        return true;
+    }
+    
+    // Updates a booking inside the caller's transaction, false if there is no such booking.
+    // Adds the events to log once it commits.
+    boolean update(Connection conn, Booking booking, List<BookingEvent> events) throws SQLException {
+        String sql = "UPDATE Booking SET bookingDate = ?, status = ?, customerId = ?, " +
+                     "flightNumber = ?, seatNumber = ?, version = version + 1 " +
+                     "WHERE bookingId = ? AND version = ?";
+        
+        // Read the stored booking on the same connection, so nothing can change it in between
+        Booking stored = selectForUpdate(conn, booking.getBookingId());
+        if (stored == null) {
+            return false;
+        }
+        if (stored.getVersion() != booking.getVersion()) {
+            throw new BookingChangedException(booking.getBookingId());
+        }
+        
+        // If the seat has changed, free the old one and book the new one
+        boolean seatChanged = !stored.getSeatNumber().equals(booking.getSeatNumber()) || 
+                              !stored.getFlightNumber().equals(booking.getFlightNumber());
+        if (seatChanged) {
+            // Free the old seat
+            releaseSeat(conn, stored.getFlightNumber(), stored.getSeatNumber());
             
-            pstmt.setString(1, booking.getBookingDate().format(formatter));
+            // Book the new seat, the whole update is rolled back if it is taken
+            claimSeat(conn, booking.getFlightNumber(), booking.getSeatNumber());
+        }
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, Timestamps.toEpochSecond(booking.getBookingDate()));
             pstmt.setString(2, booking.getStatus());
             pstmt.setString(3, booking.getCustomerId());
             pstmt.setString(4, booking.getFlightNumber());
             pstmt.setString(5, booking.getSeatNumber());
             pstmt.setString(6, booking.getBookingId());
-            pstmt.executeUpdate();
-            
-            conn.commit();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            pstmt.setLong(7, booking.getVersion());
+            if (pstmt.executeUpdate() != 1) {
+                throw new BookingChangedException(booking.getBookingId());
+            }
+        }
+        events.addAll(updateEvents(stored, committed(booking, booking.getVersion() + 1)));
+        return true;
+    }
+    
+    // Delete a booking and free its seat, false on a database error
+    public boolean delete(String bookingId) {
+        BookingWriter groupCommit = writer;
+        if (groupCommit != null) {
+            return await(groupCommit.delete(bookingId));
         }
+        return runInTransaction((conn, events) -> delete(conn, bookingId, events));
     }
     
-    // Delete a booking
-    public void delete(String bookingId) {
-        // First, get the booking to know which seat to free
-        Booking booking = selectById(bookingId);
+    // Deletes a booking inside the caller's transaction, adding the event to log once it commits
+    void delete(Connection conn, String bookingId, List<BookingEvent> events) throws SQLException {
+        String sql = "DELETE FROM Booking WHERE bookingId = ? AND version = ?";
+        
+        // Read the seat to free on the same connection as the delete
+        Booking booking = selectForUpdate(conn, bookingId);
         if (booking == null) {
             return;
         }
         
-        String sql = "DELETE FROM Booking WHERE bookingId = ?";
+        // Free the seat
+        releaseSeat(conn, booking.getFlightNumber(), booking.getSeatNumber());
         
-        try (Connection conn = this.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            // Set transaction to handle multi-table operations atomically
-            conn.setAutoCommit(false);
-            
-            // Free the seat
-            updateSeatStatus(conn, booking.getFlightNumber(), booking.getSeatNumber(), false);
-            
-            // Delete the booking
+        // Delete the booking
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bookingId);
-            pstmt.executeUpdate();
+            pstmt.setLong(2, booking.getVersion());
+            if (pstmt.executeUpdate() != 1) {
+                throw new BookingChangedException(bookingId);
+            }
+        }
+        events.add(BookingEvent.deleted(booking));
+    }
+    
+    /**
+     * Replaces every booking in the Booking table with the given ones and
+     * marks exactly their seats as taken, in one transaction. Used to
+     * rebuild the tables from the booking event log, nothing else should be
+     * booking while it runs.
+     * 
+     * @param bookings Every booking, with its version
+     * @return true if the tables were rebuilt, false on a database error
+     * @throws SeatConflictException if two bookings have the same seat or a seat doesn't exist, nothing is changed then
+     */
+    public boolean replaceAllBookings(Collection<Booking> bookings) {
+        String bookingSql = "INSERT INTO Booking(bookingId, bookingDate, status, customerId, flightNumber, seatNumber, version) " +
+                            "VALUES(?,?,?,?,?,?,?)";
+        
+        return runInTransaction((conn, events) -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM Booking");
+                stmt.executeUpdate("UPDATE Seat SET seatStatus = 0, version = version + 1 WHERE seatStatus = 1");
+            }
             
-            conn.commit();
+            try (PreparedStatement bookingStmt = conn.prepareStatement(bookingSql);
+                 PreparedStatement seatStmt = conn.prepareStatement(CLAIM_SEAT_SQL)) {
+                List<Booking> ordered = new ArrayList<>(bookings);
+                for (Booking booking : ordered) {
+                    bookingStmt.setString(1, booking.getBookingId());
+                    bookingStmt.setLong(2, Timestamps.toEpochSecond(booking.getBookingDate()));
+                    bookingStmt.setString(3, booking.getStatus());
+                    bookingStmt.setString(4, booking.getCustomerId());
+                    bookingStmt.setString(5, booking.getFlightNumber());
+                    bookingStmt.setString(6, booking.getSeatNumber());
+                    bookingStmt.setLong(7, booking.getVersion());
+                    bookingStmt.addBatch();
+                    
+                    // Cancelled bookings keep their seat, as cancelBooking leaves it taken
+                    seatStmt.setString(1, booking.getFlightNumber());
+                    seatStmt.setString(2, booking.getSeatNumber());
+                    seatStmt.addBatch();
+                }
+                
+                int[] claimed = seatStmt.executeBatch();
+                for (int i = 0; i < claimed.length; i++) {
+                    if (claimed[i] != 1) {
+                        Booking conflict = ordered.get(i);
+                        throw new SeatConflictException(conflict.getFlightNumber(), conflict.getSeatNumber());
+                    }
+                }
+                bookingStmt.executeBatch();
+            }
+        });
+    }
+    
+    /**
+     * Database work done inside a transaction, adding the changes to log once it commits to events
+     */
+    interface TransactionWork {
+        void run(Connection conn, List<BookingEvent> events) throws SQLException;
+    }
+    
+    /**
+     * Database work with a result done inside a transaction, adding the changes to log once it commits to events
+     */
+    interface TransactionCall<T> {
+        T call(Connection conn, List<BookingEvent> events) throws SQLException;
+    }
+    
+    // Runs the work in its own transaction on the writer connection, false on a database error
+    private boolean runInTransaction(TransactionWork work) {
+        Boolean done = callInTransaction((conn, events) -> {
+            work.run(conn, events);
+            return true;
+        });
+        return done != null && done;
+    }
+    
+    // Runs the work in its own transaction on the writer connection, null on a database error
+    private <T> T callInTransaction(TransactionCall<T> work) {
+        try {
+            // Retried as a whole if the database is busy, the transaction is rolled back before each retry
+            return BusyRetry.call(() -> {
+                try (Connection conn = connectionProvider.getWriteConnection()) {
+                    // Set transaction to handle multi-table operations atomically
+                    conn.setAutoCommit(false);
+                    List<BookingEvent> events = new ArrayList<>();
+                    T result = work.call(conn, events);
+                    conn.commit();
+                    // Logged before the writer connection is given back, so the log is in commit order
+                    logEvents(events);
+                    return result;
+                }
+            });
         } catch (SQLException e) {
             System.out.println(e.getMessage());
+            return null;
+        }
+    }
+    
+    // Waits for a change handed to the writer, database errors are reported like the direct writes do
+    private static boolean await(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return true;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            System.out.println(e.getCause().getMessage());
+            return false;
+        }
+    }
+    
+    // Reads a booking inside a write transaction, the conditional write that follows checks it is still current
+    private Booking selectForUpdate(Connection conn, String bookingId) throws SQLException {
+        String sql = "SELECT bookingId, bookingDate, status, customerId, flightNumber, seatNumber, version " +
+                     "FROM Booking WHERE bookingId = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, bookingId);
+            ResultSet rs = pstmt.executeQuery();
+            return rs.next() ? toBooking(rs) : null;
+        }
+    }
+    
+    // Marks a free seat as taken, the row is only changed if the seat is still free
+    private void claimSeat(Connection conn, String flightNumber, String seatNumber) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(CLAIM_SEAT_SQL)) {
+            pstmt.setString(1, flightNumber);
+            pstmt.setString(2, seatNumber);
+            if (pstmt.executeUpdate() != 1) {
+                throw new SeatConflictException(flightNumber, seatNumber);
+            }
         }
     }
     
-    // Helper method to update seat status
-    private void updateSeatStatus(Connection conn, String flightNumber, String seatNumber, boolean status) 
-            throws SQLException {
-        String sql = "UPDATE Seat SET seatStatus = ? WHERE flightNumber = ? AND seatNumber = ?";
+    // Marks a seat as free, freeing a seat that is already free changes nothing
+    private void releaseSeat(Connection conn, String flightNumber, String seatNumber) throws SQLException {
+        String sql = "UPDATE Seat SET seatStatus = 0, version = version + 1 " +
+                     "WHERE flightNumber = ? AND seatNumber = ? AND seatStatus = 1";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setBoolean(1, status);
-            pstmt.setString(2, flightNumber);
-            pstmt.setString(3, seatNumber);
+            pstmt.setString(1, flightNumber);
+            pstmt.setString(2, seatNumber);
             pstmt.executeUpdate();
         }
     }
@@ -192,7 +683,7 @@ public class BookingDB {
         String sql = "SELECT seatNumber, seatStatus FROM Seat WHERE flightNumber = ? AND seatStatus = 0";
         List<Seat> seats = new ArrayList<>();
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, flightNumber);
@@ -211,4 +702,63 @@ public class BookingDB {
         
         return seats;
     }
+    
+    // Get every seat on a flight, booked or not, in the order they were added
+    public List<Seat> getSeats(String flightNumber) {
+        String sql = "SELECT seatNumber, seatStatus FROM Seat WHERE flightNumber = ? ORDER BY rowid";
+        List<Seat> seats = new ArrayList<>();
+        
+        try (Connection conn = connectionProvider.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setString(1, flightNumber);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                seats.add(new Seat(
+                    rs.getString("seatNumber"),
+                    rs.getBoolean("seatStatus"),
+                    flightNumber
+                ));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        
+        return seats;
+    }
+    
+    /**
+     * Gets every seat on a flight as a seat map, with one query
+     * 
+     * @param flightNumber The flight number
+     * @return The seat map, empty if the flight has no seats
+     */
+    public SeatMap getSeatMap(String flightNumber) {
+        return SeatMap.of(flightNumber, getSeats(flightNumber));
+    }
+    
+    // Get every seat on every flight, grouped by flight
+    public List<Seat> getAllSeats() {
+        String sql = "SELECT seatNumber, seatStatus, flightNumber FROM Seat ORDER BY flightNumber, rowid";
+        List<Seat> seats = new ArrayList<>();
+        
+        try (Connection conn = connectionProvider.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                seats.add(new Seat(
+                    rs.getString("seatNumber"),
+                    rs.getBoolean("seatStatus"),
+                    rs.getString("flightNumber")
+                ));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        
+        return seats;
+    }
 }
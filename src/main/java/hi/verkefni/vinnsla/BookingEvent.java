@@ -0,0 +1,234 @@
+package hi.verkefni.vinnsla;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Something that happened to a booking, as kept in the BookingEventLog.
+ * Replaying a booking's events in order gives the booking as it is now.
+ *
+ * Each event carries the booking's row version as committed with it, so
+ * the bookings rebuilt from the log have the versions the tables had.
+ */
+public class BookingEvent {
+    // Version of events logged before events carried one
+    public static final long NO_VERSION = -1;
+
+    public enum Type {
+        // A booking was made, carries the whole booking
+        BOOKING_CREATED,
+        // A booking was moved to another seat on the same flight
+        SEAT_CHANGED,
+        // A booking was cancelled, it keeps its seat
+        BOOKING_CANCELLED,
+        // A booking was deleted and its seat freed
+        BOOKING_DELETED,
+        // A booking was saved with other changes, or none, carries the whole booking
+        BOOKING_UPDATED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Instant recordedAt;
+    private final String bookingId;
+    private final LocalDateTime bookingDate;
+    private final String customerId;
+    private final String flightNumber;
+    private final String seatNumber;
+    private final String status;
+    private final long version;
+
+    private BookingEvent(long sequence, Type type, Instant recordedAt, String bookingId, LocalDateTime bookingDate,
+                         String customerId, String flightNumber, String seatNumber, String status, long version) {
+        this.sequence = sequence;
+        this.type = type;
+        this.recordedAt = recordedAt;
+        this.bookingId = bookingId;
+        this.bookingDate = bookingDate;
+        this.customerId = customerId;
+        this.flightNumber = flightNumber;
+        this.seatNumber = seatNumber;
+        this.status = status;
+        this.version = version;
+    }
+
+    // The events below take the booking as committed, at its new version
+
+    public static BookingEvent created(Booking booking) {
+        return new BookingEvent(0, Type.BOOKING_CREATED, Instant.now(), booking.getBookingId(), booking.getBookingDate(),
+            booking.getCustomerId(), booking.getFlightNumber(), booking.getSeatNumber(), booking.getStatus(),
+            booking.getVersion());
+    }
+
+    public static BookingEvent seatChanged(Booking booking) {
+        return new BookingEvent(0, Type.SEAT_CHANGED, Instant.now(), booking.getBookingId(),
+            null, null, booking.getFlightNumber(), booking.getSeatNumber(), null, booking.getVersion());
+    }
+
+    public static BookingEvent cancelled(Booking booking) {
+        return new BookingEvent(0, Type.BOOKING_CANCELLED, Instant.now(), booking.getBookingId(),
+            null, null, null, null, null, booking.getVersion());
+    }
+
+    public static BookingEvent deleted(Booking booking) {
+        return new BookingEvent(0, Type.BOOKING_DELETED, Instant.now(), booking.getBookingId(),
+            null, null, null, null, null, booking.getVersion());
+    }
+
+    public static BookingEvent updated(Booking booking) {
+        return new BookingEvent(0, Type.BOOKING_UPDATED, Instant.now(), booking.getBookingId(), booking.getBookingDate(),
+            booking.getCustomerId(), booking.getFlightNumber(), booking.getSeatNumber(), booking.getStatus(),
+            booking.getVersion());
+    }
+
+    // The same event with the sequence number the log gave it
+    BookingEvent withSequence(long sequence) {
+        return new BookingEvent(sequence, type, recordedAt, bookingId, bookingDate, customerId, flightNumber, seatNumber,
+            status, version);
+    }
+
+    /**
+     * @return Position of the event in the log, starting at 1, or 0 if it hasn't been logged
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+
+    public String getBookingId() {
+        return bookingId;
+    }
+
+    /**
+     * @return Date the booking was made, null unless the booking was created or updated
+     */
+    public LocalDateTime getBookingDate() {
+        return bookingDate;
+    }
+
+    /**
+     * @return The customer, null unless the booking was created or updated
+     */
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    /**
+     * @return The flight, null if the booking was cancelled or deleted
+     */
+    public String getFlightNumber() {
+        return flightNumber;
+    }
+
+    /**
+     * @return The booking's seat after the event, null if the booking was cancelled or deleted
+     */
+    public String getSeatNumber() {
+        return seatNumber;
+    }
+
+    /**
+     * @return The booking's status, null unless the booking was created or updated, or the event was logged without it
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The booking's row version after the event, NO_VERSION if the event was logged without it
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    // Writes the event as: sequence, type, time recorded, then the booking fields, strings as length and UTF-8.
+    // Status and version come last, events logged before them end after the seat number.
+    void writeTo(ByteBuffer buffer) {
+        buffer.putLong(sequence);
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(recordedAt.toEpochMilli());
+        putString(buffer, bookingId);
+        buffer.putLong(bookingDate == null ? Long.MIN_VALUE : Timestamps.toEpochSecond(bookingDate));
+        putString(buffer, customerId);
+        putString(buffer, flightNumber);
+        putString(buffer, seatNumber);
+        putString(buffer, status);
+        buffer.putLong(version);
+    }
+
+    // Most bytes writeTo can need for this event
+    int maxEncodedSize() {
+        return 8 + 1 + 8 + 8 + 5 * 2 + 8
+            + maxStringSize(bookingId) + maxStringSize(customerId) + maxStringSize(flightNumber) + maxStringSize(seatNumber)
+            + maxStringSize(status);
+    }
+
+    /**
+     * Reads an event written by writeTo
+     *
+     * @throws IllegalArgumentException If the bytes are not an event
+     */
+    static BookingEvent readFrom(ByteBuffer buffer) {
+        try {
+            long sequence = buffer.getLong();
+            int typeIndex = buffer.get();
+            if (typeIndex < 0 || typeIndex >= Type.values().length) {
+                throw new IllegalArgumentException("Unknown event type " + typeIndex);
+            }
+            Instant recordedAt = Instant.ofEpochMilli(buffer.getLong());
+            String bookingId = getString(buffer);
+            long bookingDate = buffer.getLong();
+            String customerId = getString(buffer);
+            String flightNumber = getString(buffer);
+            String seatNumber = getString(buffer);
+            String status = null;
+            long version = NO_VERSION;
+            if (buffer.hasRemaining()) {
+                status = getString(buffer);
+                version = buffer.getLong();
+            }
+            return new BookingEvent(sequence, Type.values()[typeIndex], recordedAt, bookingId,
+                bookingDate == Long.MIN_VALUE ? null : Timestamps.fromEpochSecond(bookingDate),
+                customerId, flightNumber, seatNumber, status, version);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Event is cut short");
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Field is too long for the event log");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int maxStringSize(String value) {
+        return value == null ? 0 : value.length() * 3;
+    }
+}
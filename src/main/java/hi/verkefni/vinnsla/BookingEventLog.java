@@ -0,0 +1,193 @@
+package hi.verkefni.vinnsla;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of booking events, memory-mapped so an append is a copy
+ * into memory with no system call.
+ *
+ * Each event is stored as its length, a CRC32 of its bytes and the bytes
+ * themselves, one after the other. The length is written last, so a record
+ * is either all there or reads as the end of the log. The mapping grows by
+ * doubling; the part of the file after the last event is zeros. On opening,
+ * the log is read up to the first record that is missing, torn or out of
+ * sequence, and anything after that is cleared.
+ *
+ * Appended events are in the page cache at once and survive the application
+ * crashing; force() also writes them to the disk, which is needed to survive
+ * a power loss.
+ */
+public class BookingEventLog implements Closeable {
+    public static final int DEFAULT_INITIAL_CAPACITY = 1 << 20;
+    // Length and CRC32 in front of each event
+    private static final int RECORD_HEADER = 8;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    // Position just after the last event
+    private int end;
+    private long lastSequence;
+
+    public BookingEventLog(Path file) throws IOException {
+        this(file, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Opens the log, creating it if it doesn't exist
+     *
+     * @param file The log file
+     * @param initialCapacity Bytes mapped up front, the mapping grows as events are appended
+     */
+    public BookingEventLog(Path file, int initialCapacity) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), initialCapacity);
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Event log " + file + " is too large to map");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        recover();
+    }
+
+    // Finds the end of the log, clearing a record torn by a crash
+    private void recover() {
+        int position = 0;
+        while (true) {
+            int length = readRecordLength(buffer, position);
+            if (length == 0) {
+                break;
+            }
+            long sequence = buffer.getLong(position + RECORD_HEADER);
+            if (sequence != lastSequence + 1) {
+                break;
+            }
+            lastSequence = sequence;
+            position += RECORD_HEADER + length;
+        }
+        end = position;
+
+        // Zero anything after the last event, so part of a torn record can't be mistaken for one later
+        for (int i = end; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    // Length of the record at the position if it is whole and holds at least a sequence number, otherwise 0
+    private static int readRecordLength(ByteBuffer buffer, int position) {
+        if (position + RECORD_HEADER > buffer.capacity()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        if (length < Long.BYTES || length > buffer.capacity() - position - RECORD_HEADER) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + RECORD_HEADER, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? length : 0;
+    }
+
+    /**
+     * Appends an event, giving it the next sequence number
+     *
+     * @param event The event
+     * @return The event as logged, with its sequence number
+     * @throws IOException If the log can't grow to fit the event
+     */
+    public synchronized BookingEvent append(BookingEvent event) throws IOException {
+        BookingEvent logged = event.withSequence(lastSequence + 1);
+        ensureCapacity(end + RECORD_HEADER + logged.maxEncodedSize());
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(end + RECORD_HEADER);
+        logged.writeTo(record);
+        int length = record.position() - end - RECORD_HEADER;
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(end + RECORD_HEADER, length));
+        buffer.putInt(end + 4, (int) crc.getValue());
+        // Written last, the record counts once its length is there
+        buffer.putInt(end, length);
+
+        end += RECORD_HEADER + length;
+        lastSequence = logged.getSequence();
+        return logged;
+    }
+
+    private void ensureCapacity(long needed) throws IOException {
+        if (needed <= buffer.capacity()) {
+            return;
+        }
+        long capacity = Math.max((long) buffer.capacity() * 2, needed);
+        if (capacity > Integer.MAX_VALUE) {
+            capacity = Integer.MAX_VALUE;
+            if (needed > capacity) {
+                throw new IOException("Event log is full");
+            }
+        }
+        // Mapping past the end of the file makes the file longer, filled with zeros
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Hands the events after a sequence number to an action, oldest first.
+     * Events appended while replaying are not included.
+     *
+     * @param afterSequence Events up to and including this one are skipped, 0 for all events
+     * @param action Called with each event
+     */
+    public void replay(long afterSequence, Consumer<BookingEvent> action) {
+        ByteBuffer events;
+        int limit;
+        synchronized (this) {
+            events = buffer.duplicate();
+            limit = end;
+        }
+
+        int position = 0;
+        while (position < limit) {
+            int length = events.getInt(position);
+            // The sequence number comes first, so events before the wanted ones are skipped without decoding them
+            if (events.getLong(position + RECORD_HEADER) > afterSequence) {
+                action.accept(BookingEvent.readFrom(events.slice(position + RECORD_HEADER, length)));
+            }
+            position += RECORD_HEADER + length;
+        }
+    }
+
+    /**
+     * @return Sequence number of the last event, 0 if the log is empty
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return Bytes taken up by the events
+     */
+    public synchronized long getSize() {
+        return end;
+    }
+
+    /**
+     * Writes the appended events to the disk
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,276 @@
+package hi.verkefni.vinnsla;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bookings as told by the booking event log: every booking as of the
+ * last event, kept in memory and rebuilt from the log on opening.
+ *
+ * So that opening doesn't replay the whole history, the bookings are saved
+ * to a snapshot file every snapshotInterval events, together with the
+ * sequence number of the last event they include. Opening loads the
+ * snapshot and replays only the events after it. The snapshot is written to
+ * a temporary file and moved into place, so a crash while writing leaves
+ * the previous one.
+ *
+ * The Booking and Seat tables can be rebuilt from these bookings with
+ * BookingDB.replaceAllBookings.
+ */
+public class BookingEventStore implements Closeable {
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10_000;
+    public static final String LOG_FILE = "bookings.log";
+    public static final String SNAPSHOT_FILE = "bookings.snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x46425331;
+
+    private final Path directory;
+    private final BookingEventLog log;
+    private final int snapshotInterval;
+
+    private final Map<String, Booking> bookings = new HashMap<>();
+    // Last event applied to the bookings, and the last one in the snapshot file
+    private long appliedSequence;
+    private long snapshotSequence;
+    // Events in the log for bookings it has no BOOKING_CREATED for, left out when replaying
+    private long unknownBookingEvents;
+
+    public BookingEventStore(Path directory) throws IOException {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Opens the store in a directory, creating it if it doesn't exist
+     *
+     * @param directory Directory of the log and snapshot files
+     * @param snapshotInterval Number of events between snapshots
+     */
+    public BookingEventStore(Path directory, int snapshotInterval) throws IOException {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1");
+        }
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(directory);
+
+        loadSnapshot();
+        this.log = new BookingEventLog(directory.resolve(LOG_FILE));
+        if (log.getLastSequence() < appliedSequence) {
+            log.close();
+            throw new IOException("Event log ends at event " + log.getLastSequence()
+                                  + " but the snapshot includes events up to " + appliedSequence);
+        }
+        log.replay(appliedSequence, this::apply);
+        if (unknownBookingEvents > 0) {
+            System.err.println(unknownBookingEvents + " events in " + directory.resolve(LOG_FILE)
+                               + " are for bookings that were never created, they were left out");
+        }
+    }
+
+    /**
+     * Appends an event to the log and applies it to the bookings, taking a
+     * snapshot if enough events have been recorded since the last one
+     *
+     * @param event The event
+     * @return The event as logged, with its sequence number
+     * @throws IllegalArgumentException if the event changes a booking that hasn't been created, nothing is logged then
+     */
+    public synchronized BookingEvent record(BookingEvent event) throws IOException {
+        if (event.getType() != BookingEvent.Type.BOOKING_CREATED && !bookings.containsKey(event.getBookingId())) {
+            throw new IllegalArgumentException(event.getType() + " for booking " + event.getBookingId()
+                                               + " which is not in the event log");
+        }
+        BookingEvent logged = log.append(event);
+        apply(logged);
+        if (appliedSequence - snapshotSequence >= snapshotInterval) {
+            snapshot();
+        }
+        return logged;
+    }
+
+    private void apply(BookingEvent event) {
+        Booking booking = bookings.get(event.getBookingId());
+        if (booking == null && event.getType() != BookingEvent.Type.BOOKING_CREATED) {
+            unknownBookingEvents++;
+            appliedSequence = event.getSequence();
+            return;
+        }
+        switch (event.getType()) {
+            case BOOKING_CREATED:
+                booking = new Booking(event.getBookingId(), event.getBookingDate(),
+                    event.getStatus() != null ? event.getStatus() : "CONFIRMED",
+                    event.getCustomerId(), event.getFlightNumber(), event.getSeatNumber());
+                booking.setVersion(event.getVersion() != BookingEvent.NO_VERSION ? event.getVersion() : 0);
+                bookings.put(event.getBookingId(), booking);
+                break;
+            case SEAT_CHANGED:
+                booking.setFlightNumber(event.getFlightNumber());
+                booking.setSeatNumber(event.getSeatNumber());
+                setVersion(booking, event);
+                break;
+            case BOOKING_CANCELLED:
+                booking.setStatus("CANCELLED");
+                setVersion(booking, event);
+                break;
+            case BOOKING_DELETED:
+                bookings.remove(event.getBookingId());
+                break;
+            case BOOKING_UPDATED:
+                booking.setBookingDate(event.getBookingDate());
+                booking.setStatus(event.getStatus());
+                booking.setCustomerId(event.getCustomerId());
+                booking.setFlightNumber(event.getFlightNumber());
+                booking.setSeatNumber(event.getSeatNumber());
+                setVersion(booking, event);
+                break;
+        }
+        appliedSequence = event.getSequence();
+    }
+
+    // The booking takes the version committed with the event, events logged without one count a version each
+    private static void setVersion(Booking booking, BookingEvent event) {
+        booking.setVersion(event.getVersion() != BookingEvent.NO_VERSION ? event.getVersion() : booking.getVersion() + 1);
+    }
+
+    /**
+     * @return The booking as of the last event, or null if there is no such booking
+     */
+    public synchronized Booking getBooking(String bookingId) {
+        Booking booking = bookings.get(bookingId);
+        return booking == null ? null : copy(booking);
+    }
+
+    /**
+     * @return Every booking as of the last event, in no particular order
+     */
+    public synchronized List<Booking> getBookings() {
+        List<Booking> copies = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings.values()) {
+            copies.add(copy(booking));
+        }
+        return copies;
+    }
+
+    /**
+     * Reads everything that happened to a booking from the log
+     *
+     * @return The booking's events, oldest first
+     */
+    public List<BookingEvent> getHistory(String bookingId) {
+        List<BookingEvent> history = new ArrayList<>();
+        log.replay(0, event -> {
+            if (event.getBookingId().equals(bookingId)) {
+                history.add(event);
+            }
+        });
+        return history;
+    }
+
+    /**
+     * @return Sequence number of the last event recorded, 0 if none
+     */
+    public synchronized long getLastSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return Number of events replayed on opening that were for bookings never created, and so left out
+     */
+    public synchronized long getUnknownBookingEventCount() {
+        return unknownBookingEvents;
+    }
+
+    /**
+     * @return Sequence number of the last event in the snapshot file, 0 if there is none
+     */
+    public synchronized long getSnapshotSequence() {
+        return snapshotSequence;
+    }
+
+    /**
+     * Saves the bookings to the snapshot file. The log is forced to disk
+     * first, so the snapshot never covers events the log could lose.
+     */
+    public synchronized void snapshot() throws IOException {
+        log.force();
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(appliedSequence);
+            out.writeInt(bookings.size());
+            for (Booking booking : bookings.values()) {
+                writeString(out, booking.getBookingId());
+                out.writeLong(Timestamps.toEpochSecond(booking.getBookingDate()));
+                writeString(out, booking.getStatus());
+                writeString(out, booking.getCustomerId());
+                writeString(out, booking.getFlightNumber());
+                writeString(out, booking.getSeatNumber());
+                out.writeLong(booking.getVersion());
+            }
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshotSequence = appliedSequence;
+    }
+
+    private void loadSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(file + " is not a booking snapshot");
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Booking booking = new Booking(readString(in), Timestamps.fromEpochSecond(in.readLong()),
+                    readString(in), readString(in), readString(in), readString(in));
+                booking.setVersion(in.readLong());
+                bookings.put(booking.getBookingId(), booking);
+            }
+            appliedSequence = sequence;
+            snapshotSequence = sequence;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static Booking copy(Booking booking) {
+        Booking copy = new Booking(booking.getBookingId(), booking.getBookingDate(), booking.getStatus(),
+            booking.getCustomerId(), booking.getFlightNumber(), booking.getSeatNumber());
+        copy.setVersion(booking.getVersion());
+        return copy;
+    }
+
+    /**
+     * Takes a snapshot if anything was recorded since the last one, and closes the log
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (appliedSequence > snapshotSequence) {
+            snapshot();
+        }
+        log.close();
+    }
+}
@@ -0,0 +1,45 @@
+package hi.verkefni.vinnsla;
+
+import java.time.LocalDateTime;
+
+/**
+ * A booking together with the route and departure time of its flight, for
+ * showing a list of bookings without looking up each flight separately.
+ * The flight fields are null if the flight no longer exists.
+ */
+public class BookingSummary {
+    private final Booking booking;
+    private final String origin;
+    private final String destination;
+    private final LocalDateTime departureTime;
+    
+    public BookingSummary(Booking booking, String origin, String destination, LocalDateTime departureTime) {
+        this.booking = booking;
+        this.origin = origin;
+        this.destination = destination;
+        this.departureTime = departureTime;
+    }
+    
+    public Booking getBooking() {
+        return booking;
+    }
+    
+    public String getOrigin() {
+        return origin;
+    }
+    
+    public String getDestination() {
+        return destination;
+    }
+    
+    public LocalDateTime getDepartureTime() {
+        return departureTime;
+    }
+    
+    /**
+     * @return true if the booking's flight was found
+     */
+    public boolean hasFlight() {
+        return origin != null && destination != null;
+    }
+}
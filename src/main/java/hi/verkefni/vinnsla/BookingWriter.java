@@ -0,0 +1,295 @@
+package hi.verkefni.vinnsla;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes bookings from many threads through one writer thread, committing
+ * them in shared transactions (group commit).
+ *
+ * Callers hand over a change and get a future back. The writer takes the
+ * changes off a queue in batches, as set by a GroupCommitPolicy, applies a
+ * batch in one transaction and completes the futures once it is committed,
+ * so a completed future means the change is on disk. Each change gets its
+ * own savepoint: a change that fails, e.g. because its seat is taken, is
+ * undone on its own and only its future fails. If the transaction itself
+ * fails, every future of the batch fails and nothing of it is saved.
+ *
+ * The changes of a committed batch are logged to the booking event store
+ * of the BookingDB, if one is attached, in batch order.
+ */
+public class BookingWriter {
+    private final BookingDB bookingDB;
+    private final ConnectionProvider connectionProvider;
+    private final GroupCommitPolicy policy;
+    private final BlockingQueue<Command<?>> queue;
+
+    // Submitters hold the read lock while queueing, shutdown takes the write lock so nothing is queued after STOP
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+    private boolean shutdown = false;
+    private final Command<Void> stop = new Command<>(null);
+    private Thread thread;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+
+    BookingWriter(BookingDB bookingDB, ConnectionProvider connectionProvider, GroupCommitPolicy policy) {
+        this.bookingDB = bookingDB;
+        this.connectionProvider = connectionProvider;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(policy.getQueueCapacity());
+    }
+
+    synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this::writeLoop, "booking-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops taking changes, writes the ones already queued and waits for the writer thread to finish
+     */
+    public void shutdown() {
+        submitLock.writeLock().lock();
+        try {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(stop);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Inserts a new booking and marks its seat as taken
+     *
+     * @return Completes once the booking is committed, fails with SeatConflictException if the seat was taken
+     */
+    public CompletableFuture<Void> insert(Booking booking) {
+        return submit((conn, events) -> {
+            bookingDB.insert(conn, booking, events);
+            return null;
+        });
+    }
+
+    /**
+     * Inserts several bookings, either all of them are saved or none
+     *
+     * @return Completes once the bookings are committed, fails with SeatConflictException if a seat was taken
+     */
+    public CompletableFuture<Void> insertAll(List<Booking> bookings) {
+        return submit((conn, events) -> {
+            bookingDB.insertAll(conn, bookings, events);
+            return null;
+        });
+    }
+
+    /**
+     * Updates a booking read at its current version, moving the version on once it is committed
+     *
+     * @return Completes with true once the booking is committed, or false if there is no such booking.
+     *         Fails with BookingChangedException or SeatConflictException if it couldn't be saved
+     */
+    public CompletableFuture<Boolean> update(Booking booking) {
+        return submit((conn, events) -> bookingDB.update(conn, booking, events)).thenApply(saved -> {
+            if (saved) {
+                booking.setVersion(booking.getVersion() + 1);
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Deletes a booking and frees its seat
+     *
+     * @return Completes once the delete is committed
+     */
+    public CompletableFuture<Void> delete(String bookingId) {
+        return submit((conn, events) -> {
+            bookingDB.delete(conn, bookingId, events);
+            return null;
+        });
+    }
+
+    /**
+     * @return Number of transactions committed
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return Number of changes written in those transactions, including ones that failed on their own
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    private <T> CompletableFuture<T> submit(BookingDB.TransactionCall<T> step) {
+        Command<T> command = new Command<>(step);
+        submitLock.readLock().lock();
+        try {
+            if (shutdown) {
+                command.future.completeExceptionally(new SQLException("Booking writer has been shut down"));
+            } else {
+                // Waits here while the queue is full, so callers can't get far ahead of the disk
+                queue.put(command);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            command.future.completeExceptionally(new SQLException("Interrupted while waiting to queue a booking"));
+        } finally {
+            submitLock.readLock().unlock();
+        }
+        return command.future;
+    }
+
+    private void writeLoop() {
+        List<Command<?>> batch = new ArrayList<>(policy.getMaxBatchSize());
+        boolean stopping = false;
+        while (!stopping) {
+            batch.clear();
+            try {
+                stopping = collectBatch(batch);
+            } catch (InterruptedException e) {
+                // Only shutdown() stops the writer, so every queued change is still written
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    // Waits for a change, then gathers more until the batch is full or the delay is up, true once stop is reached
+    private boolean collectBatch(List<Command<?>> batch) throws InterruptedException {
+        Command<?> first = queue.take();
+        if (first == stop) {
+            return true;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getMaxDelayMillis());
+        while (batch.size() < policy.getMaxBatchSize()) {
+            Command<?> next = queue.poll();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                    break;
+                }
+            }
+            if (next == stop) {
+                return true;
+            }
+            batch.add(next);
+        }
+        return false;
+    }
+
+    private void writeBatch(List<Command<?>> batch) {
+        Object[] results = new Object[batch.size()];
+        Throwable[] failures = new Throwable[batch.size()];
+        List<List<BookingEvent>> events = new ArrayList<>(batch.size());
+        try {
+            // Retried as a whole if the database is busy, the transaction is rolled back before each retry
+            BusyRetry.run(() -> {
+                Arrays.fill(failures, null);
+                events.clear();
+                try (Connection conn = connectionProvider.getWriteConnection()) {
+                    conn.setAutoCommit(false);
+                    for (int i = 0; i < batch.size(); i++) {
+                        events.add(new ArrayList<>());
+                        Savepoint savepoint = conn.setSavepoint();
+                        try {
+                            results[i] = batch.get(i).step.call(conn, events.get(i));
+                            conn.releaseSavepoint(savepoint);
+                        } catch (SQLException e) {
+                            if (BusyRetry.isBusy(e)) {
+                                throw e;
+                            }
+                            conn.rollback(savepoint);
+                            failures[i] = e;
+                        } catch (RuntimeException e) {
+                            conn.rollback(savepoint);
+                            failures[i] = e;
+                        }
+                    }
+                    conn.commit();
+                    // Logged in batch order before the writer connection is given back, so the log is in commit order
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (failures[i] == null) {
+                            bookingDB.logEvents(events.get(i));
+                        }
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            // Nothing of the batch was saved
+            for (Command<?> command : batch) {
+                command.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        batchCount.incrementAndGet();
+        writeCount.addAndGet(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures[i] != null) {
+                batch.get(i).future.completeExceptionally(failures[i]);
+            } else {
+                batch.get(i).complete(results[i]);
+            }
+        }
+    }
+
+    /**
+     * A change waiting to be written and the future of its caller
+     */
+    private static class Command<T> {
+        private final BookingDB.TransactionCall<T> step;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Command(BookingDB.TransactionCall<T> step) {
+            this.step = step;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object result) {
+            future.complete((T) result);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package hi.verkefni.vinnsla;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Loads large amounts of data through one connection in one transaction.
+ *
+ * A .sql script is streamed statement by statement, and a CSV file is
+ * inserted with a prepared statement sent to the database in batches. Either
+ * everything in a file is loaded or, if anything fails, nothing is.
+ * Individual statements are not logged; instead a progress listener is told
+ * how many rows have been loaded every so often.
+ */
+public class BulkLoader {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    public static final long DEFAULT_PROGRESS_INTERVAL = 100_000;
+    // Page cache used during a load, in KiB, so index pages stay in memory while rows are inserted
+    private static final int LOAD_CACHE_SIZE_KIB = 64 * 1024;
+
+    private final Connection conn;
+    private final int batchSize;
+    private final long progressInterval;
+    private final ProgressListener listener;
+
+    public BulkLoader(Connection conn) {
+        this(conn, DEFAULT_BATCH_SIZE, DEFAULT_PROGRESS_INTERVAL, (source, rows) -> { });
+    }
+
+    public BulkLoader(Connection conn, ProgressListener listener) {
+        this(conn, DEFAULT_BATCH_SIZE, DEFAULT_PROGRESS_INTERVAL, listener);
+    }
+
+    /**
+     * @param conn Connection to load through
+     * @param batchSize Number of rows sent to the database at a time
+     * @param progressInterval Number of rows between progress reports
+     * @param listener Told the number of rows loaded so far
+     */
+    public BulkLoader(Connection conn, int batchSize, long progressInterval, ProgressListener listener) {
+        if (batchSize < 1 || progressInterval < 1) {
+            throw new IllegalArgumentException("Batch size and progress interval must be at least 1");
+        }
+        this.conn = conn;
+        this.batchSize = batchSize;
+        this.progressInterval = progressInterval;
+        this.listener = listener;
+    }
+
+    /**
+     * Runs every statement in a .sql script
+     *
+     * @param filePath Path of the script
+     * @return Number of rows the statements changed
+     */
+    public long loadScript(String filePath) throws IOException, SQLException {
+        return inTransaction(() -> {
+            long[] rows = { 0 };
+            long[] nextReport = { progressInterval };
+            try (Statement stmt = conn.createStatement()) {
+                SqlScript.forEach(filePath, sql -> {
+                    stmt.execute(sql);
+                    rows[0] += Math.max(stmt.getUpdateCount(), 0);
+                    if (rows[0] >= nextReport[0]) {
+                        listener.progress(filePath, rows[0]);
+                        nextReport[0] = (rows[0] / progressInterval + 1) * progressInterval;
+                    }
+                });
+            }
+            listener.progress(filePath, rows[0]);
+            return rows[0];
+        });
+    }
+
+    /**
+     * Inserts the rows of a CSV file into a table. The first line of the file
+     * names the columns, and an empty field is stored as NULL.
+     *
+     * @param table Table to insert into
+     * @param filePath Path of the CSV file
+     * @return Number of rows inserted
+     */
+    public long loadCsv(String table, String filePath) throws IOException, SQLException {
+        try (CsvReader reader = new CsvReader(new FileReader(filePath, StandardCharsets.UTF_8))) {
+            List<String> columns = reader.readRow();
+            if (columns == null) {
+                throw new IOException("CSV file " + filePath + " has no header line");
+            }
+
+            return inTransaction(() -> {
+                long rows = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql(table, columns))) {
+                    List<String> fields;
+                    while ((fields = reader.readRow()) != null) {
+                        if (fields.size() != columns.size()) {
+                            throw new IOException("Line " + reader.getLineNumber() + " of " + filePath + " has "
+                                                  + fields.size() + " fields, expected " + columns.size());
+                        }
+                        for (int i = 0; i < fields.size(); i++) {
+                            String value = fields.get(i);
+                            pstmt.setString(i + 1, value.isEmpty() ? null : value);
+                        }
+                        pstmt.addBatch();
+
+                        if (++rows % batchSize == 0) {
+                            pstmt.executeBatch();
+                        }
+                        if (rows % progressInterval == 0) {
+                            listener.progress(filePath, rows);
+                        }
+                    }
+                    pstmt.executeBatch();
+                }
+                listener.progress(filePath, rows);
+                return rows;
+            });
+        }
+    }
+
+    // Column values are bound as text, SQLite converts them to the column's type
+    private static String insertSql(String table, List<String> columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(table)).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(",");
+            }
+            sql.append(quote(columns.get(i).trim()));
+            values.append("?");
+        }
+        return sql.append(") VALUES(").append(values).append(")").toString();
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    // Runs the load in one transaction, rolled back if it fails
+    private long inTransaction(Load load) throws IOException, SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        long cacheSize = pragma("cache_size");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA cache_size = -" + LOAD_CACHE_SIZE_KIB);
+        }
+        conn.setAutoCommit(false);
+        try {
+            long rows = load.run();
+            conn.commit();
+            return rows;
+        } catch (IOException | SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA cache_size = " + cacheSize);
+            }
+        }
+    }
+
+    private long pragma(String name) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.getLong(1);
+        }
+    }
+
+    private interface Load {
+        long run() throws IOException, SQLException;
+    }
+
+    public interface ProgressListener {
+        /**
+         * @param source The file being loaded
+         * @param rows Number of rows loaded from it so far
+         */
+        void progress(String source, long rows);
+    }
+}
@@ -0,0 +1,89 @@
+package hi.verkefni.vinnsla;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries database work that fails because SQLite reported the database as
+ * busy or locked, backing off a little longer after each attempt.
+ */
+public class BusyRetry {
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 20;
+
+    /**
+     * Database work that may throw SQLException
+     */
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Database work without a result
+     */
+    public interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    private BusyRetry() {
+    }
+
+    public static void run(SqlAction action) throws SQLException {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public static <T> T call(SqlWork<T> work) throws SQLException {
+        return call(work, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Runs the work, retrying busy errors up to maxAttempts times in total
+     *
+     * @param work The database work to run
+     * @param maxAttempts Number of attempts before the busy error is rethrown
+     * @param initialBackoffMillis Wait before the first retry, doubled for each retry after that
+     * @return The result of the work
+     */
+    public static <T> T call(SqlWork<T> work, int maxAttempts, long initialBackoffMillis) throws SQLException {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.run();
+            } catch (SQLException e) {
+                if (!isBusy(e) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                System.err.println("Database busy, retrying (attempt " + attempt + " of " + maxAttempts + ")");
+                sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+                backoff *= 2;
+            }
+        }
+    }
+
+    /**
+     * @return true if the error is SQLITE_BUSY or SQLITE_LOCKED, including their extended codes
+     */
+    public static boolean isBusy(SQLException e) {
+        int primaryCode = e.getErrorCode() & 0xff;
+        if (primaryCode == SQLITE_BUSY || primaryCode == SQLITE_LOCKED) {
+            return true;
+        }
+        String message = e.getMessage();
+        return message != null && (message.contains("SQLITE_BUSY") || message.contains("SQLITE_LOCKED"));
+    }
+
+    private static void sleep(long millis) throws SQLException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to retry");
+        }
+    }
+}
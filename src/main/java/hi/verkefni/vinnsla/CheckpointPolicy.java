@@ -0,0 +1,53 @@
+package hi.verkefni.vinnsla;
+
+/**
+ * When and how the write-ahead log is copied back into the database file.
+ *
+ * SQLite checkpoints on its own once the log passes autoCheckpointPages,
+ * but that work then lands on whichever booking happens to commit at that
+ * moment. With a policy in place the automatic checkpoint is raised and a
+ * background task checkpoints on a fixed interval instead.
+ */
+public class CheckpointPolicy {
+    public enum Mode {
+        // Copies what it can without waiting for readers or writers
+        PASSIVE,
+        // Waits for writers, then copies the whole log
+        FULL,
+        // Like FULL, and also truncates the log file afterwards
+        TRUNCATE
+    }
+
+    private final long intervalMillis;
+    private final Mode mode;
+    private final int autoCheckpointPages;
+
+    public CheckpointPolicy(long intervalMillis, Mode mode, int autoCheckpointPages) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        this.intervalMillis = intervalMillis;
+        this.mode = mode;
+        this.autoCheckpointPages = autoCheckpointPages;
+    }
+
+    /**
+     * Passive checkpoint every 30 seconds, with SQLite's own checkpoint as a
+     * fallback once the log reaches 10000 pages (about 40 MB)
+     */
+    public static CheckpointPolicy defaults() {
+        return new CheckpointPolicy(30_000, Mode.PASSIVE, 10_000);
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getAutoCheckpointPages() {
+        return autoCheckpointPages;
+    }
+}
@@ -0,0 +1,530 @@
+package hi.verkefni.vinnsla;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared source of SQLite connections for the DB classes.
+ *
+ * Connections are opened once and kept for the lifetime of the application:
+ * a single dedicated writer connection, handed out to one caller at a time,
+ * and a bounded pool of reader connections. Callers use the returned
+ * connection in try-with-resources as before; closing it hands it back to
+ * the provider instead of closing the underlying SQLite connection.
+ *
+ * Each connection also keeps its own StatementCache, so prepareStatement(sql)
+ * only parses and plans a given query once per connection.
+ *
+ * In StorageMode.WAL the readers never wait for the writer, and a background
+ * task checkpoints the write-ahead log according to a CheckpointPolicy.
+ */
+public class ConnectionProvider {
+    public static final String DEFAULT_URL = "jdbc:sqlite:flightbooker.db";
+    public static final int DEFAULT_READER_POOL_SIZE = 4;
+    public static final long DEFAULT_LEAK_THRESHOLD_MILLIS = 30_000;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 10_000;
+
+    private static ConnectionProvider defaultProvider;
+
+    private final String url;
+    private final int readerPoolSize;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+    private volatile long borrowTimeoutMillis = DEFAULT_BORROW_TIMEOUT_MILLIS;
+    private final Map<String, String> pragmas = new LinkedHashMap<>();
+
+    private final BlockingQueue<PooledConnection> idleReaders;
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private final Semaphore writerPermit = new Semaphore(1, true);
+    private PooledConnection writer;
+    private final Set<PooledConnection> openConnections = ConcurrentHashMap.newKeySet();
+
+    // Connections currently handed out, checked periodically for leaks
+    private final Set<Lease> activeLeases = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService leakDetector;
+    private StorageMode storageMode = StorageMode.ROLLBACK_JOURNAL;
+    private ScheduledExecutorService checkpointer;
+    private volatile boolean shutdown = false;
+
+    public ConnectionProvider(String url) {
+        this(url, DEFAULT_READER_POOL_SIZE, DEFAULT_LEAK_THRESHOLD_MILLIS);
+    }
+
+    public ConnectionProvider(String url, int readerPoolSize, long leakThresholdMillis) {
+        this(url, readerPoolSize, leakThresholdMillis, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @param url JDBC url of the SQLite database
+     * @param readerPoolSize Maximum number of reader connections
+     * @param leakThresholdMillis How long a connection may be held before it is reported, 0 to disable
+     * @param statementCacheSize Prepared statements cached per connection, 0 to disable
+     */
+    public ConnectionProvider(String url, int readerPoolSize, long leakThresholdMillis, int statementCacheSize) {
+        if (readerPoolSize < 1) {
+            throw new IllegalArgumentException("Reader pool size must be at least 1");
+        }
+        this.url = url;
+        this.readerPoolSize = readerPoolSize;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.idleReaders = new ArrayBlockingQueue<>(readerPoolSize);
+
+        // Applied to every connection when it is opened
+        pragmas.put("busy_timeout", "5000");
+        pragmas.put("cache_size", "-8000");
+        pragmas.put("temp_store", "MEMORY");
+    }
+
+    /**
+     * Provider for the application database, created on first use.
+     * No connections are opened until one is requested or warmUp() is called.
+     */
+    public static synchronized ConnectionProvider getDefault() {
+        if (defaultProvider == null) {
+            defaultProvider = new ConnectionProvider(DEFAULT_URL);
+        }
+        return defaultProvider;
+    }
+
+    /**
+     * Sets a PRAGMA that is run on every connection opened after this call
+     *
+     * @param name The pragma name, e.g. "cache_size"
+     * @param value The pragma value
+     */
+    public synchronized void setPragma(String name, String value) {
+        pragmas.put(name, value);
+    }
+
+    /**
+     * Sets the journal mode and synchronous level of every connection. The
+     * writer is switched at once if it is already open; the journal mode is
+     * kept in the database file, so open readers follow it on their next read.
+     */
+    public void setStorageMode(StorageMode storageMode) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("journal_mode", storageMode.getJournalMode());
+        settings.put("synchronous", storageMode.getSynchronous());
+        synchronized (this) {
+            this.storageMode = storageMode;
+            pragmas.putAll(settings);
+        }
+        applyToOpenWriter(settings);
+    }
+
+    /**
+     * Sets how long a caller waits for a connection before giving up
+     */
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    public synchronized StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * Starts checkpointing the write-ahead log in the background
+     *
+     * @param policy How often and in which mode to checkpoint
+     */
+    public void startCheckpoints(CheckpointPolicy policy) {
+        Map<String, String> settings = Map.of("wal_autocheckpoint", String.valueOf(policy.getAutoCheckpointPages()));
+        synchronized (this) {
+            if (storageMode != StorageMode.WAL) {
+                throw new IllegalStateException("Checkpoints only apply to StorageMode.WAL");
+            }
+            if (checkpointer != null) {
+                checkpointer.shutdownNow();
+            }
+            pragmas.putAll(settings);
+
+            checkpointer = newDaemonScheduler("wal-checkpointer");
+            checkpointer.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpoint(policy.getMode());
+                } catch (SQLException e) {
+                    System.err.println("WAL checkpoint failed: " + e.getMessage());
+                }
+            }, policy.getIntervalMillis(), policy.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+        // Automatic checkpoints run on commit, so only the writer needs the new threshold
+        applyToOpenWriter(settings);
+    }
+
+    // Runs pragmas on the writer if it is already open, connections opened later get them from pragmas
+    private void applyToOpenWriter(Map<String, String> settings) {
+        synchronized (this) {
+            if (writer == null) {
+                return;
+            }
+        }
+        try (Connection conn = getWriteConnection();
+             Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> pragma : settings.entrySet()) {
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error applying database settings: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copies the write-ahead log into the database file on the writer connection
+     *
+     * @param mode The checkpoint mode
+     * @return true if the whole log was checkpointed
+     */
+    public boolean checkpoint(CheckpointPolicy.Mode mode) throws SQLException {
+        try (Connection conn = getWriteConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(" + mode.name() + ")")) {
+            // Columns are: busy flag, pages in the log, pages checkpointed
+            return rs.next() && rs.getInt(1) == 0 && rs.getInt(2) == rs.getInt(3);
+        }
+    }
+
+    /**
+     * Opens the writer and all reader connections up front so the first
+     * queries don't pay for opening the database file.
+     */
+    public void warmUp() throws SQLException {
+        synchronized (this) {
+            if (writer == null) {
+                writer = open(true);
+            }
+        }
+        while (openReaders.get() < readerPoolSize) {
+            if (openReaders.incrementAndGet() > readerPoolSize) {
+                openReaders.decrementAndGet();
+                break;
+            }
+            try {
+                idleReaders.offer(open(false));
+            } catch (SQLException e) {
+                openReaders.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Borrows a connection for queries. Must be closed by the caller to
+     * return it to the pool.
+     */
+    public Connection getReadConnection() throws SQLException {
+        checkOpen();
+        PooledConnection pooled = idleReaders.poll();
+
+        if (pooled == null && openReaders.incrementAndGet() <= readerPoolSize) {
+            try {
+                pooled = open(false);
+            } catch (SQLException e) {
+                openReaders.decrementAndGet();
+                throw e;
+            }
+        } else if (pooled == null) {
+            openReaders.decrementAndGet();
+            try {
+                pooled = idleReaders.poll(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a reader connection");
+            }
+            if (pooled == null) {
+                throw new SQLException("Timed out waiting for a reader connection");
+            }
+        }
+        return lease(pooled);
+    }
+
+    /**
+     * Borrows the writer connection. Only one caller holds it at a time, so
+     * writes never contend for the SQLite write lock inside this process.
+     */
+    public Connection getWriteConnection() throws SQLException {
+        checkOpen();
+        try {
+            if (!writerPermit.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for the writer connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection");
+        }
+
+        try {
+            synchronized (this) {
+                if (writer == null) {
+                    writer = open(true);
+                }
+            }
+            return lease(writer);
+        } catch (SQLException e) {
+            writerPermit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes every pooled connection. Connections still borrowed are closed
+     * when they are returned.
+     */
+    public void shutdown() {
+        shutdown = true;
+        synchronized (this) {
+            if (leakDetector != null) {
+                leakDetector.shutdownNow();
+            }
+            if (checkpointer != null) {
+                checkpointer.shutdownNow();
+            }
+            if (writer != null) {
+                writer.closeQuietly();
+                writer = null;
+            }
+        }
+        PooledConnection reader;
+        while ((reader = idleReaders.poll()) != null) {
+            reader.closeQuietly();
+            openReaders.decrementAndGet();
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getActiveConnectionCount() {
+        return activeLeases.size();
+    }
+
+    /**
+     * @return Number of prepareStatement calls served from a statement cache
+     */
+    public long getStatementCacheHits() {
+        long hits = 0;
+        for (PooledConnection pooled : openConnections) {
+            hits += pooled.statementCache.getHits();
+        }
+        return hits;
+    }
+
+    /**
+     * @return Number of prepareStatement calls that had to prepare the SQL
+     */
+    public long getStatementCacheMisses() {
+        long misses = 0;
+        for (PooledConnection pooled : openConnections) {
+            misses += pooled.statementCache.getMisses();
+        }
+        return misses;
+    }
+
+    private void checkOpen() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection provider has been shut down");
+        }
+    }
+
+    private PooledConnection open(boolean isWriter) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            Map<String, String> settings;
+            synchronized (this) {
+                settings = new LinkedHashMap<>(pragmas);
+            }
+            for (Map.Entry<String, String> pragma : settings.entrySet()) {
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+            if (!isWriter) {
+                // Guards against a write slipping through a reader connection
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        PooledConnection pooled = new PooledConnection(conn, isWriter, statementCacheSize);
+        openConnections.add(pooled);
+        return pooled;
+    }
+
+    private Connection lease(PooledConnection pooled) {
+        startLeakDetector();
+        Lease lease = new Lease(pooled);
+        activeLeases.add(lease);
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, lease);
+    }
+
+    private void release(Lease lease) {
+        activeLeases.remove(lease);
+        PooledConnection pooled = lease.pooled;
+
+        boolean healthy = pooled.reset();
+        if (pooled.isWriter) {
+            if (!healthy || shutdown) {
+                synchronized (this) {
+                    pooled.closeQuietly();
+                    if (writer == pooled) {
+                        writer = null;
+                    }
+                }
+            }
+            writerPermit.release();
+        } else if (!healthy || shutdown || !idleReaders.offer(pooled)) {
+            pooled.closeQuietly();
+            openReaders.decrementAndGet();
+        }
+    }
+
+    private synchronized void startLeakDetector() {
+        if (leakDetector != null || leakThresholdMillis <= 0) {
+            return;
+        }
+        leakDetector = newDaemonScheduler("connection-leak-detector");
+        long period = Math.max(leakThresholdMillis / 2, 1000);
+        leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledExecutorService newDaemonScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Reports connections held past the threshold that haven't been reported yet, returns how many were
+    int detectLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return 0;
+        }
+        int reportedCount = 0;
+        long now = System.currentTimeMillis();
+        for (Lease lease : activeLeases) {
+            if (!lease.reported && now - lease.borrowedAt > leakThresholdMillis) {
+                lease.reported = true;
+                reportedCount++;
+                System.err.println("Possible connection leak: connection held for "
+                        + (now - lease.borrowedAt) + " ms by " + lease.borrower);
+                lease.borrowSite.printStackTrace();
+            }
+        }
+        return reportedCount;
+    }
+
+    /**
+     * A physical SQLite connection owned by the provider
+     */
+    private class PooledConnection {
+        private final Connection connection;
+        private final boolean isWriter;
+        private final StatementCache statementCache;
+
+        PooledConnection(Connection connection, boolean isWriter, int statementCacheSize) {
+            this.connection = connection;
+            this.isWriter = isWriter;
+            this.statementCache = new StatementCache(connection, statementCacheSize);
+        }
+
+        // Undo anything a borrower left behind, returns false if the connection is unusable
+        boolean reset() {
+            try {
+                if (connection.isClosed()) {
+                    return false;
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            openConnections.remove(this);
+            statementCache.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection. Forwards calls to the physical
+     * connection until closed, after which the connection is back in the pool.
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final String borrower = Thread.currentThread().getName();
+        // Filling in a stack trace is costly, so it is only taken when leaks are being looked for
+        private final Throwable borrowSite = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+        private volatile boolean reported = false;
+        private boolean closed = false;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + (pooled.isWriter ? "Writer" : "Reader") + "[" + url + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return pooled.statementCache.prepare((String) args[0]);
+            }
+            try {
+                return method.invoke(pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package hi.verkefni.vinnsla;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma separated rows from a stream, one row at a time.
+ *
+ * Fields may be quoted with '"', in which case they can contain commas,
+ * line breaks and doubled quotes. Only the current row is held in memory.
+ */
+public class CsvReader implements Closeable {
+    private final BufferedReader reader;
+    private final char separator;
+    private long lineNumber = 0;
+
+    public CsvReader(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CsvReader(Reader reader, char separator) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+        this.separator = separator;
+    }
+
+    /**
+     * Reads the next row
+     *
+     * @return The fields of the row, or null at the end of the stream
+     * @throws IOException If reading fails or a quoted field is never closed
+     */
+    public List<String> readRow() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        lineNumber++;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // Line break inside a quoted field
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Unterminated quoted field on line " + lineNumber);
+                }
+                lineNumber++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * @return Number of lines read so far, for error messages
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -3,16 +3,14 @@ package hi.verkefni.vinnsla;
 import java.sql.*;
 
 public class CustomerDB {
-    private Connection connect() {
-        // SQLite connection string
-        String url = "jdbc:sqlite:flightbooker.db";
-        Connection conn = null;
-        try {
-            conn = DriverManager.getConnection(url);
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-        return conn;
+    private final ConnectionProvider connectionProvider;
+    
+    public CustomerDB() {
+        this(ConnectionProvider.getDefault());
+    }
+    
+    public CustomerDB(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
     }
     
     // Create customers table if it doesn't exist
@@ -24,7 +22,7 @@ public class CustomerDB {
                 + "	phoneNumber TEXT\n"
                 + ");";
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getWriteConnection();
              Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
         } catch (SQLException e) {
@@ -35,7 +33,7 @@ public class CustomerDB {
     public Customer selectById(String customerId) {
         String sql = "SELECT customerId, name, email, phoneNumber FROM Customer WHERE customerId = ?";
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, customerId);
@@ -58,7 +56,7 @@ public class CustomerDB {
     public void insert(Customer customer) {
         String sql = "INSERT INTO Customer(customerId, name, email, phoneNumber) VALUES(?,?,?,?)";
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, customer.getCustomerId());
             pstmt.setString(2, customer.getName());
@@ -73,7 +71,7 @@ public class CustomerDB {
     public void update(Customer customer) {
         String sql = "UPDATE Customer SET name = ?, email = ?, phoneNumber = ? WHERE customerId = ?";
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, customer.getName());
             pstmt.setString(2, customer.getEmail());
@@ -88,7 +86,7 @@ public class CustomerDB {
     public void delete(String customerId) {
         String sql = "DELETE FROM Customer WHERE customerId = ?";
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getWriteConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, customerId);
             pstmt.executeUpdate();
@@ -1,42 +1,95 @@
 package hi.verkefni.vinnsla;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
 
 public class DatabaseInitializer {
-    private static final String DB_URL = "jdbc:sqlite:flightbooker.db";
+    private static final String DB_PATH = "flightbooker.db";
+    private static final String SCRIPTS_DIR = "db";
+    private static final String IMPORT_FLIGHTS = "--import-flights=";
+    private static final String IMPORT_SEATS = "--import-seats=";
     
     public static void initialize() {
+        initialize(DB_PATH, SCRIPTS_DIR);
+    }
+    
+    /**
+     * Brings a database up to date, creating it if it doesn't exist.
+     * Only migrations the database doesn't have yet are applied, and the test
+     * data is only loaded into a database without any flights, so existing
+     * data and bookings are kept and startup doesn't depend on their size.
+     *
+     * @param dbPath Path of the database file
+     * @param scriptsDir Directory holding insert.sql and the migrations directory
+     */
+    public static void initialize(String dbPath, String scriptsDir) {
+        String url = "jdbc:sqlite:" + dbPath;
+        migrate(url, scriptsDir + "/migrations");
+        if (isEmpty(url)) {
+            loadTestData(url, scriptsDir + "/insert.sql");
+        }
+    }
+    
+    /**
+     * Deletes a database and creates it again from the migrations and test data
+     *
+     * @param dbPath Path of the database file
+     * @param scriptsDir Directory holding insert.sql and the migrations directory
+     */
+    public static void recreate(String dbPath, String scriptsDir) {
         // Delete existing database file if it exists
-        File dbFile = new File("flightbooker.db");
+        File dbFile = new File(dbPath);
         if (dbFile.exists()) {
             System.out.println("Deleting existing database file...");
             dbFile.delete();
         }
         
-        createTables();
-        loadTestData();
+        // Leftover write-ahead log files would otherwise be applied to the new database
+        new File(dbPath + "-wal").delete();
+        new File(dbPath + "-shm").delete();
+        
+        initialize(dbPath, scriptsDir);
+    }
+    
+    // A database without flights has never had data loaded into it
+    private static boolean isEmpty(String url) {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM Flight)")) {
+            return !rs.getBoolean(1);
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
     }
     
-    private static void createTables() {
-        try {
-            executeSqlFile("db/schema.sql");
-            System.out.println("Database schema created successfully");
+    // Apply the schema migrations that this database doesn't have yet
+    private static void migrate(String url, String migrationsDir) {
+        try (Connection conn = DriverManager.getConnection(url)) {
+            MigrationRunner runner = new MigrationRunner(conn, migrationsDir);
+            int applied = runner.migrate();
+            System.out.println("Database schema at version " + runner.getCurrentVersion()
+                    + " (" + applied + " migrations applied)");
         } catch (IOException | SQLException e) {
-            System.err.println("Error creating database schema: " + e.getMessage());
+            System.err.println("Error migrating database schema: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
-    private static void loadTestData() {
-        try {
-            executeSqlFile("db/insert.sql");
+    // Load the test data through one connection in one transaction
+    private static void loadTestData(String url, String filePath) {
+        try (Connection conn = DriverManager.getConnection(url)) {
+            BulkLoader loader = new BulkLoader(conn,
+                (source, rows) -> System.out.println("Loaded " + rows + " rows from " + source));
+            loader.loadScript(filePath);
             System.out.println("Test data loaded successfully");
         } catch (IOException | SQLException e) {
             System.err.println("Error loading test data: " + e.getMessage());
@@ -44,44 +97,61 @@ public class DatabaseInitializer {
         }
     }
     
-    private static void executeSqlFile(String filePath) throws IOException, SQLException {
-        File file = new File(filePath);
-        StringBuilder sql = new StringBuilder();
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                
-                // Skip comment lines and empty lines
-                if (line.startsWith("//") || line.startsWith("--") || line.startsWith("/*") || line.isEmpty()) {
-                    continue;
+    /**
+     * Imports the feed files given as --import-flights=<file> and
+     * --import-seats=<file>. Flights are imported first so the flights of the
+     * seats exist, and a feed that fails is reported without stopping the other.
+     *
+     * @param importer Writes the feeds to the database
+     * @param args Command line arguments, other arguments are ignored
+     */
+    public static void importSchedules(ScheduleImporter importer, List<String> args) {
+        for (String arg : args) {
+            if (arg.startsWith(IMPORT_FLIGHTS)) {
+                String file = arg.substring(IMPORT_FLIGHTS.length());
+                try {
+                    report(file, importer.importFlights(Path.of(file)));
+                } catch (IOException | SQLException e) {
+                    System.err.println("Error importing flights from " + file + ": " + e.getMessage());
                 }
-                
-                sql.append(line).append(" ");
-                
-                // Execute when we reach the end of a statement
-                if (line.endsWith(";")) {
-                    String sqlStatement = sql.toString().trim();
-                    System.out.println("Executing SQL: " + sqlStatement);
-                    executeSQL(sqlStatement);
-                    sql.setLength(0);
+            }
+        }
+        for (String arg : args) {
+            if (arg.startsWith(IMPORT_SEATS)) {
+                String file = arg.substring(IMPORT_SEATS.length());
+                try {
+                    report(file, importer.importSeats(Path.of(file)));
+                } catch (IOException | SQLException e) {
+                    System.err.println("Error importing seats from " + file + ": " + e.getMessage());
                 }
             }
         }
     }
     
-    private static void executeSQL(String sql) throws SQLException {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        } catch (SQLException e) {
-            System.err.println("SQL Error executing: " + sql);
-            throw e;
+    private static void report(String file, ImportResult result) {
+        System.out.println("Imported " + file + ": " + result);
+        for (String error : result.getErrors()) {
+            System.out.println("  " + error);
         }
     }
     
+    // Run with --reset to start over from an empty database,
+    // and with --import-flights=<file> and --import-seats=<file> to import schedule feeds
     public static void main(String[] args) {
-        initialize();
+        if (args.length > 0 && args[0].equals("--reset")) {
+            recreate(DB_PATH, SCRIPTS_DIR);
+        } else {
+            initialize();
+        }
+        
+        List<String> options = Arrays.asList(args);
+        if (options.stream().anyMatch(arg -> arg.startsWith(IMPORT_FLIGHTS) || arg.startsWith(IMPORT_SEATS))) {
+            ConnectionProvider connectionProvider = new ConnectionProvider("jdbc:sqlite:" + DB_PATH);
+            try {
+                importSchedules(new ScheduleImporter(connectionProvider), options);
+            } finally {
+                connectionProvider.shutdown();
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package hi.verkefni.vinnsla;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * The departure times a flight search accepts: a range of dates and times,
+ * optionally narrowed to a window of the day, e.g. 06:00 to 10:00 on any
+ * day of the range. A window whose end is before its start runs past
+ * midnight.
+ *
+ * Times are compared as stored in the database, see Timestamps.
+ */
+public class DepartureRange {
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final LocalTime earliest;
+    private final LocalTime latest;
+
+    private DepartureRange(LocalDateTime from, LocalDateTime to, LocalTime earliest, LocalTime latest) {
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("End of range must be after its start");
+        }
+        if ((earliest == null) != (latest == null)) {
+            throw new IllegalArgumentException("Time of day window needs both a start and an end");
+        }
+        if (earliest != null && earliest.equals(latest)) {
+            throw new IllegalArgumentException("Time of day window can't be empty");
+        }
+        this.from = from;
+        this.to = to;
+        this.earliest = earliest;
+        this.latest = latest;
+    }
+
+    /**
+     * @param from Earliest departure
+     * @param to End of the range, departures at this time are not included
+     */
+    public static DepartureRange between(LocalDateTime from, LocalDateTime to) {
+        return new DepartureRange(from, to, null, null);
+    }
+
+    /**
+     * @return Range without limits on the date, to narrow down with withTimeOfDay
+     */
+    public static DepartureRange anyDate() {
+        return between(LocalDateTime.MIN, LocalDateTime.MAX);
+    }
+
+    /**
+     * @return Range covering the whole day
+     */
+    public static DepartureRange onDay(LocalDate date) {
+        return around(date, 0);
+    }
+
+    /**
+     * @param date The preferred day
+     * @param flexDays How many days earlier or later are also accepted
+     * @return Range from the start of date - flexDays to the end of date + flexDays
+     */
+    public static DepartureRange around(LocalDate date, int flexDays) {
+        if (flexDays < 0) {
+            throw new IllegalArgumentException("Number of flexible days can't be negative");
+        }
+        return between(date.minusDays(flexDays).atStartOfDay(), date.plusDays(flexDays + 1).atStartOfDay());
+    }
+
+    /**
+     * @param earliest Earliest time of day to depart, null together with latest for the whole day
+     * @param latest Departures at this time of day or later are not included
+     * @return This range, only accepting departures in the given window of each day
+     */
+    public DepartureRange withTimeOfDay(LocalTime earliest, LocalTime latest) {
+        return new DepartureRange(from, to, earliest, latest);
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public LocalTime getEarliest() {
+        return earliest;
+    }
+
+    public LocalTime getLatest() {
+        return latest;
+    }
+
+    /**
+     * @return true if only part of each day is accepted
+     */
+    public boolean hasTimeOfDay() {
+        return earliest != null;
+    }
+
+    public long getFromEpochSecond() {
+        return Timestamps.toEpochSecond(from);
+    }
+
+    public long getToEpochSecond() {
+        return Timestamps.toEpochSecond(to);
+    }
+
+    /**
+     * @return true if a departure at this time is in the range and the window of the day
+     */
+    public boolean contains(LocalDateTime departure) {
+        return !departure.isBefore(from) && departure.isBefore(to)
+            && matchesTimeOfDay(Timestamps.toEpochSecond(departure));
+    }
+
+    /**
+     * Checks only the window of the day, not the range of dates
+     *
+     * @param epochSecond Departure time as stored in the database
+     * @return true if the time of day is in the window, or there is no window
+     */
+    public boolean matchesTimeOfDay(long epochSecond) {
+        if (earliest == null) {
+            return true;
+        }
+        int secondOfDay = (int) Math.floorMod(epochSecond, (long) SECONDS_PER_DAY);
+        int start = earliest.toSecondOfDay();
+        int end = latest.toSecondOfDay();
+        if (start < end) {
+            return secondOfDay >= start && secondOfDay < end;
+        }
+        return secondOfDay >= start || secondOfDay < end;
+    }
+}
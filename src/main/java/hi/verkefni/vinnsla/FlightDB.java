@@ -2,29 +2,26 @@ package hi.verkefni.vinnsla;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class FlightDB {
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final ConnectionProvider connectionProvider;
     
-    private Connection connect() {
-        String url = "jdbc:sqlite:flightbooker.db";
-        Connection conn = null;
-        try {
-            conn = DriverManager.getConnection(url);
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-        return conn;
+    public FlightDB() {
+        this(ConnectionProvider.getDefault());
+    }
+    
+    public FlightDB(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
     }
     
     public Flight selectByFlightNumber(String flightNumber) {
         String sql = "SELECT flightNumber, origin, destination, departureTime, arrivalTime " +
                      "FROM Flight WHERE flightNumber = ?";
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, flightNumber);
@@ -35,8 +32,8 @@ public class FlightDB {
                     rs.getString("flightNumber"),
                     rs.getString("origin"),
                     rs.getString("destination"),
-                    LocalDateTime.parse(rs.getString("departureTime"), formatter),
-                    LocalDateTime.parse(rs.getString("arrivalTime"), formatter)
+                    Timestamps.fromEpochSecond(rs.getLong("departureTime")),
+                    Timestamps.fromEpochSecond(rs.getLong("arrivalTime"))
                 );
             }
         } catch (SQLException e) {
@@ -45,6 +42,28 @@ public class FlightDB {
         return null;
     }
     
+    /**
+     * Updates a flight, e.g. when it is rescheduled
+     * 
+     * @param flight The flight with its new values
+     */
+    public void update(Flight flight) {
+        String sql = "UPDATE Flight SET origin = ?, destination = ?, departureTime = ?, arrivalTime = ? " +
+                     "WHERE flightNumber = ?";
+        
+        try (Connection conn = connectionProvider.getWriteConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, flight.getOrigin());
+            pstmt.setString(2, flight.getDestination());
+            pstmt.setLong(3, Timestamps.toEpochSecond(flight.getDepartureTime()));
+            pstmt.setLong(4, Timestamps.toEpochSecond(flight.getArrivalTime()));
+            pstmt.setString(5, flight.getFlightNumber());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+    
     /**
      * Flexible flight search with optional parameters
      * 
@@ -73,8 +92,11 @@ public class FlightDB {
         }
         
         if (date != null) {
-            sqlBuilder.append(" AND date(departureTime) = ?");
-            params.add(date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+            // Departure times are epoch seconds, so a day is an integer range
+            long dayStart = Timestamps.startOfDay(date.toLocalDate());
+            sqlBuilder.append(" AND departureTime >= ? AND departureTime < ?");
+            params.add(dayStart);
+            params.add(dayStart + 86_400L);
         }
         
         // Add order by clause
@@ -83,7 +105,7 @@ public class FlightDB {
         String sql = sqlBuilder.toString();
         List<Flight> flights = new ArrayList<>();
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             // Set parameters
@@ -98,8 +120,8 @@ public class FlightDB {
                     rs.getString("flightNumber"),
                     rs.getString("origin"),
                     rs.getString("destination"),
-                    LocalDateTime.parse(rs.getString("departureTime"), formatter),
-                    LocalDateTime.parse(rs.getString("arrivalTime"), formatter)
+                    Timestamps.fromEpochSecond(rs.getLong("departureTime")),
+                    Timestamps.fromEpochSecond(rs.getLong("arrivalTime"))
                 ));
             }
         } catch (SQLException e) {
@@ -108,6 +130,94 @@ public class FlightDB {
         return flights;
     }
     
+    /**
+     * Finds flights departing in a range of time, earliest departure first
+     * 
+     * @param origin Optional origin airport code
+     * @param destination Optional destination airport code
+     * @param range Departure times to accept
+     * @param limit Most flights to return
+     * @return List of matching flights
+     */
+    public List<Flight> searchFlights(String origin, String destination, DepartureRange range, int limit) {
+        List<Flight> flights = new ArrayList<>();
+        streamFlights(origin, destination, range, limit, flights::add);
+        return flights;
+    }
+    
+    /**
+     * Passes flights departing in a range of time to a consumer one at a
+     * time, earliest departure first, as they are read from an index on
+     * departure time. The time of day window is checked on the index entries
+     * and the query stops once the limit is reached, so a wide range costs
+     * no more than the flights actually returned.
+     * 
+     * @param origin Optional origin airport code
+     * @param destination Optional destination airport code
+     * @param range Departure times to accept
+     * @param limit Most flights to pass on
+     * @param consumer Receives each flight
+     */
+    public void streamFlights(String origin, String destination, DepartureRange range, int limit,
+                              Consumer<Flight> consumer) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        
+        StringBuilder sqlBuilder = new StringBuilder(
+            "SELECT flightNumber, origin, destination, departureTime, arrivalTime FROM Flight " +
+            "WHERE departureTime >= ? AND departureTime < ?");
+        List<Object> params = new ArrayList<>();
+        params.add(range.getFromEpochSecond());
+        params.add(range.getToEpochSecond());
+        
+        if (origin != null && !origin.isEmpty()) {
+            sqlBuilder.append(" AND origin = ?");
+            params.add(origin);
+        }
+        
+        if (destination != null && !destination.isEmpty()) {
+            sqlBuilder.append(" AND destination = ?");
+            params.add(destination);
+        }
+        
+        if (range.hasTimeOfDay()) {
+            // A window past midnight keeps the end of one day and the start of the next
+            String join = range.getEarliest().isBefore(range.getLatest()) ? " AND " : " OR ";
+            sqlBuilder.append(" AND (departureTime % 86400 >= ?").append(join).append("departureTime % 86400 < ?)");
+            params.add(range.getEarliest().toSecondOfDay());
+            params.add(range.getLatest().toSecondOfDay());
+        }
+        
+        sqlBuilder.append(" ORDER BY departureTime LIMIT ?");
+        params.add(limit);
+        
+        try (Connection conn = connectionProvider.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sqlBuilder.toString())) {
+            
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                consumer.accept(toFlight(rs));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+    
+    private static Flight toFlight(ResultSet rs) throws SQLException {
+        return new Flight(
+            rs.getString("flightNumber"),
+            rs.getString("origin"),
+            rs.getString("destination"),
+            Timestamps.fromEpochSecond(rs.getLong("departureTime")),
+            Timestamps.fromEpochSecond(rs.getLong("arrivalTime"))
+        );
+    }
+    
     /**
      * Search flights by origin
      * 
@@ -143,7 +253,7 @@ public class FlightDB {
         
         List<Flight> flights = new ArrayList<>();
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -152,8 +262,8 @@ public class FlightDB {
                     rs.getString("flightNumber"),
                     rs.getString("origin"),
                     rs.getString("destination"),
-                    LocalDateTime.parse(rs.getString("departureTime"), formatter),
-                    LocalDateTime.parse(rs.getString("arrivalTime"), formatter)
+                    Timestamps.fromEpochSecond(rs.getLong("departureTime")),
+                    Timestamps.fromEpochSecond(rs.getLong("arrivalTime"))
                 ));
             }
         } catch (SQLException e) {
@@ -171,7 +281,7 @@ public class FlightDB {
         String sql = "SELECT DISTINCT origin FROM Flight ORDER BY origin";
         List<String> origins = new ArrayList<>();
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -193,7 +303,7 @@ public class FlightDB {
         String sql = "SELECT DISTINCT destination FROM Flight ORDER BY destination";
         List<String> destinations = new ArrayList<>();
         
-        try (Connection conn = this.connect();
+        try (Connection conn = connectionProvider.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -0,0 +1,325 @@
+package hi.verkefni.vinnsla;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * In-memory index of flights for searching without going to the database.
+ *
+ * All flights are kept in one array sorted by departure time. For each
+ * origin and each destination there is a postings list with the positions
+ * of its flights in that array, in ascending order, so the flights from an
+ * airport are already in departure order and the flights on a given day
+ * are found with a binary search. A search by both origin and destination
+ * walks the shorter of the two postings lists.
+ *
+ * Searches read an immutable snapshot and never wait. Changes build a new
+ * snapshot and swap it in, which costs time linear in the number of
+ * flights, so the index suits a timetable that is searched far more often
+ * than it changes. The index keeps its own copies of the flights and hands
+ * out copies, so changing a Flight object never changes the index.
+ */
+public class FlightSearchIndex {
+    private static final Comparator<Flight> DEPARTURE_ORDER =
+        Comparator.comparing(Flight::getDepartureTime).thenComparing(Flight::getFlightNumber);
+    private static final int[] NO_FLIGHTS = new int[0];
+
+    private volatile Snapshot snapshot;
+
+    public FlightSearchIndex(Collection<Flight> flights) {
+        Flight[] sorted = flights.stream().map(FlightSearchIndex::copy).toArray(Flight[]::new);
+        Arrays.sort(sorted, DEPARTURE_ORDER);
+        this.snapshot = new Snapshot(sorted);
+    }
+
+    private static Flight copy(Flight flight) {
+        return new Flight(flight.getFlightNumber(), flight.getOrigin(), flight.getDestination(),
+            flight.getDepartureTime(), flight.getArrivalTime());
+    }
+
+    /**
+     * Adds a flight, or replaces the flight with the same flight number
+     *
+     * @param flight The new or changed flight
+     */
+    public synchronized void put(Flight flight) {
+        Flight added = copy(flight);
+        Flight[] current = snapshot.flights;
+        Integer oldPosition = snapshot.positionByNumber.get(flight.getFlightNumber());
+
+        int insertAt = -Arrays.binarySearch(current, added, DEPARTURE_ORDER) - 1;
+        if (insertAt < 0) {
+            // Same flight number and departure time, just replace it
+            Flight[] replaced = current.clone();
+            replaced[-insertAt - 1] = added;
+            snapshot = new Snapshot(replaced);
+            return;
+        }
+
+        Flight[] updated = new Flight[current.length + (oldPosition == null ? 1 : 0)];
+        int target = 0;
+        for (int i = 0; i <= current.length; i++) {
+            if (i == insertAt) {
+                updated[target++] = added;
+            }
+            if (i < current.length && (oldPosition == null || i != oldPosition)) {
+                updated[target++] = current[i];
+            }
+        }
+        snapshot = new Snapshot(updated);
+    }
+
+    /**
+     * Removes a flight
+     *
+     * @param flightNumber The flight number
+     * @return true if the flight was in the index
+     */
+    public synchronized boolean remove(String flightNumber) {
+        Flight[] current = snapshot.flights;
+        Integer position = snapshot.positionByNumber.get(flightNumber);
+        if (position == null) {
+            return false;
+        }
+        Flight[] updated = new Flight[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, position);
+        System.arraycopy(current, position + 1, updated, position, current.length - position - 1);
+        snapshot = new Snapshot(updated);
+        return true;
+    }
+
+    /**
+     * @return The flight with this number, or null if there is none
+     */
+    public Flight get(String flightNumber) {
+        Snapshot current = snapshot;
+        Integer position = current.positionByNumber.get(flightNumber);
+        return position == null ? null : copy(current.flights[position]);
+    }
+
+    public int size() {
+        return snapshot.flights.length;
+    }
+
+    /**
+     * Finds flights matching any combination of the filters, works like
+     * FlightDB.searchFlights
+     *
+     * @param origin Origin airport code, null or empty to match any
+     * @param destination Destination airport code, null or empty to match any
+     * @param date Departure date, only the day is used, null to match any
+     * @return Matching flights in departure order
+     */
+    public List<Flight> search(String origin, String destination, LocalDateTime date) {
+        DepartureRange range = date == null ? null : DepartureRange.onDay(date.toLocalDate());
+        return search(origin, destination, range, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds flights departing in a range of time. The range is found with a
+     * binary search over the departure times and the flights in it are
+     * visited in departure order, so the search stops as soon as it has
+     * enough flights.
+     *
+     * @param origin Origin airport code, null or empty to match any
+     * @param destination Destination airport code, null or empty to match any
+     * @param range Departure times to accept, null to match any
+     * @param limit Most flights to return
+     * @return Matching flights in departure order
+     */
+    public List<Flight> search(String origin, String destination, DepartureRange range, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        Snapshot current = snapshot;
+
+        int from = 0;
+        int to = current.flights.length;
+        if (range != null) {
+            from = current.firstDepartingAtOrAfter(range.getFromEpochSecond());
+            to = current.firstDepartingAtOrAfter(range.getToEpochSecond());
+        }
+        boolean checkTimeOfDay = range != null && range.hasTimeOfDay();
+
+        List<Flight> matches = new ArrayList<>();
+        int[] byOrigin = origin == null || origin.isEmpty() ? null : current.byOrigin.getOrDefault(origin, NO_FLIGHTS);
+        int[] byDestination = destination == null || destination.isEmpty()
+            ? null : current.byDestination.getOrDefault(destination, NO_FLIGHTS);
+
+        if (byOrigin == null && byDestination == null) {
+            for (int i = from; i < to && matches.size() < limit; i++) {
+                if (!checkTimeOfDay || range.matchesTimeOfDay(current.departureTimes[i])) {
+                    matches.add(copy(current.flights[i]));
+                }
+            }
+            return matches;
+        }
+
+        // Walk the shorter postings list and check the other filter on each flight
+        int[] postings;
+        boolean checkOrigin = false;
+        boolean checkDestination = false;
+        if (byOrigin != null && (byDestination == null || byOrigin.length <= byDestination.length)) {
+            postings = byOrigin;
+            checkDestination = byDestination != null;
+        } else {
+            postings = byDestination;
+            checkOrigin = byOrigin != null;
+        }
+
+        for (int p = lowerBound(postings, from); p < postings.length && postings[p] < to && matches.size() < limit; p++) {
+            int position = postings[p];
+            Flight flight = current.flights[position];
+            if ((!checkOrigin || flight.getOrigin().equals(origin))
+                    && (!checkDestination || flight.getDestination().equals(destination))
+                    && (!checkTimeOfDay || range.matchesTimeOfDay(current.departureTimes[position]))) {
+                matches.add(copy(flight));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return All flights in departure order
+     */
+    public List<Flight> getAllFlights() {
+        return search(null, null, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return All origin airports in alphabetical order
+     */
+    public List<String> getOrigins() {
+        return snapshot.origins;
+    }
+
+    /**
+     * @return All destination airports in alphabetical order
+     */
+    public List<String> getDestinations() {
+        return snapshot.destinations;
+    }
+
+    /**
+     * @param origin Origin airport code
+     * @return Airports with a direct flight from the origin, in alphabetical order
+     */
+    public List<String> getDestinationsFrom(String origin) {
+        return snapshot.destinationsByOrigin.getOrDefault(origin, List.of());
+    }
+
+    /**
+     * @param destination Destination airport code
+     * @return Airports with a direct flight to the destination, in alphabetical order
+     */
+    public List<String> getOriginsTo(String destination) {
+        return snapshot.originsByDestination.getOrDefault(destination, List.of());
+    }
+
+    // First position in the sorted postings list holding a value of at least min
+    private static int lowerBound(int[] postings, int min) {
+        int low = 0;
+        int high = postings.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postings[mid] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The flights sorted by departure and the lookups built over them, never changed once built
+     */
+    private static class Snapshot {
+        private final Flight[] flights;
+        private final long[] departureTimes;
+        private final Map<String, Integer> positionByNumber;
+        private final TreeMap<String, int[]> byOrigin;
+        private final TreeMap<String, int[]> byDestination;
+        // Airport lists worked out once per snapshot, so opening a search doesn't scan the flights
+        private final List<String> origins;
+        private final List<String> destinations;
+        private final Map<String, List<String>> destinationsByOrigin;
+        private final Map<String, List<String>> originsByDestination;
+
+        Snapshot(Flight[] flights) {
+            this.flights = flights;
+            this.departureTimes = new long[flights.length];
+            this.positionByNumber = new HashMap<>(flights.length * 2);
+
+            Map<String, Integer> originCounts = new HashMap<>();
+            Map<String, Integer> destinationCounts = new HashMap<>();
+            for (int i = 0; i < flights.length; i++) {
+                departureTimes[i] = Timestamps.toEpochSecond(flights[i].getDepartureTime());
+                positionByNumber.put(flights[i].getFlightNumber(), i);
+                originCounts.merge(flights[i].getOrigin(), 1, Integer::sum);
+                destinationCounts.merge(flights[i].getDestination(), 1, Integer::sum);
+            }
+
+            this.byOrigin = postings(originCounts);
+            this.byDestination = postings(destinationCounts);
+            Map<String, Integer> originFill = new HashMap<>();
+            Map<String, Integer> destinationFill = new HashMap<>();
+            for (int i = 0; i < flights.length; i++) {
+                String origin = flights[i].getOrigin();
+                String destination = flights[i].getDestination();
+                byOrigin.get(origin)[originFill.merge(origin, 1, Integer::sum) - 1] = i;
+                byDestination.get(destination)[destinationFill.merge(destination, 1, Integer::sum) - 1] = i;
+            }
+
+            this.origins = List.copyOf(byOrigin.keySet());
+            this.destinations = List.copyOf(byDestination.keySet());
+            this.destinationsByOrigin = airportsReached(byOrigin, flights, Flight::getDestination);
+            this.originsByDestination = airportsReached(byDestination, flights, Flight::getOrigin);
+        }
+
+        // For each airport, the sorted set of airports at the other end of its flights
+        private static Map<String, List<String>> airportsReached(TreeMap<String, int[]> postings, Flight[] flights,
+                                                                 Function<Flight, String> otherEnd) {
+            Map<String, List<String>> reached = new HashMap<>(postings.size() * 2);
+            for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+                TreeSet<String> airports = new TreeSet<>();
+                for (int position : entry.getValue()) {
+                    airports.add(otherEnd.apply(flights[position]));
+                }
+                reached.put(entry.getKey(), List.copyOf(airports));
+            }
+            return reached;
+        }
+
+        private static TreeMap<String, int[]> postings(Map<String, Integer> counts) {
+            TreeMap<String, int[]> postings = new TreeMap<>();
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                postings.put(entry.getKey(), new int[entry.getValue()]);
+            }
+            return postings;
+        }
+
+        int firstDepartingAtOrAfter(long epochSecond) {
+            int low = 0;
+            int high = departureTimes.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (departureTimes[mid] < epochSecond) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package hi.verkefni.vinnsla;
+
+/**
+ * How bookings are grouped into shared transactions by the BookingWriter.
+ *
+ * Each commit waits for the disk to sync, so committing every booking on its
+ * own caps bookings per second at the disk's sync rate. The writer instead
+ * commits up to maxBatchSize bookings at once, waiting at most maxDelayMillis
+ * after the first one arrives for more to join it. Under light load a
+ * booking waits at most that long, under heavy load batches fill up and the
+ * sync is shared by the whole batch.
+ */
+public class GroupCommitPolicy {
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final int queueCapacity;
+
+    /**
+     * @param maxBatchSize Most bookings committed in one transaction
+     * @param maxDelayMillis Longest a booking waits for others to join its batch, 0 to take only those already waiting
+     * @param queueCapacity Most bookings waiting to be written, callers wait when the queue is full
+     */
+    public GroupCommitPolicy(int maxBatchSize, long maxDelayMillis, int queueCapacity) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Batch delay can't be negative");
+        }
+        if (queueCapacity < maxBatchSize) {
+            throw new IllegalArgumentException("Queue must hold at least one full batch");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Batches of up to 64 bookings, waiting at most 2 ms for a batch to fill,
+     * with room for 4096 bookings in the queue
+     */
+    public static GroupCommitPolicy defaults() {
+        return new GroupCommitPolicy(64, 2, 4096);
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+}
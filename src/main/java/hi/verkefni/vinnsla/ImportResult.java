@@ -0,0 +1,61 @@
+package hi.verkefni.vinnsla;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of importing a file: how many rows were read, written and
+ * rejected, and why the first few rejected rows were rejected.
+ */
+public class ImportResult {
+    // Only the first errors are kept so a bad file can't use up memory
+    public static final int MAX_ERRORS = 100;
+
+    private long rowsRead = 0;
+    private long rowsWritten = 0;
+    private long rowsRejected = 0;
+    private final List<String> errors = new ArrayList<>();
+
+    void addRead() {
+        rowsRead++;
+    }
+
+    void addWritten(long rows) {
+        rowsWritten += rows;
+    }
+
+    void addRejected(String error) {
+        rowsRejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * @return Number of rows that were inserted or changed an existing row
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    /**
+     * @return Reasons for the first MAX_ERRORS rejected rows
+     */
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return rowsRead + " rows read, " + rowsWritten + " written, " + rowsRejected + " rejected";
+    }
+}
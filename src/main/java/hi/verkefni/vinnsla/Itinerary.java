@@ -0,0 +1,58 @@
+package hi.verkefni.vinnsla;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A trip from one airport to another on one or more flights, each leg
+ * departing from the airport the previous one arrived at.
+ */
+public class Itinerary {
+    private final List<Flight> legs;
+
+    public Itinerary(List<Flight> legs) {
+        if (legs.isEmpty()) {
+            throw new IllegalArgumentException("An itinerary needs at least one flight");
+        }
+        this.legs = List.copyOf(legs);
+    }
+
+    /**
+     * @return The flights of the trip in the order they are taken
+     */
+    public List<Flight> getLegs() {
+        return Collections.unmodifiableList(legs);
+    }
+
+    public String getOrigin() {
+        return legs.get(0).getOrigin();
+    }
+
+    public String getDestination() {
+        return legs.get(legs.size() - 1).getDestination();
+    }
+
+    public LocalDateTime getDepartureTime() {
+        return legs.get(0).getDepartureTime();
+    }
+
+    public LocalDateTime getArrivalTime() {
+        return legs.get(legs.size() - 1).getArrivalTime();
+    }
+
+    /**
+     * @return Number of stops on the way, 0 for a direct flight
+     */
+    public int getStops() {
+        return legs.size() - 1;
+    }
+
+    /**
+     * @return Time from the first departure to the last arrival
+     */
+    public Duration getDuration() {
+        return Duration.between(getDepartureTime(), getArrivalTime());
+    }
+}
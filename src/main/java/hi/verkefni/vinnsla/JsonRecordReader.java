@@ -0,0 +1,185 @@
+package hi.verkefni.vinnsla;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads flat JSON objects from a stream, one object at a time.
+ *
+ * The objects may be one per line (JSON Lines) or the elements of a single
+ * top-level array. Values must be strings, numbers, booleans or null; they
+ * are all returned as text, with null for JSON null. Only the current object
+ * is held in memory.
+ */
+public class JsonRecordReader implements Closeable {
+    private final Reader reader;
+    private long lineNumber = 1;
+    private int peeked = -2;
+    private boolean inArray = false;
+
+    public JsonRecordReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader, 1 << 16);
+    }
+
+    /**
+     * Reads the next object
+     *
+     * @return The fields of the object in the order they appear, or null at the end of the stream
+     * @throws IOException If reading fails or the input is not a supported JSON object
+     */
+    public Map<String, String> readRecord() throws IOException {
+        int c = skipWhitespace();
+        if (c == '[' && !inArray) {
+            inArray = true;
+            read();
+            c = skipWhitespace();
+        } else if (c == ',' && inArray) {
+            read();
+            c = skipWhitespace();
+        }
+        if (c == ']' && inArray) {
+            read();
+            inArray = false;
+            c = skipWhitespace();
+        }
+        if (c == -1) {
+            return null;
+        }
+        expect('{');
+
+        Map<String, String> record = new LinkedHashMap<>();
+        if (skipWhitespace() == '}') {
+            read();
+            return record;
+        }
+        while (true) {
+            skipWhitespace();
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            record.put(key, readValue());
+
+            int next = skipWhitespace();
+            read();
+            if (next == '}') {
+                return record;
+            }
+            if (next != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    /**
+     * @return The line the reader is on, for error messages
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            throw error("Nested objects and arrays are not supported");
+        }
+
+        StringBuilder literal = new StringBuilder();
+        while ((c = peek()) != -1 && c != ',' && c != '}' && !Character.isWhitespace(c)) {
+            literal.append((char) read());
+        }
+        String value = literal.toString();
+        if (value.equals("null")) {
+            return null;
+        }
+        if (value.equals("true") || value.equals("false") || value.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+            return value;
+        }
+        throw error("Invalid value '" + value + "'");
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = read();
+            if (c == -1 || c == '\n') {
+                throw error("Unterminated string");
+            }
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append((char) c);
+                continue;
+            }
+
+            int escaped = read();
+            switch (escaped) {
+                case '"', '\\', '/' -> value.append((char) escaped);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    char[] hex = new char[4];
+                    for (int i = 0; i < 4; i++) {
+                        hex[i] = (char) read();
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(new String(hex), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                }
+                default -> throw error("Invalid escape");
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = read();
+        if (c != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (peek() != -1 && Character.isWhitespace(peek())) {
+            read();
+        }
+        return peek();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        peeked = -2;
+        if (c == '\n') {
+            lineNumber++;
+        }
+        return c;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " on line " + lineNumber);
+    }
+}
@@ -0,0 +1,147 @@
+package hi.verkefni.vinnsla;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings the database schema up to date by applying versioned migration scripts.
+ *
+ * Migrations are files named V{version}__{description}.sql in the migrations
+ * directory. The version of the last applied migration is kept in SQLite's
+ * user_version header field, so each script runs exactly once per database.
+ * Every migration runs in its own transaction together with the version bump.
+ */
+public class MigrationRunner {
+    public static final String DEFAULT_MIGRATIONS_DIR = "db/migrations";
+    private static final Pattern MIGRATION_FILE = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private final Connection conn;
+    private final String migrationsDir;
+
+    public MigrationRunner(Connection conn) {
+        this(conn, DEFAULT_MIGRATIONS_DIR);
+    }
+
+    public MigrationRunner(Connection conn, String migrationsDir) {
+        this.conn = conn;
+        this.migrationsDir = migrationsDir;
+    }
+
+    /**
+     * Applies all migrations newer than the current schema version
+     *
+     * @return Number of migrations applied
+     */
+    public int migrate() throws IOException, SQLException {
+        return migrateTo(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Applies migrations newer than the current schema version, up to and
+     * including the target version
+     *
+     * @param targetVersion Last migration version to apply
+     * @return Number of migrations applied
+     */
+    public int migrateTo(int targetVersion) throws IOException, SQLException {
+        int currentVersion = getCurrentVersion();
+        int applied = 0;
+
+        for (Migration migration : findMigrations().values()) {
+            if (migration.version <= currentVersion || migration.version > targetVersion) {
+                continue;
+            }
+            apply(migration);
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * @return Version of the last migration applied to this database, 0 for a new database
+     */
+    public int getCurrentVersion() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * @return Version of the newest migration script on disk
+     */
+    public int getLatestVersion() throws IOException {
+        TreeMap<Integer, Migration> migrations = findMigrations();
+        return migrations.isEmpty() ? 0 : migrations.lastKey();
+    }
+
+    /**
+     * @return true if there are migrations that have not been applied yet
+     */
+    public boolean hasPendingMigrations() throws IOException, SQLException {
+        return getLatestVersion() > getCurrentVersion();
+    }
+
+    private void apply(Migration migration) throws IOException, SQLException {
+        List<String> statements = SqlScript.read(migration.file.getPath());
+        System.out.println("Applying migration V" + migration.version + " " + migration.description);
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+            // PRAGMA doesn't accept bound parameters, the version is always an int
+            stmt.execute("PRAGMA user_version = " + migration.version);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration V" + migration.version + " failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private TreeMap<Integer, Migration> findMigrations() throws IOException {
+        File[] files = new File(migrationsDir).listFiles();
+        if (files == null) {
+            throw new IOException("Migrations directory not found: " + migrationsDir);
+        }
+
+        TreeMap<Integer, Migration> migrations = new TreeMap<>();
+        for (File file : files) {
+            Matcher matcher = MIGRATION_FILE.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            Migration previous = migrations.put(version, new Migration(version, matcher.group(2).replace('_', ' '), file));
+            if (previous != null) {
+                throw new IOException("Two migrations with version " + version + ": "
+                        + previous.file.getName() + " and " + file.getName());
+            }
+        }
+        return migrations;
+    }
+
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final File file;
+
+        Migration(int version, String description, File file) {
+            this.version = version;
+            this.description = description;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package hi.verkefni.vinnsla;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The plan SQLite picks for a query, as reported by EXPLAIN QUERY PLAN.
+ * Used to check that the hot queries are answered from an index rather
+ * than by scanning a whole table.
+ */
+public class QueryPlan {
+    private final String sql;
+    private final List<String> details;
+
+    private QueryPlan(String sql, List<String> details) {
+        this.sql = sql;
+        this.details = details;
+    }
+
+    /**
+     * Asks SQLite how it would run a query
+     *
+     * @param conn Connection to the database
+     * @param sql The query, may contain ? placeholders
+     * @param params Values for the placeholders
+     * @return The query plan
+     */
+    public static QueryPlan explain(Connection conn, String sql, Object... params) throws SQLException {
+        List<String> details = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                details.add(rs.getString("detail"));
+            }
+        }
+        return new QueryPlan(sql, details);
+    }
+
+    /**
+     * @param indexName Name of the index
+     * @return true if any step of the plan reads from the index
+     */
+    public boolean usesIndex(String indexName) {
+        for (String detail : details) {
+            if (detail.contains("INDEX " + indexName + " ") || detail.endsWith("INDEX " + indexName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param table Name of the table
+     * @return true if the plan reads every row of the table
+     */
+    public boolean scansTable(String table) {
+        for (String detail : details) {
+            if (detail.equals("SCAN " + table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<String> getDetails() {
+        return Collections.unmodifiableList(details);
+    }
+
+    @Override
+    public String toString() {
+        return sql + "\n  " + String.join("\n  ", details);
+    }
+}
@@ -0,0 +1,273 @@
+package hi.verkefni.vinnsla;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory timetable graph for finding trips with connections.
+ *
+ * Airports are numbered, and the flights leaving each airport are kept
+ * together in plain arrays sorted by departure time, so the flights that can
+ * be taken after arriving somewhere are found with a binary search. A flight
+ * can only be connected to if it leaves at least the minimum connection time
+ * after the previous flight lands.
+ *
+ * The graph is a snapshot of the flights it was built from and is never
+ * changed, so it can be searched from several threads at once. Build a new
+ * one when the timetable changes.
+ */
+public class RouteGraph {
+    private final long minConnectionMillis;
+    private final Map<String, Integer> airportIndex = new HashMap<>();
+    private final List<String> airports = new ArrayList<>();
+
+    // The flights leaving airport a are at positions firstDeparture[a] up to firstDeparture[a + 1]
+    private final int[] firstDeparture;
+    private final long[] departureTimes;
+    private final long[] arrivalTimes;
+    private final int[] origins;
+    private final int[] destinations;
+    private final Flight[] flights;
+
+    /**
+     * @param flights The timetable, flights that don't arrive after they depart are left out
+     * @param minConnectionMillis Shortest time allowed between landing and the next departure
+     */
+    public RouteGraph(List<Flight> flights, long minConnectionMillis) {
+        if (minConnectionMillis < 0) {
+            throw new IllegalArgumentException("Minimum connection time can't be negative");
+        }
+        this.minConnectionMillis = minConnectionMillis;
+
+        List<Flight> usable = new ArrayList<>(flights.size());
+        for (Flight flight : flights) {
+            if (flight.getArrivalTime().isAfter(flight.getDepartureTime())
+                    && !flight.getOrigin().equals(flight.getDestination())) {
+                airportId(flight.getOrigin());
+                airportId(flight.getDestination());
+                usable.add(flight);
+            }
+        }
+        usable.sort(Comparator.comparingInt((Flight f) -> airportIndex.get(f.getOrigin()))
+            .thenComparing(Flight::getDepartureTime));
+
+        int count = usable.size();
+        this.firstDeparture = new int[airports.size() + 1];
+        this.departureTimes = new long[count];
+        this.arrivalTimes = new long[count];
+        this.origins = new int[count];
+        this.destinations = new int[count];
+        this.flights = usable.toArray(new Flight[0]);
+
+        for (int i = 0; i < count; i++) {
+            Flight flight = this.flights[i];
+            origins[i] = airportIndex.get(flight.getOrigin());
+            destinations[i] = airportIndex.get(flight.getDestination());
+            departureTimes[i] = toMillis(flight.getDepartureTime());
+            arrivalTimes[i] = toMillis(flight.getArrivalTime());
+            firstDeparture[origins[i] + 1]++;
+        }
+        for (int a = 0; a < airports.size(); a++) {
+            firstDeparture[a + 1] += firstDeparture[a];
+        }
+    }
+
+    private int airportId(String code) {
+        return airportIndex.computeIfAbsent(code, k -> {
+            airports.add(k);
+            return airports.size() - 1;
+        });
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return Timestamps.toEpochSecond(time) * 1000L + time.getNano() / 1_000_000;
+    }
+
+    public int getAirportCount() {
+        return airports.size();
+    }
+
+    public int getFlightCount() {
+        return flights.length;
+    }
+
+    public long getMinConnectionMillis() {
+        return minConnectionMillis;
+    }
+
+    /**
+     * Finds the trip that gets to the destination soonest. Among trips
+     * arriving at the same time, the one found first is returned.
+     *
+     * @param origin Airport to start from
+     * @param destination Airport to get to
+     * @param departAfter Earliest time the first flight may leave
+     * @return The trip, or null if the destination can't be reached
+     */
+    public Itinerary findEarliestArrival(String origin, String destination, LocalDateTime departAfter) {
+        Integer from = airportIndex.get(origin);
+        Integer to = airportIndex.get(destination);
+        if (from == null || to == null || from.equals(to)) {
+            return null;
+        }
+
+        long[] arrival = new long[airports.size()];
+        int[] arrivedBy = new int[airports.size()];
+        boolean[] settled = new boolean[airports.size()];
+        Arrays.fill(arrival, Long.MAX_VALUE);
+        Arrays.fill(arrivedBy, -1);
+        arrival[from] = toMillis(departAfter);
+
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Comparator.comparingLong((long[] entry) -> entry[0]));
+        queue.add(new long[] { arrival[from], from });
+
+        while (!queue.isEmpty()) {
+            int airport = (int) queue.poll()[1];
+            if (settled[airport]) {
+                continue;
+            }
+            settled[airport] = true;
+            if (airport == to) {
+                break;
+            }
+
+            long ready = airport == from ? arrival[airport] : arrival[airport] + minConnectionMillis;
+            for (int f = firstDepartureAtOrAfter(airport, ready); f < firstDeparture[airport + 1]; f++) {
+                // Flights leaving later than the best arrival so far can't beat it
+                if (departureTimes[f] >= arrival[to]) {
+                    break;
+                }
+                int next = destinations[f];
+                if (arrivalTimes[f] < arrival[next]) {
+                    arrival[next] = arrivalTimes[f];
+                    arrivedBy[next] = f;
+                    queue.add(new long[] { arrivalTimes[f], next });
+                }
+            }
+        }
+
+        if (arrivedBy[to] < 0) {
+            return null;
+        }
+        Deque<Flight> legs = new ArrayDeque<>();
+        for (int f = arrivedBy[to]; f >= 0; f = origins[f] == from ? -1 : arrivedBy[origins[f]]) {
+            legs.addFirst(flights[f]);
+        }
+        return new Itinerary(new ArrayList<>(legs));
+    }
+
+    /**
+     * Finds up to maxResults trips, earliest arrival first. Trips never
+     * pass through the same airport twice, and at most maxResults trips are
+     * continued from any one airport, which keeps the search short on a
+     * busy timetable.
+     *
+     * @param origin Airport to start from
+     * @param destination Airport to get to
+     * @param departAfter Earliest time the first flight may leave
+     * @param maxResults Most trips to return
+     * @param maxLegs Most flights in one trip
+     * @return The trips found, possibly none
+     */
+    public List<Itinerary> findItineraries(String origin, String destination, LocalDateTime departAfter,
+                                           int maxResults, int maxLegs) {
+        if (maxResults < 1 || maxLegs < 1) {
+            throw new IllegalArgumentException("Number of results and legs must be at least 1");
+        }
+        List<Itinerary> itineraries = new ArrayList<>();
+        Integer from = airportIndex.get(origin);
+        Integer to = airportIndex.get(destination);
+        if (from == null || to == null || from.equals(to)) {
+            return itineraries;
+        }
+
+        int[] expanded = new int[airports.size()];
+        PriorityQueue<Label> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Label label) -> label.arrival).thenComparingInt(label -> label.legs));
+        queue.add(new Label(from, toMillis(departAfter), -1, null));
+
+        while (!queue.isEmpty() && itineraries.size() < maxResults) {
+            Label label = queue.poll();
+            if (expanded[label.airport] >= maxResults) {
+                continue;
+            }
+            expanded[label.airport]++;
+
+            if (label.airport == to) {
+                itineraries.add(toItinerary(label));
+                continue;
+            }
+            if (label.legs == maxLegs) {
+                continue;
+            }
+
+            long ready = label.previous == null ? label.arrival : label.arrival + minConnectionMillis;
+            for (int f = firstDepartureAtOrAfter(label.airport, ready); f < firstDeparture[label.airport + 1]; f++) {
+                int next = destinations[f];
+                if (expanded[next] < maxResults && !label.visited(next)) {
+                    queue.add(new Label(next, arrivalTimes[f], f, label));
+                }
+            }
+        }
+        return itineraries;
+    }
+
+    private Itinerary toItinerary(Label label) {
+        Deque<Flight> legs = new ArrayDeque<>();
+        for (Label l = label; l.previous != null; l = l.previous) {
+            legs.addFirst(flights[l.flight]);
+        }
+        return new Itinerary(new ArrayList<>(legs));
+    }
+
+    // Position of the first flight from the airport leaving at or after the given time
+    private int firstDepartureAtOrAfter(int airport, long time) {
+        int low = firstDeparture[airport];
+        int high = firstDeparture[airport + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departureTimes[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A partial trip: the airport reached, when, and how it was reached
+     */
+    private static class Label {
+        private final int airport;
+        private final long arrival;
+        private final int flight;
+        private final Label previous;
+        private final int legs;
+
+        Label(int airport, long arrival, int flight, Label previous) {
+            this.airport = airport;
+            this.arrival = arrival;
+            this.flight = flight;
+            this.previous = previous;
+            this.legs = previous == null ? 0 : previous.legs + 1;
+        }
+
+        boolean visited(int other) {
+            for (Label l = this; l != null; l = l.previous) {
+                if (l.airport == other) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
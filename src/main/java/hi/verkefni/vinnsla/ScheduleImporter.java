@@ -0,0 +1,355 @@
+package hi.verkefni.vinnsla;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Imports flight schedules and seat maps from upstream feed files.
+ *
+ * A feed is either a CSV file with a header line (.csv) or JSON objects, one
+ * per line or in one array (.json, .jsonl, .ndjson). The file is read from a
+ * buffered channel one row at a time, and rows are written in batches, each
+ * batch in its own transaction. Memory use therefore only depends on the
+ * batch size, not on the size of the file.
+ *
+ * Rows that are not a valid Flight or Seat are skipped and reported in the
+ * ImportResult. Flights that already exist are updated and seats that
+ * already exist are left alone, so importing the same file again is safe,
+ * also after an import that stopped halfway.
+ *
+ * Imported flights and seats bypass the flight cache and the seat inventory.
+ * The BatchListener is told which flights each committed batch touched, so
+ * those can be refreshed while the import runs.
+ */
+public class ScheduleImporter {
+    public static final int DEFAULT_BATCH_SIZE = 5_000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Only changes a flight if one of its columns differs, so unchanged rows aren't written
+    private static final String FLIGHT_SQL =
+        "INSERT INTO Flight(flightNumber, origin, destination, departureTime, arrivalTime) VALUES(?,?,?,?,?) " +
+        "ON CONFLICT(flightNumber) DO UPDATE SET origin = excluded.origin, destination = excluded.destination, " +
+        "departureTime = excluded.departureTime, arrivalTime = excluded.arrivalTime " +
+        "WHERE origin IS NOT excluded.origin OR destination IS NOT excluded.destination " +
+        "OR departureTime IS NOT excluded.departureTime OR arrivalTime IS NOT excluded.arrivalTime";
+
+    // The status of an existing seat belongs to its booking, so existing seats aren't touched.
+    // Seats of flights that don't exist are skipped.
+    private static final String SEAT_SQL =
+        "INSERT INTO Seat(seatNumber, seatStatus, flightNumber) " +
+        "SELECT ?, ?, ? WHERE EXISTS (SELECT 1 FROM Flight WHERE flightNumber = ?) " +
+        "ON CONFLICT(seatNumber, flightNumber) DO NOTHING";
+
+    private final ConnectionProvider connectionProvider;
+    private final int batchSize;
+    private final BatchListener listener;
+
+    public ScheduleImporter() {
+        this(ConnectionProvider.getDefault());
+    }
+
+    public ScheduleImporter(ConnectionProvider connectionProvider) {
+        this(connectionProvider, DEFAULT_BATCH_SIZE);
+    }
+
+    public ScheduleImporter(ConnectionProvider connectionProvider, int batchSize) {
+        this(connectionProvider, batchSize, flightNumbers -> { });
+    }
+
+    /**
+     * @param connectionProvider Where the flights and seats are written
+     * @param batchSize Number of rows written in each transaction
+     * @param listener Told the flights of each batch once it is committed
+     */
+    public ScheduleImporter(ConnectionProvider connectionProvider, int batchSize, BatchListener listener) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.connectionProvider = connectionProvider;
+        this.batchSize = batchSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Imports flights with the fields flightNumber, origin, destination,
+     * departureTime and arrivalTime. Times are either epoch seconds or
+     * 'yyyy-MM-dd HH:mm:ss' / ISO local date-times, in UTC.
+     *
+     * @param file The feed file
+     * @return Row counts and the reasons rows were rejected
+     * @throws IOException If the file can't be read or is not valid CSV/JSON
+     */
+    public ImportResult importFlights(Path file) throws IOException, SQLException {
+        return importRecords(file, ScheduleImporter::toFlight, Flight::getFlightNumber, this::writeFlights);
+    }
+
+    /**
+     * Imports seats with the fields seatNumber, flightNumber and optionally
+     * seatStatus (0/1 or false/true, free if missing). The flights must
+     * already exist.
+     *
+     * @param file The feed file
+     * @return Row counts and the reasons rows were rejected
+     * @throws IOException If the file can't be read or is not valid CSV/JSON
+     */
+    public ImportResult importSeats(Path file) throws IOException, SQLException {
+        return importRecords(file, ScheduleImporter::toSeat, Seat::getFlightNumber, this::writeSeats);
+    }
+
+    private <T> ImportResult importRecords(Path file, RowParser<T> parser, Function<T, String> flightNumber,
+                                           BatchWriter<T> writer) throws IOException, SQLException {
+        ImportResult result = new ImportResult();
+        List<T> batch = new ArrayList<>(batchSize);
+
+        try (RecordSource source = open(file)) {
+            Map<String, String> record;
+            while ((record = source.next()) != null) {
+                result.addRead();
+                try {
+                    batch.add(parser.parse(record));
+                } catch (IllegalArgumentException e) {
+                    result.addRejected("Line " + source.getLineNumber() + ": " + e.getMessage());
+                    continue;
+                }
+                if (batch.size() == batchSize) {
+                    result.addWritten(writeBatch(batch, flightNumber, writer));
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            result.addWritten(writeBatch(batch, flightNumber, writer));
+        }
+        return result;
+    }
+
+    // One transaction per batch, retried as a whole if the database is busy
+    private <T> long writeBatch(List<T> batch, Function<T, String> flightNumber, BatchWriter<T> writer)
+            throws SQLException {
+        long written = BusyRetry.call(() -> {
+            try (Connection conn = connectionProvider.getWriteConnection()) {
+                conn.setAutoCommit(false);
+                long count = writer.write(conn, batch);
+                conn.commit();
+                return count;
+            }
+        });
+
+        Set<String> flightNumbers = new LinkedHashSet<>();
+        for (T row : batch) {
+            flightNumbers.add(flightNumber.apply(row));
+        }
+        listener.committed(flightNumbers);
+        return written;
+    }
+
+    private long writeFlights(Connection conn, List<Flight> flights) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(FLIGHT_SQL)) {
+            for (Flight flight : flights) {
+                pstmt.setString(1, flight.getFlightNumber());
+                pstmt.setString(2, flight.getOrigin());
+                pstmt.setString(3, flight.getDestination());
+                pstmt.setLong(4, Timestamps.toEpochSecond(flight.getDepartureTime()));
+                pstmt.setLong(5, Timestamps.toEpochSecond(flight.getArrivalTime()));
+                pstmt.addBatch();
+            }
+            return sum(pstmt.executeBatch());
+        }
+    }
+
+    private long writeSeats(Connection conn, List<Seat> seats) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SEAT_SQL)) {
+            for (Seat seat : seats) {
+                pstmt.setString(1, seat.getSeatNumber());
+                pstmt.setBoolean(2, seat.isBooked());
+                pstmt.setString(3, seat.getFlightNumber());
+                pstmt.setString(4, seat.getFlightNumber());
+                pstmt.addBatch();
+            }
+            return sum(pstmt.executeBatch());
+        }
+    }
+
+    private static long sum(int[] counts) {
+        long total = 0;
+        for (int count : counts) {
+            total += Math.max(count, 0);
+        }
+        return total;
+    }
+
+    static Flight toFlight(Map<String, String> record) {
+        String flightNumber = required(record, "flightNumber");
+        String origin = required(record, "origin");
+        String destination = required(record, "destination");
+        LocalDateTime departureTime = parseTime(required(record, "departureTime"));
+        LocalDateTime arrivalTime = parseTime(required(record, "arrivalTime"));
+
+        if (origin.equals(destination)) {
+            throw new IllegalArgumentException("Origin and destination are both " + origin);
+        }
+        if (!arrivalTime.isAfter(departureTime)) {
+            throw new IllegalArgumentException("Flight " + flightNumber + " arrives before it departs");
+        }
+        return new Flight(flightNumber, origin, destination, departureTime, arrivalTime);
+    }
+
+    static Seat toSeat(Map<String, String> record) {
+        String seatNumber = required(record, "seatNumber");
+        String flightNumber = required(record, "flightNumber");
+        String status = record.get("seatStatus");
+
+        boolean booked;
+        if (status == null || status.isBlank() || status.equals("0") || status.equalsIgnoreCase("false")) {
+            booked = false;
+        } else if (status.equals("1") || status.equalsIgnoreCase("true")) {
+            booked = true;
+        } else {
+            throw new IllegalArgumentException("Invalid seatStatus '" + status + "'");
+        }
+        return new Seat(seatNumber, booked, flightNumber);
+    }
+
+    private static String required(Map<String, String> record, String field) {
+        String value = record.get(field);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value.trim();
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        try {
+            if (value.chars().allMatch(Character::isDigit)) {
+                return Timestamps.fromEpochSecond(Long.parseLong(value));
+            }
+            if (value.indexOf('T') > 0) {
+                return LocalDateTime.parse(value);
+            }
+            return LocalDateTime.parse(value, TIME_FORMAT);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time '" + value + "'");
+        }
+    }
+
+    // Reads the file through a buffered channel, never more than one row at a time
+    private static RecordSource open(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        if (!name.endsWith(".csv") && !name.endsWith(".json") && !name.endsWith(".jsonl") && !name.endsWith(".ndjson")) {
+            throw new IllegalArgumentException("Unsupported feed file " + file + ", expected .csv, .json, .jsonl or .ndjson");
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), 1 << 16);
+        if (name.endsWith(".csv")) {
+            return new CsvSource(new CsvReader(reader));
+        }
+        return new JsonSource(new JsonRecordReader(reader));
+    }
+
+    /**
+     * The rows of a feed file as field name to value
+     */
+    private interface RecordSource extends Closeable {
+        Map<String, String> next() throws IOException;
+
+        long getLineNumber();
+    }
+
+    private static class CsvSource implements RecordSource {
+        private final CsvReader csv;
+        private List<String> header;
+
+        CsvSource(CsvReader csv) {
+            this.csv = csv;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (header == null) {
+                header = csv.readRow();
+                if (header == null) {
+                    return null;
+                }
+            }
+            List<String> fields = csv.readRow();
+            if (fields == null) {
+                return null;
+            }
+
+            // A short row leaves the missing fields out, so they fail validation if required
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < Math.min(header.size(), fields.size()); i++) {
+                record.put(header.get(i).trim(), fields.get(i));
+            }
+            return record;
+        }
+
+        @Override
+        public long getLineNumber() {
+            return csv.getLineNumber();
+        }
+
+        @Override
+        public void close() throws IOException {
+            csv.close();
+        }
+    }
+
+    private static class JsonSource implements RecordSource {
+        private final JsonRecordReader json;
+
+        JsonSource(JsonRecordReader json) {
+            this.json = json;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            return json.readRecord();
+        }
+
+        @Override
+        public long getLineNumber() {
+            return json.getLineNumber();
+        }
+
+        @Override
+        public void close() throws IOException {
+            json.close();
+        }
+    }
+
+    private interface RowParser<T> {
+        T parse(Map<String, String> record);
+    }
+
+    private interface BatchWriter<T> {
+        long write(Connection conn, List<T> batch) throws SQLException;
+    }
+
+    public interface BatchListener {
+        /**
+         * @param flightNumbers The flights whose rows were in the committed batch
+         */
+        void committed(Set<String> flightNumbers);
+    }
+}
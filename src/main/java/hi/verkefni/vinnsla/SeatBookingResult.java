@@ -0,0 +1,41 @@
+package hi.verkefni.vinnsla;
+
+/**
+ * Outcome for one seat of a multi-seat booking
+ */
+public class SeatBookingResult {
+    public enum Status {
+        // The seat is booked, getBooking() returns the booking
+        BOOKED,
+        // Someone else already has the seat
+        SEAT_TAKEN,
+        // The seat was free but nothing was booked, because another seat in the request failed
+        NOT_BOOKED
+    }
+
+    private final Seat seat;
+    private final Status status;
+    private final Booking booking;
+
+    public SeatBookingResult(Seat seat, Status status, Booking booking) {
+        this.seat = seat;
+        this.status = status;
+        this.booking = booking;
+    }
+
+    public Seat getSeat() {
+        return seat;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Booking getBooking() {
+        return booking;
+    }
+
+    public boolean isBooked() {
+        return status == Status.BOOKED;
+    }
+}
@@ -0,0 +1,27 @@
+package hi.verkefni.vinnsla;
+
+/**
+ * Thrown when a seat turns out to be taken at the moment it is claimed in
+ * the database, even though it looked free when it was chosen. The
+ * transaction claiming it has been rolled back.
+ */
+public class SeatConflictException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String flightNumber;
+    private final String seatNumber;
+
+    public SeatConflictException(String flightNumber, String seatNumber) {
+        super("Seat " + seatNumber + " is already booked");
+        this.flightNumber = flightNumber;
+        this.seatNumber = seatNumber;
+    }
+
+    public String getFlightNumber() {
+        return flightNumber;
+    }
+
+    public String getSeatNumber() {
+        return seatNumber;
+    }
+}
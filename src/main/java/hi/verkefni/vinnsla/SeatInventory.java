@@ -0,0 +1,285 @@
+package hi.verkefni.vinnsla;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory record of which seats are taken on each flight.
+ *
+ * Each flight keeps one bit per seat. Claiming a seat flips its bit with a
+ * compare-and-set, so when two bookers race for the same seat exactly one
+ * of them wins, without taking a lock. A flight's seats are loaded from the
+ * Seat table the first time it is used, or all at once by recover(). A
+ * flight with no seats is not kept, so seats added later are found.
+ *
+ * Seat maps of a flight are copied from the same bits, and carry a version
+ * that changes whenever a seat of the flight is claimed or released.
+ *
+ * The inventory only decides who gets a seat. The seat status itself is
+ * still written to the Seat table by BookingDB, in the same transaction as
+ * the booking row.
+ */
+public class SeatInventory {
+    private final BookingDB bookingDB;
+    private final Map<String, FlightSeats> flights = new ConcurrentHashMap<>();
+    // Bumped by every invalidation, so preload() doesn't bring back seats loaded before one
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public SeatInventory(BookingDB bookingDB) {
+        this.bookingDB = bookingDB;
+    }
+
+    /**
+     * Loads the seat state of every flight from the Seat table in one query,
+     * replacing anything already in memory
+     */
+    public void recover() {
+        Map<String, List<Seat>> seatsByFlight = loadAllSeats();
+
+        flights.clear();
+        for (Map.Entry<String, List<Seat>> entry : seatsByFlight.entrySet()) {
+            flights.put(entry.getKey(), new FlightSeats(entry.getValue()));
+        }
+    }
+
+    /**
+     * Loads the seat state of every flight that is not in memory yet, in one
+     * query. Unlike recover() this is safe to run in the background while
+     * seats are being claimed: flights already in memory are kept as they
+     * are, and nothing is added once a flight has been invalidated, since
+     * the seats read may then be out of date.
+     */
+    public void preload() {
+        long invalidationsBeforeLoad = invalidations.get();
+        Map<String, List<Seat>> seatsByFlight = loadAllSeats();
+
+        for (Map.Entry<String, List<Seat>> entry : seatsByFlight.entrySet()) {
+            // Checked inside computeIfAbsent so an invalidation of this flight can't slip in between
+            flights.computeIfAbsent(entry.getKey(), k ->
+                invalidations.get() == invalidationsBeforeLoad ? new FlightSeats(entry.getValue()) : null);
+        }
+    }
+
+    private Map<String, List<Seat>> loadAllSeats() {
+        Map<String, List<Seat>> seatsByFlight = new HashMap<>();
+        for (Seat seat : bookingDB.getAllSeats()) {
+            seatsByFlight.computeIfAbsent(seat.getFlightNumber(), k -> new ArrayList<>()).add(seat);
+        }
+        return seatsByFlight;
+    }
+
+    /**
+     * Claims a free seat
+     *
+     * @param flightNumber The flight number
+     * @param seatNumber The seat number
+     * @return true if the seat was free and now belongs to the caller, false if it was taken or doesn't exist
+     */
+    public boolean claim(String flightNumber, String seatNumber) {
+        FlightSeats seats = seatsFor(flightNumber);
+        int index = seats.indexOf(seatNumber);
+        return index >= 0 && seats.set(index, true);
+    }
+
+    /**
+     * Frees a seat so it can be claimed again
+     *
+     * @param flightNumber The flight number
+     * @param seatNumber The seat number
+     * @return true if the seat was taken before the call
+     */
+    public boolean release(String flightNumber, String seatNumber) {
+        FlightSeats seats = seatsFor(flightNumber);
+        int index = seats.indexOf(seatNumber);
+        return index >= 0 && seats.set(index, false);
+    }
+
+    /**
+     * @return true if the flight has a seat with this number
+     */
+    public boolean hasSeat(String flightNumber, String seatNumber) {
+        return seatsFor(flightNumber).indexOf(seatNumber) >= 0;
+    }
+
+    /**
+     * @return true if the seat exists and is not taken
+     */
+    public boolean isAvailable(String flightNumber, String seatNumber) {
+        FlightSeats seats = seatsFor(flightNumber);
+        int index = seats.indexOf(seatNumber);
+        return index >= 0 && !seats.isTaken(index);
+    }
+
+    /**
+     * Gets the free seats on a flight, in seat order
+     *
+     * @param flightNumber The flight number
+     * @return List of available seats
+     */
+    public List<Seat> getAvailableSeats(String flightNumber) {
+        FlightSeats seats = seatsFor(flightNumber);
+        List<Seat> available = new ArrayList<>();
+        for (int i = 0; i < seats.seatNumbers.length; i++) {
+            if (!seats.isTaken(i)) {
+                available.add(new Seat(seats.seatNumbers[i], false, flightNumber));
+            }
+        }
+        return available;
+    }
+
+    /**
+     * @return Number of free seats on the flight
+     */
+    public int getAvailableCount(String flightNumber) {
+        FlightSeats seats = seatsFor(flightNumber);
+        int taken = 0;
+        for (int word = 0; word < seats.bits.length(); word++) {
+            taken += Long.bitCount(seats.bits.get(word));
+        }
+        return seats.seatNumbers.length - taken;
+    }
+
+    /**
+     * Gets every seat of a flight as a seat map, from memory
+     *
+     * @param flightNumber The flight number
+     * @return The seat map
+     */
+    public SeatMap getSeatMap(String flightNumber) {
+        return getSeatMap(flightNumber, null);
+    }
+
+    /**
+     * Gets a flight's seat map again, only copying the seat state if it
+     * changed since the previous map was made
+     *
+     * @param flightNumber The flight number
+     * @param previous A seat map of the flight made earlier, or null
+     * @return previous itself if no seat has been claimed or released since, otherwise a new map
+     */
+    public SeatMap getSeatMap(String flightNumber, SeatMap previous) {
+        FlightSeats seats = seatsFor(flightNumber);
+        SeatLayout layout = seats.layout();
+        // Read before the bits, so a change made while copying shows up as a newer version next time
+        long version = seats.version.get();
+        if (previous != null && previous.getLayout() == layout && previous.getVersion() == version) {
+            return previous;
+        }
+
+        long[] taken = new long[(layout.getCellCount() + 63) / 64];
+        for (int i = 0; i < seats.seatNumbers.length; i++) {
+            if (seats.isTaken(i)) {
+                int cell = seats.cellBySeat[i];
+                taken[cell >>> 6] |= 1L << cell;
+            }
+        }
+        return new SeatMap(flightNumber, layout, taken, version);
+    }
+
+    /**
+     * Drops a flight from memory so its seats are reloaded from the database on next use
+     */
+    public void invalidate(String flightNumber) {
+        flights.compute(flightNumber, (k, seats) -> {
+            invalidations.incrementAndGet();
+            return null;
+        });
+    }
+
+    private FlightSeats seatsFor(String flightNumber) {
+        FlightSeats seats = flights.get(flightNumber);
+        while (seats == null) {
+            // Loaded outside the map, so nobody waits on the query while holding a part of it
+            long invalidationsBeforeLoad = invalidations.get();
+            List<Seat> loaded = bookingDB.getSeats(flightNumber);
+            if (loaded.isEmpty()) {
+                // A failed read looks the same as a flight whose seats aren't in yet, neither is kept
+                return new FlightSeats(loaded);
+            }
+            FlightSeats fresh = new FlightSeats(loaded);
+            // Not kept if the flight was invalidated during the load, it is loaded again then
+            seats = flights.compute(flightNumber, (k, current) -> current != null ? current
+                : invalidations.get() == invalidationsBeforeLoad ? fresh : null);
+        }
+        return seats;
+    }
+
+    /**
+     * The seats of one flight: seat numbers in seat order and one bit per seat, set when taken
+     */
+    private static class FlightSeats {
+        private final String[] seatNumbers;
+        private final Map<String, Integer> indexBySeat;
+        private final AtomicLongArray bits;
+        // Bumped after every seat that is claimed or released
+        private final AtomicLong version = new AtomicLong();
+        // Worked out the first time a seat map of the flight is asked for
+        private volatile SeatLayout layout;
+        private int[] cellBySeat;
+
+        FlightSeats(List<Seat> seats) {
+            seatNumbers = new String[seats.size()];
+            indexBySeat = new HashMap<>(seats.size() * 2);
+            bits = new AtomicLongArray((seats.size() + 63) / 64);
+
+            for (int i = 0; i < seats.size(); i++) {
+                Seat seat = seats.get(i);
+                seatNumbers[i] = seat.getSeatNumber();
+                indexBySeat.put(seat.getSeatNumber(), i);
+                if (seat.isBooked()) {
+                    set(i, true);
+                }
+            }
+        }
+
+        SeatLayout layout() {
+            SeatLayout current = layout;
+            if (current == null) {
+                synchronized (this) {
+                    current = layout;
+                    if (current == null) {
+                        current = SeatLayout.of(List.of(seatNumbers));
+                        int[] cells = new int[seatNumbers.length];
+                        for (int i = 0; i < seatNumbers.length; i++) {
+                            cells[i] = current.cellOf(seatNumbers[i]);
+                        }
+                        cellBySeat = cells;
+                        layout = current;
+                    }
+                }
+            }
+            return current;
+        }
+
+        int indexOf(String seatNumber) {
+            Integer index = indexBySeat.get(seatNumber);
+            return index == null ? -1 : index;
+        }
+
+        boolean isTaken(int index) {
+            return (bits.get(index >>> 6) & (1L << index)) != 0;
+        }
+
+        // Flips the seat's bit to the given value, false if it already had that value
+        boolean set(int index, boolean taken) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+            while (true) {
+                long current = bits.get(word);
+                if (((current & mask) != 0) == taken) {
+                    return false;
+                }
+                long updated = taken ? current | mask : current & ~mask;
+                if (bits.compareAndSet(word, current, updated)) {
+                    version.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+    }
+}
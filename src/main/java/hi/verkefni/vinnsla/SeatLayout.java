@@ -0,0 +1,188 @@
+package hi.verkefni.vinnsla;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Where the seats of a cabin are: row numbers from front to back, column
+ * letters across, and which cells of that grid have a seat. Cells are
+ * numbered row by row, so a seat map only needs one bit per cell on top of
+ * the layout, and flights with the same layout can share one instance.
+ *
+ * Seat numbers are a column letter and a row number, either way round (A12
+ * or 12A). Each cell keeps the seat number exactly as it was given, so A01
+ * stays A01. A cabin whose seat numbers can't all be placed on such a grid,
+ * e.g. because one is in another format or two name the same cell, is laid
+ * out as a single column with one seat per row, in the order given.
+ */
+public class SeatLayout {
+    private static final Pattern LETTER_FIRST = Pattern.compile("([A-Z]+)(\\d{1,6})");
+    private static final Pattern NUMBER_FIRST = Pattern.compile("(\\d{1,6})([A-Z]+)");
+
+    private final int[] rows;
+    private final String[] columns;
+    // Seat number of each cell as given, null for gaps in the grid
+    private final String[] seatNumbers;
+    private final Map<String, Integer> cellBySeat;
+    private final int seatCount;
+
+    private SeatLayout(int[] rows, String[] columns, String[] seatNumbers) {
+        this.rows = rows;
+        this.columns = columns;
+        this.seatNumbers = seatNumbers;
+        this.cellBySeat = new HashMap<>(seatNumbers.length * 2);
+        for (int cell = 0; cell < seatNumbers.length; cell++) {
+            if (seatNumbers[cell] != null) {
+                cellBySeat.put(seatNumbers[cell], cell);
+            }
+        }
+        this.seatCount = cellBySeat.size();
+    }
+
+    /**
+     * Works out the layout from the seat numbers of a cabin
+     *
+     * @param seatNumbers Every seat number of the cabin, in any order
+     * @return The layout
+     */
+    public static SeatLayout of(List<String> seatNumbers) {
+        TreeSet<Integer> rowSet = new TreeSet<>();
+        TreeSet<String> columnSet = new TreeSet<>((a, b) -> a.length() != b.length() ? a.length() - b.length() : a.compareTo(b));
+        List<Matcher> parsed = new ArrayList<>(seatNumbers.size());
+        for (String seatNumber : new LinkedHashSet<>(seatNumbers)) {
+            Matcher matcher = parse(seatNumber);
+            if (matcher == null) {
+                return singleColumn(seatNumbers);
+            }
+            rowSet.add(rowOf(matcher));
+            columnSet.add(columnOf(matcher));
+            parsed.add(matcher);
+        }
+
+        int[] rows = rowSet.stream().mapToInt(Integer::intValue).toArray();
+        String[] columns = columnSet.toArray(new String[0]);
+        String[] cells = new String[rows.length * columns.length];
+        for (Matcher matcher : parsed) {
+            int cell = cellOf(rows, columns, rowOf(matcher), columnOf(matcher));
+            if (cells[cell] != null) {
+                // Two seat numbers for the same place, e.g. A1 and 1A
+                return singleColumn(seatNumbers);
+            }
+            cells[cell] = matcher.group();
+        }
+        return new SeatLayout(rows, columns, cells);
+    }
+
+    // Lays the seats out one per row, for seat numbers that don't fit a grid
+    private static SeatLayout singleColumn(List<String> seatNumbers) {
+        String[] cells = new LinkedHashSet<>(seatNumbers).toArray(new String[0]);
+        int[] rows = new int[cells.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i + 1;
+        }
+        return new SeatLayout(rows, new String[] { "" }, cells);
+    }
+
+    // Matches a seat number either way round, null if it is neither
+    private static Matcher parse(String seatNumber) {
+        Matcher matcher = LETTER_FIRST.matcher(seatNumber);
+        if (matcher.matches()) {
+            return matcher;
+        }
+        matcher = NUMBER_FIRST.matcher(seatNumber);
+        return matcher.matches() ? matcher : null;
+    }
+
+    private static int rowOf(Matcher matcher) {
+        return Integer.parseInt(matcher.pattern() == LETTER_FIRST ? matcher.group(2) : matcher.group(1));
+    }
+
+    private static String columnOf(Matcher matcher) {
+        return matcher.pattern() == LETTER_FIRST ? matcher.group(1) : matcher.group(2);
+    }
+
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * @return Number of cells in the grid, with or without a seat
+     */
+    public int getCellCount() {
+        return seatNumbers.length;
+    }
+
+    public int getSeatCount() {
+        return seatCount;
+    }
+
+    /**
+     * @param rowIndex Position of the row, 0 for the front row
+     * @return The row number printed on the seats
+     */
+    public int getRow(int rowIndex) {
+        return rows[rowIndex];
+    }
+
+    /**
+     * @param columnIndex Position of the column, 0 for the leftmost one
+     * @return The column letter printed on the seats, empty for a single column layout
+     */
+    public String getColumn(int columnIndex) {
+        return columns[columnIndex];
+    }
+
+    /**
+     * @return Cell of the given row and column positions
+     */
+    public int cellAt(int rowIndex, int columnIndex) {
+        return rowIndex * columns.length + columnIndex;
+    }
+
+    /**
+     * @return true if there is a seat in the cell, false for gaps in the grid
+     */
+    public boolean hasSeat(int cell) {
+        return seatNumbers[cell] != null;
+    }
+
+    /**
+     * @param seatNumber A seat number, exactly as in the cabin
+     * @return The seat's cell, or -1 if the cabin has no such seat
+     */
+    public int cellOf(String seatNumber) {
+        Integer cell = cellBySeat.get(seatNumber);
+        return cell == null ? -1 : cell;
+    }
+
+    // Cell of a row number and column letter, -1 if either is not in the grid
+    private static int cellOf(int[] rows, String[] columns, int row, String column) {
+        int rowIndex = Arrays.binarySearch(rows, row);
+        int columnIndex = -1;
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                columnIndex = i;
+                break;
+            }
+        }
+        return rowIndex < 0 || columnIndex < 0 ? -1 : rowIndex * columns.length + columnIndex;
+    }
+
+    /**
+     * @return Seat number of the seat in the cell as it was given, or null if the cell has no seat
+     */
+    public String seatNumberAt(int cell) {
+        return seatNumbers[cell];
+    }
+}
@@ -0,0 +1,125 @@
+package hi.verkefni.vinnsla;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every seat of a flight's cabin at one point in time: the layout of the
+ * cabin and one bit per cell of the layout, set when the seat is taken.
+ * A cabin of 400 seats fits in a few hundred bytes, and the layout is
+ * shared between maps of the same flight.
+ *
+ * The version tells maps of the same flight apart. A map with the same
+ * layout and version as another has the same seats taken, so a screen
+ * showing a seat map can ask for a new one and skip redrawing when nothing
+ * changed.
+ */
+public class SeatMap {
+    private final String flightNumber;
+    private final SeatLayout layout;
+    private final long[] taken;
+    private final long version;
+
+    /**
+     * @param flightNumber The flight number
+     * @param layout The cabin layout
+     * @param taken One bit per cell of the layout, set when the seat is taken
+     * @param version Version of the seat state the map was made from
+     */
+    public SeatMap(String flightNumber, SeatLayout layout, long[] taken, long version) {
+        if (taken.length != (layout.getCellCount() + 63) / 64) {
+            throw new IllegalArgumentException("Seat map needs one bit per cell of the layout");
+        }
+        this.flightNumber = flightNumber;
+        this.layout = layout;
+        this.taken = taken;
+        this.version = version;
+    }
+
+    /**
+     * Makes a seat map from a flight's seats, e.g. as read from the Seat table
+     *
+     * @param flightNumber The flight number
+     * @param seats Every seat of the flight
+     * @return The seat map, at version 0
+     */
+    public static SeatMap of(String flightNumber, List<Seat> seats) {
+        List<String> seatNumbers = new ArrayList<>(seats.size());
+        for (Seat seat : seats) {
+            seatNumbers.add(seat.getSeatNumber());
+        }
+        SeatLayout layout = SeatLayout.of(seatNumbers);
+
+        long[] taken = new long[(layout.getCellCount() + 63) / 64];
+        for (Seat seat : seats) {
+            if (seat.isBooked()) {
+                int cell = layout.cellOf(seat.getSeatNumber());
+                taken[cell >>> 6] |= 1L << cell;
+            }
+        }
+        return new SeatMap(flightNumber, layout, taken, 0);
+    }
+
+    public String getFlightNumber() {
+        return flightNumber;
+    }
+
+    public SeatLayout getLayout() {
+        return layout;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if there is a seat at the row and column positions and it is taken
+     */
+    public boolean isTaken(int rowIndex, int columnIndex) {
+        return isTakenCell(layout.cellAt(rowIndex, columnIndex));
+    }
+
+    /**
+     * @return true if the seat exists and is taken
+     */
+    public boolean isTaken(String seatNumber) {
+        int cell = layout.cellOf(seatNumber);
+        return cell >= 0 && isTakenCell(cell);
+    }
+
+    /**
+     * @return true if the seat exists and is not taken
+     */
+    public boolean isAvailable(String seatNumber) {
+        int cell = layout.cellOf(seatNumber);
+        return cell >= 0 && !isTakenCell(cell);
+    }
+
+    private boolean isTakenCell(int cell) {
+        return (taken[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * @return Number of seats that are not taken
+     */
+    public int getAvailableCount() {
+        int takenCount = 0;
+        for (long word : taken) {
+            takenCount += Long.bitCount(word);
+        }
+        return layout.getSeatCount() - takenCount;
+    }
+
+    /**
+     * @return The free seats, front row first
+     */
+    public List<Seat> getAvailableSeats() {
+        List<Seat> available = new ArrayList<>();
+        for (int cell = 0; cell < layout.getCellCount(); cell++) {
+            if (layout.hasSeat(cell) && !isTakenCell(cell)) {
+                available.add(new Seat(layout.seatNumberAt(cell), false, flightNumber));
+            }
+        }
+        return available;
+    }
+}
@@ -0,0 +1,80 @@
+package hi.verkefni.vinnsla;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a .sql file into the statements it contains.
+ *
+ * Statements end at a line ending with ';'. CREATE TRIGGER statements run
+ * until their closing END; line, since their body contains ';' as well.
+ */
+public class SqlScript {
+    private SqlScript() {
+    }
+
+    /**
+     * Reads all statements in a file
+     *
+     * @param filePath Path of the .sql file
+     * @return The statements, without trailing semicolons
+     */
+    public static List<String> read(String filePath) throws IOException {
+        List<String> statements = new ArrayList<>();
+        try {
+            forEach(filePath, statements::add);
+        } catch (SQLException e) {
+            // Adding to a list doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return statements;
+    }
+    
+    /**
+     * Streams the statements in a file to a handler one at a time, so the
+     * whole script is never held in memory
+     *
+     * @param filePath Path of the .sql file
+     * @param handler Called with each statement, without its trailing semicolon
+     */
+    public static void forEach(String filePath, StatementHandler handler) throws IOException, SQLException {
+        StringBuilder sql = new StringBuilder();
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(filePath)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                
+                // Skip comment lines and empty lines
+                if (line.startsWith("//") || line.startsWith("--") || line.startsWith("/*") || line.isEmpty()) {
+                    continue;
+                }
+                
+                sql.append(line).append(" ");
+                
+                if (isEndOfStatement(sql, line)) {
+                    String statement = sql.toString().trim();
+                    handler.handle(statement.substring(0, statement.length() - 1).trim());
+                    sql.setLength(0);
+                }
+            }
+        }
+    }
+    
+    private static boolean isEndOfStatement(StringBuilder sql, String line) {
+        if (!line.endsWith(";")) {
+            return false;
+        }
+        boolean inTrigger = sql.length() >= 14 && sql.substring(0, 14).equalsIgnoreCase("CREATE TRIGGER");
+        return !inTrigger || line.equalsIgnoreCase("END;");
+    }
+    
+    public interface StatementHandler {
+        void handle(String sql) throws SQLException;
+    }
+}
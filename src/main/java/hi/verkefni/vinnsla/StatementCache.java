@@ -0,0 +1,181 @@
+package hi.verkefni.vinnsla;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared statements kept open on one pooled connection, keyed by SQL text.
+ *
+ * Once the cache is full, the least recently used statement that is not
+ * in use is closed.
+ * Statements handed out are wrapped so that closing them only resets them
+ * for the next caller. Only used by the thread currently holding the
+ * connection, so no locking is needed around the map itself.
+ */
+public class StatementCache {
+    private final Connection connection;
+    private final int maxSize;
+    private final Map<String, CachedStatement> statements;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        // Access order, so iteration starts at the least recently used statement
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, preparing it only if
+     * it is not already cached for this connection
+     *
+     * @param sql The SQL text
+     * @return A statement that returns itself to the cache when closed
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        if (maxSize <= 0) {
+            misses.incrementAndGet();
+            return connection.prepareStatement(sql);
+        }
+
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && cached.inUse) {
+            // Same SQL already open further up the call stack, don't share it
+            misses.incrementAndGet();
+            return connection.prepareStatement(sql);
+        }
+
+        if (cached != null && cached.statement.isClosed()) {
+            statements.remove(sql);
+            cached = null;
+        }
+
+        if (cached == null) {
+            misses.incrementAndGet();
+            cached = new CachedStatement(connection.prepareStatement(sql));
+            statements.put(sql, cached);
+        } else {
+            hits.incrementAndGet();
+        }
+
+        cached.inUse = true;
+        evict();
+        return (PreparedStatement) Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, cached.new Handle());
+    }
+
+    // Closes the least recently used statements that are not in use until the cache fits
+    private void evict() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement cached = iterator.next();
+            if (!cached.inUse) {
+                cached.closeQuietly();
+                iterator.remove();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes every cached statement
+     */
+    public void clear() {
+        for (CachedStatement cached : statements.values()) {
+            cached.closeQuietly();
+        }
+        statements.clear();
+    }
+
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse = false;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        /**
+         * One use of the cached statement, from prepare() until close()
+         */
+        private class Handle implements InvocationHandler {
+            private ResultSet lastResult;
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            release();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+                if (closed) {
+                    throw new SQLException("Statement has already been closed");
+                }
+                try {
+                    Object result = method.invoke(statement, args);
+                    if (result instanceof ResultSet) {
+                        lastResult = (ResultSet) result;
+                    }
+                    return result;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            private void release() throws SQLException {
+                try {
+                    if (lastResult != null) {
+                        lastResult.close();
+                    }
+                    statement.clearParameters();
+                    statement.clearBatch();
+                } finally {
+                    inUse = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package hi.verkefni.vinnsla;
+
+/**
+ * How SQLite journals writes to flightbooker.db.
+ *
+ * In ROLLBACK_JOURNAL mode (the SQLite default) a write transaction locks
+ * out readers until it commits. In WAL mode readers keep reading the last
+ * committed state while a booking is being written, and commits only have
+ * to append to the write-ahead log.
+ */
+public enum StorageMode {
+    ROLLBACK_JOURNAL("DELETE", "FULL"),
+    // NORMAL is durable against application crashes in WAL mode, only a power loss can drop the last commits
+    WAL("WAL", "NORMAL");
+
+    private final String journalMode;
+    private final String synchronous;
+
+    StorageMode(String journalMode, String synchronous) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+}
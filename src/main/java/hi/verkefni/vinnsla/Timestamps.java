@@ -0,0 +1,30 @@
+package hi.verkefni.vinnsla;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversion between LocalDateTime and the epoch seconds stored in the
+ * database. Times are stored as UTC so the conversion never depends on the
+ * time zone of the machine running the application.
+ */
+public class Timestamps {
+    private Timestamps() {
+    }
+
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime fromEpochSecond(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * @return Epoch second at the start of the given day
+     */
+    public static long startOfDay(LocalDate date) {
+        return date.toEpochDay() * 86_400L;
+    }
+}
@@ -0,0 +1,160 @@
+package hi.verkefni.vinnsla;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache with a time-to-live per entry.
+ *
+ * Entries are evicted least recently used first once the cache is full, and
+ * are reloaded once they are older than the time-to-live. A lookup that
+ * finds nothing can optionally be cached as well, so repeated lookups of an
+ * unknown key don't go to the database each time.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class TtlCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long missTtlMillis;
+    private final Map<K, Entry<V>> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    // Bumped by every invalidation, so a load that raced with one isn't stored
+    private long invalidations = 0;
+
+    /**
+     * @param maxSize Maximum number of entries
+     * @param ttlMillis How long an entry stays valid after it is loaded
+     * @param cacheMisses Whether to remember keys the loader found nothing for
+     */
+    public TtlCache(int maxSize, long ttlMillis, boolean cacheMisses) {
+        this(maxSize, ttlMillis, cacheMisses ? ttlMillis : 0);
+    }
+
+    /**
+     * @param maxSize Maximum number of entries
+     * @param ttlMillis How long an entry stays valid after it is loaded
+     * @param missTtlMillis How long a key the loader found nothing for is remembered, 0 to not cache misses
+     */
+    public TtlCache(int maxSize, long ttlMillis, long missTtlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.missTtlMillis = missTtlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached value for a key, loading it if it is missing or expired.
+     * The loader runs without holding the cache lock.
+     *
+     * @param key The key
+     * @param loader Loads the value, may return null if there is none
+     * @return The value, or null if the loader found none
+     */
+    public V get(K key, Function<K, V> loader) {
+        long now = System.currentTimeMillis();
+        long invalidationsBeforeLoad;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits++;
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses++;
+            invalidationsBeforeLoad = invalidations;
+        }
+
+        V value = loader.apply(key);
+        if (value != null || missTtlMillis > 0) {
+            synchronized (this) {
+                if (invalidations == invalidationsBeforeLoad) {
+                    put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Looks up a key without loading it
+     *
+     * @param key The key
+     * @return true if the cache has a valid entry for the key, even if that entry is a cached miss
+     */
+    public synchronized boolean contains(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && entry.expiresAt > System.currentTimeMillis();
+    }
+
+    public synchronized void put(K key, V value) {
+        long ttl = value != null ? ttlMillis : missTtlMillis;
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Removes a key so the next lookup loads it again
+     */
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Share of lookups answered from the cache, between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package hi.verkefni.vidmot;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncServiceTest {
+    // Background work and UI handlers wait here until the test runs them
+    private Queue<Runnable> background;
+    private Queue<Runnable> ui;
+    private AsyncService service;
+    
+    @BeforeEach
+    public void setUp() {
+        background = new ArrayDeque<>();
+        ui = new ArrayDeque<>();
+        service = new AsyncService(background::add, ui::add);
+    }
+    
+    @Test
+    public void testRunHandsResultToUi() {
+        List<String> results = new ArrayList<>();
+        service.run(() -> "FI101", results::add, error -> fail("Should not fail"));
+        
+        runAll(background);
+        assertTrue(results.isEmpty(), "Result should only be handled on the UI executor");
+        
+        runAll(ui);
+        assertEquals(List.of("FI101"), results);
+    }
+    
+    @Test
+    public void testRunHandsErrorToUi() {
+        List<Throwable> errors = new ArrayList<>();
+        service.run(() -> {
+            throw new IllegalArgumentException("Invalid customer");
+        }, result -> fail("Should not succeed"), errors::add);
+        
+        runAll(background);
+        runAll(ui);
+        
+        assertEquals(1, errors.size());
+        assertInstanceOf(IllegalArgumentException.class, errors.get(0), "Error should not be wrapped");
+        assertEquals("Invalid customer", errors.get(0).getMessage());
+    }
+    
+    @Test
+    public void testLatestRequestDropsStaleResult() {
+        AsyncService.LatestRequest request = service.latest();
+        List<String> results = new ArrayList<>();
+        
+        request.run(() -> "old", results::add, error -> fail("Should not fail"));
+        request.run(() -> "new", results::add, error -> fail("Should not fail"));
+        
+        runAll(background);
+        runAll(ui);
+        
+        assertEquals(List.of("new"), results, "Only the latest request should be handled");
+    }
+    
+    @Test
+    public void testLatestRequestCancel() {
+        AsyncService.LatestRequest request = service.latest();
+        List<String> results = new ArrayList<>();
+        
+        request.run(() -> "FI101", results::add, error -> fail("Should not fail"));
+        runAll(background);
+        request.cancel();
+        runAll(ui);
+        
+        assertTrue(results.isEmpty(), "A cancelled request should not be handled even if it finished");
+    }
+    
+    private void runAll(Queue<Runnable> tasks) {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+}
@@ -3,9 +3,13 @@ package hi.verkefni.vidmot;
 import hi.verkefni.vinnsla.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -59,6 +63,54 @@ public class BookingControllerTest {
         assertEquals(seatToBook.getSeatNumber(), booking.getSeatNumber(), "Seat number should match");
     }
     
+    @Test
+    public void testCreateBookingCustomerLookedUpOnce() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+        bookingController.createBooking(testCustomer, testFlight, seats.get(0));
+        bookingController.createBooking(testCustomer, testFlight, seats.get(1));
+        
+        // Verify the customer check was answered from the cache the second time
+        assertEquals(1, mockCustomerDB.getSelectCalls(), "Customer should only be fetched once");
+        assertEquals(2, mockBookingDB.getInsertCalls(), "Insert method should be called twice");
+    }
+    
+    @Test
+    public void testCreateBookings() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101").subList(0, 3);
+        
+        List<SeatBookingResult> results = bookingController.createBookings(testCustomer, testFlight, seats);
+        
+        // Verify all seats were booked in one call
+        assertEquals(1, mockBookingDB.getInsertAllCalls(), "InsertAll method should be called once");
+        assertEquals(0, mockBookingDB.getInsertCalls(), "Insert method should not be called");
+        assertEquals(3, mockBookingDB.getBookingCount(), "Three bookings should be in the mock database");
+        assertEquals(3, results.size(), "Should have one result per seat");
+        for (int i = 0; i < seats.size(); i++) {
+            assertTrue(results.get(i).isBooked(), "Seat should be booked");
+            assertEquals(seats.get(i).getSeatNumber(), results.get(i).getBooking().getSeatNumber(), 
+                         "Results should be in seat order");
+        }
+    }
+    
+    @Test
+    public void testCreateBookingsRollsBackWhenSeatTaken() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101").subList(0, 3);
+        bookingController.createBooking(testCustomer, testFlight, seats.get(1));
+        
+        List<SeatBookingResult> results = bookingController.createBookings(testCustomer, testFlight, seats);
+        
+        // Verify nothing was booked and the free seats were given back
+        assertEquals(0, mockBookingDB.getInsertAllCalls(), "InsertAll method should not be called");
+        assertEquals(SeatBookingResult.Status.NOT_BOOKED, results.get(0).getStatus(), "Free seat should not be booked");
+        assertEquals(SeatBookingResult.Status.SEAT_TAKEN, results.get(1).getStatus(), "Taken seat should be reported");
+        assertEquals(SeatBookingResult.Status.NOT_BOOKED, results.get(2).getStatus(), "Free seat should not be booked");
+        
+        List<String> available = bookingController.getAvailableSeats("FI101").stream()
+            .map(Seat::getSeatNumber).toList();
+        assertTrue(available.contains(seats.get(0).getSeatNumber()), "Free seat should be available again");
+        assertTrue(available.contains(seats.get(2).getSeatNumber()), "Free seat should be available again");
+    }
+    
     @Test
     public void testCancelBooking() {
         // Create a booking first
@@ -92,6 +144,146 @@ public class BookingControllerTest {
         assertEquals(newSeat.getSeatNumber(), updatedBooking.getSeatNumber(), "Seat number should be updated");
     }
     
+    @Test
+    public void testUpdateBookingToSameSeat() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+        Booking booking = bookingController.createBooking(testCustomer, testFlight, seats.get(0));
+        
+        Booking updatedBooking = bookingController.updateBooking(booking.getBookingId(), seats.get(0));
+        
+        assertEquals(seats.get(0).getSeatNumber(), updatedBooking.getSeatNumber(), "Booking should keep its seat");
+        assertEquals(0, mockBookingDB.getUpdateCalls(), "Nothing should be saved");
+        assertFalse(bookingController.getAvailableSeats("FI101").stream()
+                        .anyMatch(seat -> seat.getSeatNumber().equals(seats.get(0).getSeatNumber())),
+                    "Seat should still be taken");
+    }
+    
+    @Test
+    public void testUpdateBookingRetriesAfterConcurrentChange() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+        Booking booking = bookingController.createBooking(testCustomer, testFlight, seats.get(0));
+        
+        // Another agent saves the booking between the read and the save, once
+        mockBookingDB.simulateConcurrentChanges(1);
+        Booking updatedBooking = bookingController.updateBooking(booking.getBookingId(), seats.get(1));
+        
+        // Verify the change was redone from a fresh read
+        assertEquals(2, mockBookingDB.getUpdateCalls(), "Update should be tried twice");
+        assertEquals(seats.get(1).getSeatNumber(), updatedBooking.getSeatNumber(), "Seat number should be updated");
+        assertEquals(seats.get(1).getSeatNumber(), bookingController.viewBooking(booking.getBookingId()).getSeatNumber(),
+                     "Saved booking should have the new seat");
+    }
+    
+    @Test
+    public void testUpdateBookingGivesUpAfterRepeatedChanges() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+        Booking booking = bookingController.createBooking(testCustomer, testFlight, seats.get(0));
+        
+        mockBookingDB.simulateConcurrentChanges(BookingController.MAX_CHANGE_ATTEMPTS);
+        assertThrows(BookingChangedException.class,
+                     () -> bookingController.updateBooking(booking.getBookingId(), seats.get(1)));
+        
+        // Verify the booking and the seats are as they were
+        assertEquals(BookingController.MAX_CHANGE_ATTEMPTS, mockBookingDB.getUpdateCalls(), "Every attempt should be used");
+        assertEquals(seats.get(0).getSeatNumber(), bookingController.viewBooking(booking.getBookingId()).getSeatNumber(),
+                     "Booking should keep its old seat");
+        List<String> available = bookingController.getAvailableSeats("FI101").stream()
+            .map(Seat::getSeatNumber).toList();
+        assertTrue(available.contains(seats.get(1).getSeatNumber()), "New seat should be given back");
+        assertFalse(available.contains(seats.get(0).getSeatNumber()), "Old seat should still be taken");
+    }
+    
+    @Test
+    public void testCancelBookingRetriesAfterConcurrentChange() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+        Booking booking = bookingController.createBooking(testCustomer, testFlight, seats.get(0));
+        
+        mockBookingDB.simulateConcurrentChanges(1);
+        
+        assertTrue(bookingController.cancelBooking(booking.getBookingId()), "Cancellation should succeed");
+        assertEquals(2, mockBookingDB.getUpdateCalls(), "Update should be tried twice");
+        assertEquals("CANCELLED", bookingController.viewBooking(booking.getBookingId()).getStatus(),
+                     "Status should be CANCELLED");
+    }
+    
+    @Test
+    public void testChangesAreLogged(@TempDir Path eventDir) throws Exception {
+        try (BookingEventStore eventStore = new BookingEventStore(eventDir)) {
+            BookingController controller = new BookingController(mockBookingDB, flightController, customerController,
+                                                                  new SeatInventory(mockBookingDB), eventStore);
+            List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+            Booking booking = controller.createBooking(testCustomer, testFlight, seats.get(0));
+            controller.updateBooking(booking.getBookingId(), seats.get(1));
+            controller.cancelBooking(booking.getBookingId());
+            
+            // Verify every change is in the history and the logged state matches the table
+            List<BookingEvent.Type> history = controller.getBookingHistory(booking.getBookingId()).stream()
+                .map(BookingEvent::getType).toList();
+            assertEquals(List.of(BookingEvent.Type.BOOKING_CREATED, BookingEvent.Type.SEAT_CHANGED,
+                                 BookingEvent.Type.BOOKING_CANCELLED), history, "Every change should be logged");
+            Booking logged = eventStore.getBooking(booking.getBookingId());
+            Booking stored = mockBookingDB.selectById(booking.getBookingId());
+            assertEquals(stored.getSeatNumber(), logged.getSeatNumber(), "Logged seat should match the table");
+            assertEquals(stored.getStatus(), logged.getStatus(), "Logged status should match the table");
+            assertEquals(stored.getVersion(), logged.getVersion(), "Logged version should match the table");
+        }
+    }
+    
+    @Test
+    public void testFailedChangeIsNotLogged(@TempDir Path eventDir) throws Exception {
+        try (BookingEventStore eventStore = new BookingEventStore(eventDir)) {
+            BookingController controller = new BookingController(mockBookingDB, flightController, customerController,
+                                                                  new SeatInventory(mockBookingDB), eventStore);
+            Seat seat = controller.getAvailableSeats("FI101").get(0);
+            mockBookingDB.markSeatBooked("FI101", seat.getSeatNumber());
+            
+            assertThrows(SeatConflictException.class, () -> controller.createBooking(testCustomer, testFlight, seat));
+            assertEquals(0, eventStore.getLastSequence(), "Nothing should be logged");
+        }
+    }
+    
+    @Test
+    public void testEventStoreSetLater(@TempDir Path eventDir) throws Exception {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+        Booking early = bookingController.createBooking(testCustomer, testFlight, seats.get(0));
+        assertTrue(bookingController.getBookingHistory(early.getBookingId()).isEmpty(), "There should be no log yet");
+        
+        try (BookingEventStore eventStore = new BookingEventStore(eventDir)) {
+            bookingController.setEventStore(eventStore);
+            Booking later = bookingController.createBooking(testCustomer, testFlight, seats.get(1));
+            
+            assertEquals(1, bookingController.getBookingHistory(early.getBookingId()).size(),
+                         "Booking made before the log was set should be caught up");
+            assertEquals(1, bookingController.getBookingHistory(later.getBookingId()).size(),
+                         "Booking made after the log was set should be logged");
+        }
+    }
+    
+    @Test
+    public void testUnsavedChangeIsNotLogged(@TempDir Path eventDir) throws Exception {
+        try (BookingEventStore eventStore = new BookingEventStore(eventDir)) {
+            BookingController controller = new BookingController(mockBookingDB, flightController, customerController,
+                                                                  new SeatInventory(mockBookingDB), eventStore);
+            List<Seat> seats = controller.getAvailableSeats("FI101");
+            
+            mockBookingDB.simulateWriteFailures(1);
+            assertThrows(IllegalStateException.class, () -> controller.createBooking(testCustomer, testFlight, seats.get(0)));
+            assertEquals(0, eventStore.getLastSequence(), "Booking that wasn't saved should not be logged");
+            
+            Booking booking = controller.createBooking(testCustomer, testFlight, seats.get(0));
+            long created = eventStore.getLastSequence();
+            
+            mockBookingDB.simulateWriteFailures(1);
+            assertThrows(IllegalStateException.class, () -> controller.updateBooking(booking.getBookingId(), seats.get(1)));
+            mockBookingDB.simulateWriteFailures(1);
+            assertFalse(controller.cancelBooking(booking.getBookingId()), "Cancellation should fail");
+            
+            assertEquals(created, eventStore.getLastSequence(), "Changes that weren't saved should not be logged");
+            assertEquals(seats.get(0).getSeatNumber(), eventStore.getBooking(booking.getBookingId()).getSeatNumber(),
+                         "Logged booking should keep its seat");
+        }
+    }
+    
     @Test
     public void testViewBooking() {
         // Create a booking first
@@ -123,6 +315,67 @@ public class BookingControllerTest {
         assertEquals(2, customerBookings.size(), "Should have 2 bookings");
     }
     
+    @Test
+    public void testGetBookingSummariesByCustomer() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+        bookingController.createBooking(testCustomer, testFlight, seats.get(0));
+        bookingController.createBooking(testCustomer, testFlight, seats.get(1));
+        mockFlightDB.reset();
+        
+        List<BookingSummary> summaries = bookingController.getBookingSummariesByCustomer(testCustomer.getCustomerId());
+        
+        // Verify
+        assertEquals(1, mockBookingDB.getSelectSummariesByCustomerIdCalls(), "Bookings should be loaded in one call");
+        assertEquals(0, mockFlightDB.getSelectByFlightNumberCalls(), "Flights should not be looked up one by one");
+        assertEquals(2, summaries.size(), "Should have 2 bookings");
+        assertEquals("KEF", summaries.get(0).getOrigin(), "Origin should come with the booking");
+        assertEquals("JFK", summaries.get(0).getDestination(), "Destination should come with the booking");
+    }
+    
+    @Test
+    public void testGetBookingSummaryPages() {
+        List<Seat> seats = mockBookingDB.getAvailableSeats("FI101");
+        for (int i = 0; i < 5; i++) {
+            bookingController.createBooking(testCustomer, testFlight, seats.get(i));
+        }
+        
+        List<BookingSummary> first = bookingController.getBookingSummaryPage(testCustomer.getCustomerId(), null, 2);
+        List<BookingSummary> second = bookingController.getBookingSummaryPage(testCustomer.getCustomerId(), first.get(1), 2);
+        List<BookingSummary> last = bookingController.getBookingSummaryPage(testCustomer.getCustomerId(), second.get(1), 2);
+        
+        // Verify
+        assertEquals(2, first.size(), "First page should be full");
+        assertEquals(2, second.size(), "Second page should be full");
+        assertEquals(1, last.size(), "Last page should have the remaining booking");
+        
+        Set<String> bookingIds = new HashSet<>();
+        for (List<BookingSummary> page : List.of(first, second, last)) {
+            for (BookingSummary summary : page) {
+                bookingIds.add(summary.getBooking().getBookingId());
+            }
+        }
+        assertEquals(5, bookingIds.size(), "Every booking should be on exactly one page");
+    }
+    
+    @Test
+    public void testGetBookingSummaryPageInvalidSize() {
+        assertThrows(IllegalArgumentException.class,
+            () -> bookingController.getBookingSummaryPage(testCustomer.getCustomerId(), null, 0));
+    }
+    
+    @Test
+    public void testGetSeatMap() {
+        SeatMap before = bookingController.getSeatMap("FI101");
+        bookingController.createBooking(testCustomer, testFlight, new Seat("A1", false, "FI101"));
+        SeatMap after = bookingController.getSeatMap("FI101", before);
+        
+        assertEquals(30, before.getLayout().getSeatCount(), "Seat map should have every seat");
+        assertFalse(before.isTaken("A1"), "A1 should be free before booking");
+        assertTrue(after.isTaken("A1"), "A1 should be taken after booking");
+        assertEquals(before.getAvailableCount() - 1, after.getAvailableCount(), "One seat fewer should be free");
+        assertSame(after, bookingController.getSeatMap("FI101", after), "Unchanged seat map should be reused");
+    }
+    
     @Test
     public void testGetAvailableSeats() {
         // Get initial available seats
@@ -143,10 +396,107 @@ public class BookingControllerTest {
         System.out.println("Available seat count after booking: " + availableSeats.size());
         
         // Verify
-        assertEquals(1, mockBookingDB.getGetAvailableSeatsCalls(), "GetAvailableSeats method should be called once");
+        assertEquals(0, mockBookingDB.getGetAvailableSeatsCalls(), "Available seats should come from the seat inventory");
+        assertEquals(1, mockBookingDB.getGetSeatsCalls(), "Seats should be loaded from the database once");
         assertEquals(initialCount - 1, availableSeats.size(), "Should have 1 fewer seat available");
     }
     
+    @Test
+    public void testCreateBookingSeatAlreadyClaimed() {
+        // Two bookers holding the same stale Seat object
+        Seat seat = mockBookingDB.getAvailableSeats("FI101").get(0);
+        Seat staleSeat = new Seat(seat.getSeatNumber(), false, seat.getFlightNumber());
+        
+        bookingController.createBooking(testCustomer, testFlight, seat);
+        
+        // Verify the second booker loses the seat
+        assertThrows(IllegalArgumentException.class, 
+                     () -> bookingController.createBooking(testCustomer, testFlight, staleSeat),
+                     "Seat should not be booked twice");
+        assertEquals(1, mockBookingDB.getInsertCalls(), "Insert method should be called once");
+    }
+    
+    @Test
+    public void testCreateBookingSeatTakenInDatabase() {
+        // Load the seats into memory, then have the seat booked without the controller knowing
+        Seat seat = bookingController.getAvailableSeats("FI101").get(0);
+        mockBookingDB.markSeatBooked("FI101", seat.getSeatNumber());
+        
+        // Verify the database turns the booking down and the seats are reloaded
+        assertThrows(SeatConflictException.class,
+                     () -> bookingController.createBooking(testCustomer, testFlight, seat),
+                     "Seat taken in the database should not be booked");
+        assertEquals(0, mockBookingDB.getBookingCount(), "No booking should be saved");
+        List<String> available = bookingController.getAvailableSeats("FI101").stream()
+            .map(Seat::getSeatNumber).toList();
+        assertFalse(available.contains(seat.getSeatNumber()), "Seat should no longer show as available");
+        assertEquals(2, mockBookingDB.getGetSeatsCalls(), "Seats should be reloaded after the conflict");
+    }
+    
+    @Test
+    public void testCreateBookingsSeatTakenInDatabase() {
+        List<Seat> seats = bookingController.getAvailableSeats("FI101").subList(0, 3);
+        mockBookingDB.markSeatBooked("FI101", seats.get(1).getSeatNumber());
+        
+        List<SeatBookingResult> results = bookingController.createBookings(testCustomer, testFlight, seats);
+        
+        // Verify the conflicting seat is reported and the others are free again
+        assertEquals(SeatBookingResult.Status.NOT_BOOKED, results.get(0).getStatus(), "Free seat should not be booked");
+        assertEquals(SeatBookingResult.Status.SEAT_TAKEN, results.get(1).getStatus(), "Taken seat should be reported");
+        assertEquals(SeatBookingResult.Status.NOT_BOOKED, results.get(2).getStatus(), "Free seat should not be booked");
+        List<String> available = bookingController.getAvailableSeats("FI101").stream()
+            .map(Seat::getSeatNumber).toList();
+        assertTrue(available.contains(seats.get(0).getSeatNumber()), "Free seat should be available again");
+        assertFalse(available.contains(seats.get(1).getSeatNumber()), "Taken seat should not be available");
+    }
+    
+    @Test
+    public void testCreateBookingNotSaved() {
+        Seat seat = bookingController.getAvailableSeats("FI101").get(0);
+        mockBookingDB.simulateWriteFailures(1);
+        
+        // Verify the caller hears about it and the seat is free again
+        assertThrows(IllegalStateException.class,
+                     () -> bookingController.createBooking(testCustomer, testFlight, seat),
+                     "Booking that wasn't saved should not be returned");
+        assertEquals(0, mockBookingDB.getBookingCount(), "No booking should be saved");
+        List<String> available = bookingController.getAvailableSeats("FI101").stream()
+            .map(Seat::getSeatNumber).toList();
+        assertTrue(available.contains(seat.getSeatNumber()), "Seat should be available again");
+        
+        Booking booking = bookingController.createBooking(testCustomer, testFlight, seat);
+        assertEquals(seat.getSeatNumber(), booking.getSeatNumber(), "Seat should be bookable once the database is back");
+    }
+    
+    @Test
+    public void testUpdateBookingNotSaved() {
+        List<Seat> seats = bookingController.getAvailableSeats("FI101");
+        Booking booking = bookingController.createBooking(testCustomer, testFlight, seats.get(0));
+        mockBookingDB.simulateWriteFailures(1);
+        
+        assertThrows(IllegalStateException.class,
+                     () -> bookingController.updateBooking(booking.getBookingId(), seats.get(1)));
+        
+        // Verify the seats in memory still match the database
+        assertEquals(seats.get(0).getSeatNumber(), bookingController.viewBooking(booking.getBookingId()).getSeatNumber(),
+                     "Booking should keep its old seat");
+        List<String> available = bookingController.getAvailableSeats("FI101").stream()
+            .map(Seat::getSeatNumber).toList();
+        assertTrue(available.contains(seats.get(1).getSeatNumber()), "New seat should be given back");
+        assertFalse(available.contains(seats.get(0).getSeatNumber()), "Old seat should still be taken");
+    }
+    
+    @Test
+    public void testCancelBookingNotSaved() {
+        Seat seat = bookingController.getAvailableSeats("FI101").get(0);
+        Booking booking = bookingController.createBooking(testCustomer, testFlight, seat);
+        mockBookingDB.simulateWriteFailures(1);
+        
+        assertFalse(bookingController.cancelBooking(booking.getBookingId()), "Cancellation should be reported as failed");
+        assertEquals("CONFIRMED", bookingController.viewBooking(booking.getBookingId()).getStatus(),
+                     "Booking should still be confirmed");
+    }
+    
     @Test
     public void testGetBookedSeat() {
         // Create a booking first
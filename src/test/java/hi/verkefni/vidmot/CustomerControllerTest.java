@@ -69,4 +69,23 @@ public class CustomerControllerTest {
         assertNull(controller.getCustomer("NONEXISTENT"), "Should return null for non-existent customer");
         assertEquals(1, mockDB.getSelectCalls(), "Select method should be called once");
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testGetCustomerNotFoundCached() {
+        controller.getCustomer("NONEXISTENT");
+        
+        assertFalse(controller.customerExists("NONEXISTENT"), "Unknown customer should not exist");
+        assertEquals(1, mockDB.getSelectCalls(), "Unknown ID should only be looked up once");
+    }
+    
+    @Test
+    public void testRegisterCustomerAfterNotFound() {
+        assertFalse(controller.customerExists("2404012073"), "Customer should not exist yet");
+        
+        Customer customer = new Customer("2404012073", "John Doe", "john@example.com", "5551234");
+        controller.registerCustomer(customer);
+        
+        assertTrue(controller.customerExists("2404012073"), "Registered customer should exist");
+        assertEquals(2, mockDB.getSelectCalls(), "Customer should be looked up again after registering");
+    }
+}
@@ -1,6 +1,7 @@
 package hi.verkefni.vidmot;
 
 import hi.verkefni.vinnsla.Flight;
+import hi.verkefni.vinnsla.Itinerary;
 import hi.verkefni.vinnsla.MockFlightDB;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -41,12 +42,39 @@ public class FlightControllerTest {
         assertNull(flight, "Flight should not be found");
     }
     
+    @Test
+    public void testGetFlightByNumberCached() {
+        controller.getFlightByNumber("FI101");
+        Flight flight = controller.getFlightByNumber("FI101");
+        
+        assertEquals(1, mockDB.getSelectByFlightNumberCalls(), "Second lookup should come from the cache");
+        assertNotNull(flight, "Flight should be found");
+        assertEquals(0.5, controller.getFlightCache().getHitRate(), "One of two lookups should hit the cache");
+    }
+    
+    @Test
+    public void testRescheduleFlightInvalidatesCache() {
+        controller.getFlightByNumber("FI101");
+        
+        LocalDateTime newDeparture = LocalDateTime.parse("2020-11-01 14:00:00", formatter);
+        LocalDateTime newArrival = LocalDateTime.parse("2020-11-01 20:00:00", formatter);
+        controller.rescheduleFlight("FI101", newDeparture, newArrival);
+        
+        Flight flight = controller.getFlightByNumber("FI101");
+        
+        assertEquals(1, mockDB.getUpdateCalls(), "Update method should be called once");
+        assertEquals(3, mockDB.getSelectByFlightNumberCalls(), "Flight should be reloaded after rescheduling");
+        assertEquals(newDeparture, flight.getDepartureTime(), "Departure time should be rescheduled");
+        assertEquals(newArrival, flight.getArrivalTime(), "Arrival time should be rescheduled");
+    }
+    
     @Test
     public void testSearchFlights() {
         LocalDateTime searchDate = LocalDateTime.parse("2020-11-01 00:00:00", formatter);
         List<Flight> flights = controller.searchFlights("KEF", "JFK", searchDate);
         
-        assertEquals(1, mockDB.getSearchFlightsCalls(), "Search method should be called once");
+        assertEquals(0, mockDB.getSearchFlightsCalls(), "Search should be answered from the search index");
+        assertEquals(1, mockDB.getGetAllFlightsCalls(), "Search index should be loaded once");
         assertEquals(1, flights.size(), "One flight should be found");
         assertEquals("FI101", flights.get(0).getFlightNumber(), "Flight number should match");
     }
@@ -56,7 +84,7 @@ public class FlightControllerTest {
         LocalDateTime searchDate = LocalDateTime.parse("2020-11-10 00:00:00", formatter);
         List<Flight> flights = controller.searchFlights("KEF", "JFK", searchDate);
         
-        assertEquals(1, mockDB.getSearchFlightsCalls(), "Search method should be called once");
+        assertEquals(0, mockDB.getSearchFlightsCalls(), "Search should be answered from the search index");
         assertEquals(0, flights.size(), "No flights should be found");
     }
     
@@ -67,4 +95,76 @@ public class FlightControllerTest {
         assertEquals(1, mockDB.getGetAllFlightsCalls(), "GetAll method should be called once");
         assertEquals(2, flights.size(), "Two flights should be found");
     }
+    
+    @Test
+    public void testFindConnections() {
+        mockDB.addFlight(new Flight(
+            "FI105", 
+            "JFK", 
+            "LAX", 
+            LocalDateTime.parse("2020-11-01 20:00:00", formatter), 
+            LocalDateTime.parse("2020-11-02 02:00:00", formatter)
+        ));
+        LocalDateTime start = LocalDateTime.parse("2020-11-01 00:00:00", formatter);
+        
+        Itinerary itinerary = controller.findEarliestArrival("KEF", "LAX", start);
+        List<Itinerary> itineraries = controller.findConnections("KEF", "LAX", start, 5);
+        
+        assertEquals(1, mockDB.getGetAllFlightsCalls(), "Route graph should be built once");
+        assertNotNull(itinerary, "LAX should be reachable through JFK");
+        assertEquals("FI101", itinerary.getLegs().get(0).getFlightNumber(), "First leg should match");
+        assertEquals("FI105", itinerary.getLegs().get(1).getFlightNumber(), "Second leg should match");
+        assertEquals(1, itineraries.size(), "One trip should be found");
+    }
+    
+    @Test
+    public void testRescheduleFlightRebuildsRoutes() {
+        LocalDateTime start = LocalDateTime.parse("2020-11-01 00:00:00", formatter);
+        controller.findEarliestArrival("KEF", "JFK", start);
+        
+        LocalDateTime newDeparture = LocalDateTime.parse("2020-11-05 12:00:00", formatter);
+        LocalDateTime newArrival = LocalDateTime.parse("2020-11-05 18:00:00", formatter);
+        controller.rescheduleFlight("FI101", newDeparture, newArrival);
+        Itinerary itinerary = controller.findEarliestArrival("KEF", "JFK", start);
+        
+        assertEquals(1, mockDB.getGetAllFlightsCalls(), "Route graph should be rebuilt from the search index");
+        assertEquals(newArrival, itinerary.getArrivalTime(), "Trip should use the new times");
+    }
+    
+    @Test
+    public void testSearchAfterReschedule() {
+        LocalDateTime oldDate = LocalDateTime.parse("2020-11-01 00:00:00", formatter);
+        LocalDateTime newDate = LocalDateTime.parse("2020-11-05 00:00:00", formatter);
+        assertEquals(1, controller.searchFlights("KEF", "JFK", oldDate).size(), "Flight should be found on its old date");
+        
+        controller.rescheduleFlight("FI101", newDate.withHour(12), newDate.withHour(18));
+        
+        assertEquals(0, controller.searchFlights("KEF", "JFK", oldDate).size(), "Flight should be gone from its old date");
+        assertEquals(1, controller.searchFlights("KEF", "JFK", newDate).size(), "Flight should be found on its new date");
+        assertEquals(1, mockDB.getGetAllFlightsCalls(), "Search index should be updated, not reloaded");
+    }
+    
+    @Test
+    public void testSearchWithOptionalFilters() {
+        assertEquals(2, controller.searchFlights(null, "", null).size(), "Empty filters should match every flight");
+        assertEquals(1, controller.searchByOrigin("JFK").size(), "One flight should leave JFK");
+        assertEquals(List.of("JFK", "KEF"), controller.getAllOrigins(), "Origins should be sorted");
+        assertEquals(0, mockDB.getSearchFlightsCalls(), "Searches should be answered from the search index");
+    }
+    
+    @Test
+    public void testGetDestinationsFrom() {
+        mockDB.addFlight(new Flight(
+            "FI105", 
+            "KEF", 
+            "LHR", 
+            LocalDateTime.parse("2020-11-03 12:00:00", formatter), 
+            LocalDateTime.parse("2020-11-03 15:00:00", formatter)
+        ));
+        
+        assertEquals(List.of("JFK", "LHR"), controller.getDestinationsFrom("KEF"), "KEF should reach JFK and LHR");
+        assertEquals(List.of("KEF"), controller.getDestinationsFrom("JFK"), "JFK should reach KEF");
+        assertEquals(List.of("JFK", "KEF", "LHR"), controller.getAllDestinations(), "Destinations should be sorted");
+        assertEquals(1, mockDB.getGetAllFlightsCalls(), "Airport lists should come from the search index");
+    }
 }
\ No newline at end of file
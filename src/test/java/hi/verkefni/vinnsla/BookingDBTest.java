@@ -0,0 +1,129 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookingDBTest {
+    @TempDir
+    Path tempDir;
+    
+    private ConnectionProvider connectionProvider;
+    private BookingDB bookingDB;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        String url = TestDatabase.create(tempDir, List.of("A1", "A2", "A3"));
+        connectionProvider = new ConnectionProvider(url);
+        bookingDB = new BookingDB(connectionProvider);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        connectionProvider.shutdown();
+    }
+    
+    private static Booking booking(String bookingId, String seatNumber) {
+        return new Booking(bookingId, LocalDateTime.parse("2020-10-01T12:00"), "CONFIRMED", "C1", "FI101", seatNumber);
+    }
+    
+    private List<String> availableSeatNumbers() {
+        return bookingDB.getAvailableSeats("FI101").stream().map(Seat::getSeatNumber).sorted().toList();
+    }
+    
+    @Test
+    public void testInsertTakenSeat() {
+        bookingDB.insert(booking("B1", "A1"));
+        
+        SeatConflictException conflict = assertThrows(SeatConflictException.class,
+            () -> bookingDB.insert(booking("B2", "A1")), "Seat should not be booked twice");
+        assertEquals("A1", conflict.getSeatNumber(), "Conflict should name the seat");
+        assertEquals("FI101", conflict.getFlightNumber(), "Conflict should name the flight");
+        assertNull(bookingDB.selectById("B2"), "Losing booking should not be saved");
+        assertNotNull(bookingDB.selectById("B1"), "Winning booking should be kept");
+    }
+    
+    @Test
+    public void testInsertUnknownSeat() {
+        assertThrows(SeatConflictException.class, () -> bookingDB.insert(booking("B1", "Z9")),
+            "Seat that doesn't exist can't be claimed");
+        assertNull(bookingDB.selectById("B1"), "Booking should not be saved");
+    }
+    
+    @Test
+    public void testInsertAllRollsBackOnTakenSeat() {
+        bookingDB.insert(booking("B1", "A2"));
+        
+        assertThrows(SeatConflictException.class,
+            () -> bookingDB.insertAll(List.of(booking("B2", "A1"), booking("B3", "A2"), booking("B4", "A3"))));
+        assertNull(bookingDB.selectById("B2"), "No booking of the group should be saved");
+        assertNull(bookingDB.selectById("B4"), "No booking of the group should be saved");
+        assertEquals(List.of("A1", "A3"), availableSeatNumbers(), "Free seats of the group should stay free");
+    }
+    
+    @Test
+    public void testUpdateToTakenSeat() {
+        bookingDB.insert(booking("B1", "A1"));
+        bookingDB.insert(booking("B2", "A2"));
+        
+        assertThrows(SeatConflictException.class, () -> bookingDB.update(booking("B1", "A2")));
+        assertEquals("A1", bookingDB.selectById("B1").getSeatNumber(), "Booking should keep its old seat");
+        assertEquals(List.of("A3"), availableSeatNumbers(), "Old seat should not have been freed");
+        
+        bookingDB.update(booking("B1", "A3"));
+        assertEquals(List.of("A1"), availableSeatNumbers(), "Moving to a free seat should free the old one");
+    }
+    
+    @Test
+    public void testFailedWritesReported() {
+        assertTrue(bookingDB.insert(booking("B1", "A1")), "Booking should be saved");
+        
+        // Same booking ID again fails in the database after its seat was claimed
+        assertFalse(bookingDB.insert(booking("B1", "A2")), "Failed insert should be reported");
+        assertEquals(List.of("A2", "A3"), availableSeatNumbers(), "Seat of the failed insert should not be taken");
+        
+        assertFalse(bookingDB.update(booking("B9", "A3")), "Update of a missing booking should be reported");
+        assertEquals(List.of("A2", "A3"), availableSeatNumbers(), "Failed update should not take a seat");
+    }
+    
+    @Test
+    public void testUpdateMovesVersionOn() {
+        bookingDB.insert(booking("B1", "A1"));
+        Booking read = bookingDB.selectById("B1");
+        assertEquals(0, read.getVersion(), "New booking should be at version 0");
+        
+        read.setStatus("CANCELLED");
+        bookingDB.update(read);
+        
+        assertEquals(1, read.getVersion(), "Saved booking should be at the next version");
+        assertEquals(1, bookingDB.selectById("B1").getVersion(), "Stored booking should be at the next version");
+        assertEquals(1, bookingDB.selectSummariesByCustomerId("C1").get(0).getBooking().getVersion(),
+            "Booking history should carry the version");
+    }
+    
+    @Test
+    public void testUpdateStaleBooking() {
+        bookingDB.insert(booking("B1", "A1"));
+        Booking first = bookingDB.selectById("B1");
+        Booking second = bookingDB.selectById("B1");
+        
+        // Both agents read version 0, the first one to save wins
+        first.setSeatNumber("A2");
+        bookingDB.update(first);
+        second.setStatus("CANCELLED");
+        assertThrows(BookingChangedException.class, () -> bookingDB.update(second),
+            "Saving a booking read before the other save should fail");
+        
+        Booking stored = bookingDB.selectById("B1");
+        assertEquals("A2", stored.getSeatNumber(), "First agent's change should be kept");
+        assertEquals("CONFIRMED", stored.getStatus(), "Second agent's change should not be saved");
+        assertEquals(List.of("A1", "A3"), availableSeatNumbers(), "Seats should match the first agent's change");
+    }
+}
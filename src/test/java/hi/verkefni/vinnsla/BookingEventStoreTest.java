@@ -0,0 +1,306 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookingEventStoreTest {
+    @TempDir
+    Path tempDir;
+    
+    private static Booking booking(String bookingId, String seatNumber) {
+        return new Booking(bookingId, LocalDateTime.parse("2020-10-01T12:00"), "CONFIRMED", "C1", "FI101", seatNumber);
+    }
+    
+    @Test
+    public void testLogReopens() throws Exception {
+        Path file = tempDir.resolve("events.log");
+        // Small mapping so the log has to grow
+        try (BookingEventLog log = new BookingEventLog(file, 256)) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i + 1, log.append(BookingEvent.created(booking("B" + i, "A" + i))).getSequence(),
+                    "Events should be numbered in order");
+            }
+        }
+        
+        try (BookingEventLog log = new BookingEventLog(file, 256)) {
+            assertEquals(100, log.getLastSequence(), "Every event should be found again");
+            List<BookingEvent> events = new ArrayList<>();
+            log.replay(90, events::add);
+            assertEquals(10, events.size(), "Only events after 90 should be replayed");
+            assertEquals("B90", events.get(0).getBookingId(), "First replayed event should match");
+            assertEquals("A90", events.get(0).getSeatNumber(), "Seat should be read back");
+            assertEquals(LocalDateTime.parse("2020-10-01T12:00"), events.get(0).getBookingDate(), "Date should be read back");
+            assertEquals(101, log.append(BookingEvent.cancelled(booking("B1", "A1"))).getSequence(),
+                "Appending should continue after the last event");
+        }
+    }
+    
+    @Test
+    public void testTornRecordIsDropped() throws Exception {
+        Path file = tempDir.resolve("events.log");
+        long size;
+        try (BookingEventLog log = new BookingEventLog(file, 4096)) {
+            log.append(BookingEvent.created(booking("B1", "A1")));
+            size = log.getSize();
+            log.append(BookingEvent.created(booking("B2", "A2")));
+        }
+        
+        // Break a byte of the second event, as a crash part way through writing it might
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(size + 20);
+            raw.write(0x7f);
+        }
+        
+        try (BookingEventLog log = new BookingEventLog(file, 4096)) {
+            assertEquals(1, log.getLastSequence(), "Log should end before the broken event");
+            assertEquals(2, log.append(BookingEvent.created(booking("B3", "A3"))).getSequence(),
+                "Next event should take the broken one's place");
+        }
+        try (BookingEventLog log = new BookingEventLog(file, 4096)) {
+            List<String> bookingIds = new ArrayList<>();
+            log.replay(0, event -> bookingIds.add(event.getBookingId()));
+            assertEquals(List.of("B1", "B3"), bookingIds, "Log should hold the events before and after the break");
+        }
+    }
+    
+    @Test
+    public void testStateRebuiltFromSnapshotAndLog() throws Exception {
+        try (BookingEventStore store = new BookingEventStore(tempDir, 3)) {
+            Booking first = booking("B1", "A1");
+            store.record(BookingEvent.created(first));
+            store.record(BookingEvent.created(booking("B2", "A2")));
+            first.setSeatNumber("A3");
+            first.setVersion(1);
+            store.record(BookingEvent.seatChanged(first));
+            assertEquals(3, store.getSnapshotSequence(), "Third event should trigger a snapshot");
+            first.setVersion(2);
+            store.record(BookingEvent.cancelled(first));
+        }
+        
+        try (BookingEventStore store = new BookingEventStore(tempDir, 3)) {
+            assertEquals(4, store.getLastSequence(), "Store should be at the last event");
+            Booking first = store.getBooking("B1");
+            assertEquals("A3", first.getSeatNumber(), "Seat change should be applied");
+            assertEquals("CANCELLED", first.getStatus(), "Cancellation should be applied");
+            assertEquals(2, first.getVersion(), "Version should be the one logged with the last change");
+            assertEquals(2, store.getBookings().size(), "Both bookings should be there");
+            
+            List<BookingEvent.Type> history = store.getHistory("B1").stream().map(BookingEvent::getType).toList();
+            assertEquals(List.of(BookingEvent.Type.BOOKING_CREATED, BookingEvent.Type.SEAT_CHANGED,
+                                 BookingEvent.Type.BOOKING_CANCELLED), history, "History should list every change");
+        }
+    }
+    
+    @Test
+    public void testTablesRebuiltFromEvents() throws Exception {
+        String url = TestDatabase.create(tempDir, List.of("A1", "A2", "A3"));
+        ConnectionProvider connectionProvider = new ConnectionProvider(url);
+        BookingDB bookingDB = new BookingDB(connectionProvider);
+        
+        try (BookingEventStore store = new BookingEventStore(tempDir.resolve("events"))) {
+            Booking first = booking("B1", "A1");
+            store.record(BookingEvent.created(first));
+            first.setSeatNumber("A2");
+            first.setVersion(1);
+            store.record(BookingEvent.seatChanged(first));
+            
+            // Tables that have drifted from the log
+            bookingDB.insert(booking("B9", "A3"));
+            
+            assertTrue(bookingDB.replaceAllBookings(store.getBookings()), "Tables should be rebuilt");
+            assertNull(bookingDB.selectById("B9"), "Booking not in the log should be gone");
+            Booking rebuilt = bookingDB.selectById("B1");
+            assertEquals("A2", rebuilt.getSeatNumber(), "Booking should be in its last seat");
+            assertEquals(1, rebuilt.getVersion(), "Version should match the log");
+            List<String> available = bookingDB.getAvailableSeats("FI101").stream().map(Seat::getSeatNumber).sorted().toList();
+            assertEquals(List.of("A1", "A3"), available, "Only the logged booking's seat should be taken");
+        } finally {
+            connectionProvider.shutdown();
+        }
+    }
+    
+    @Test
+    public void testDeletedBookingStaysGoneAfterRebuild() throws Exception {
+        String url = TestDatabase.create(tempDir, List.of("A1", "A2", "A3"));
+        ConnectionProvider connectionProvider = new ConnectionProvider(url);
+        BookingDB bookingDB = new BookingDB(connectionProvider);
+        
+        try (BookingEventStore store = new BookingEventStore(tempDir.resolve("events"))) {
+            bookingDB.attachEventStore(store);
+            bookingDB.insert(booking("B1", "A1"));
+            bookingDB.insert(booking("B2", "A2"));
+            assertTrue(bookingDB.delete("B1"), "Booking should be deleted");
+            
+            assertNull(store.getBooking("B1"), "Deleted booking should be gone from the log's bookings");
+            assertEquals(List.of(BookingEvent.Type.BOOKING_CREATED, BookingEvent.Type.BOOKING_DELETED),
+                store.getHistory("B1").stream().map(BookingEvent::getType).toList(), "Delete should be logged");
+            
+            assertTrue(bookingDB.replaceAllBookings(store.getBookings()), "Tables should be rebuilt");
+            assertNull(bookingDB.selectById("B1"), "Deleted booking should not come back");
+            List<String> available = bookingDB.getAvailableSeats("FI101").stream().map(Seat::getSeatNumber).sorted().toList();
+            assertEquals(List.of("A1", "A3"), available, "Deleted booking's seat should be free");
+        } finally {
+            connectionProvider.shutdown();
+        }
+    }
+    
+    @Test
+    public void testBookingDeletedBeforeAttachingIsCaughtUp() throws Exception {
+        String url = TestDatabase.create(tempDir, List.of("A1", "A2"));
+        ConnectionProvider connectionProvider = new ConnectionProvider(url);
+        BookingDB bookingDB = new BookingDB(connectionProvider);
+        
+        try (BookingEventStore store = new BookingEventStore(tempDir.resolve("events"))) {
+            // Logged, then deleted from the table while nothing was logging
+            store.record(BookingEvent.created(booking("B1", "A1")));
+            bookingDB.insert(booking("B2", "A2"));
+            
+            assertEquals(2, bookingDB.attachEventStore(store), "Delete and the new booking should be recorded");
+            assertNull(store.getBooking("B1"), "Booking gone from the table should be gone from the log");
+            assertNotNull(store.getBooking("B2"), "Booking in the table should be in the log");
+        } finally {
+            connectionProvider.shutdown();
+        }
+    }
+    
+    @Test
+    public void testVersionsFollowTheTable() throws Exception {
+        String url = TestDatabase.create(tempDir, List.of("A1", "A2"));
+        ConnectionProvider connectionProvider = new ConnectionProvider(url);
+        BookingDB bookingDB = new BookingDB(connectionProvider);
+        
+        try (BookingEventStore store = new BookingEventStore(tempDir.resolve("events"))) {
+            bookingDB.attachEventStore(store);
+            Booking booking = booking("B1", "A1");
+            bookingDB.insert(booking);
+            // Saved with nothing changed, still moves the row version on
+            assertTrue(bookingDB.update(booking));
+            booking.setSeatNumber("A2");
+            assertTrue(bookingDB.update(booking));
+            booking.setStatus("CANCELLED");
+            assertTrue(bookingDB.update(booking));
+            
+            assertEquals(List.of(BookingEvent.Type.BOOKING_CREATED, BookingEvent.Type.BOOKING_UPDATED,
+                                 BookingEvent.Type.SEAT_CHANGED, BookingEvent.Type.BOOKING_CANCELLED),
+                store.getHistory("B1").stream().map(BookingEvent::getType).toList(), "Every save should be logged");
+            assertEquals(3, bookingDB.selectById("B1").getVersion());
+            assertEquals(3, store.getBooking("B1").getVersion(), "Logged version should match the table");
+            
+            assertTrue(bookingDB.replaceAllBookings(store.getBookings()), "Tables should be rebuilt");
+            assertEquals(3, bookingDB.selectById("B1").getVersion(), "Rebuilt row should keep its version");
+        } finally {
+            connectionProvider.shutdown();
+        }
+    }
+    
+    @Test
+    public void testEventForUnknownBookingRejected() throws Exception {
+        try (BookingEventStore store = new BookingEventStore(tempDir)) {
+            assertThrows(IllegalArgumentException.class, () -> store.record(BookingEvent.seatChanged(booking("B1", "A2"))),
+                "Booking that was never created can't be changed");
+            assertEquals(0, store.getLastSequence(), "Nothing should be logged");
+        }
+        
+        // A log with such an event anyway, e.g. written before this was checked
+        try (BookingEventLog log = new BookingEventLog(tempDir.resolve(BookingEventStore.LOG_FILE))) {
+            log.append(BookingEvent.created(booking("B1", "A1")));
+            log.append(BookingEvent.cancelled(booking("B2", "A2")));
+        }
+        try (BookingEventStore store = new BookingEventStore(tempDir)) {
+            assertEquals(1, store.getUnknownBookingEventCount(), "Event for the unknown booking should be reported");
+            assertNull(store.getBooking("B2"), "Unknown booking should not be made up");
+            assertEquals(2, store.getLastSequence(), "Replay should go on past the event");
+        }
+    }
+    
+    @Test
+    public void testAttachingCatchesUp() throws Exception {
+        String url = TestDatabase.create(tempDir, List.of("A1", "A2", "A3"));
+        ConnectionProvider connectionProvider = new ConnectionProvider(url);
+        BookingDB bookingDB = new BookingDB(connectionProvider);
+        
+        try (BookingEventStore store = new BookingEventStore(tempDir.resolve("events"))) {
+            // Bookings made before the store is attached
+            bookingDB.insert(booking("B1", "A1"));
+            Booking second = booking("B2", "A2");
+            bookingDB.insert(second);
+            second.setStatus("CANCELLED");
+            bookingDB.update(second);
+            
+            assertEquals(2, bookingDB.attachEventStore(store), "Both bookings should be recorded");
+            assertEquals("CANCELLED", store.getBooking("B2").getStatus(), "Cancellation should be caught up");
+            assertEquals(1, store.getBooking("B2").getVersion(), "Version should be caught up");
+            assertEquals(0, bookingDB.attachEventStore(store), "Nothing should be recorded for an up to date store");
+            
+            bookingDB.insert(booking("B3", "A3"));
+            assertEquals("A3", store.getBooking("B3").getSeatNumber(), "Bookings after attaching should be logged");
+            assertEquals(3, store.getLastSequence());
+        } finally {
+            connectionProvider.shutdown();
+        }
+    }
+    
+    @Test
+    public void testChangesLoggedInCommitOrder() throws Exception {
+        int count = 50;
+        List<String> seatNumbers = new ArrayList<>();
+        for (int i = 0; i < 2 * count; i++) {
+            seatNumbers.add("A" + i);
+        }
+        String url = TestDatabase.create(tempDir, seatNumbers);
+        ConnectionProvider connectionProvider = new ConnectionProvider(url);
+        connectionProvider.setStorageMode(StorageMode.WAL);
+        BookingDB bookingDB = new BookingDB(connectionProvider);
+        bookingDB.startGroupCommit(new GroupCommitPolicy(8, 5, 256));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        
+        try (BookingEventStore store = new BookingEventStore(tempDir.resolve("events"))) {
+            bookingDB.attachEventStore(store);
+            
+            // Each booking is moved by another thread as soon as it can read it
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String bookingId = "B" + i;
+                String seat = "A" + i;
+                String newSeat = "A" + (count + i);
+                tasks.add(executor.submit(() -> bookingDB.insert(booking(bookingId, seat))));
+                tasks.add(executor.submit(() -> {
+                    Booking booking;
+                    while ((booking = bookingDB.selectById(bookingId)) == null) {
+                        Thread.onSpinWait();
+                    }
+                    booking.setSeatNumber(newSeat);
+                    return bookingDB.update(booking);
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+            
+            assertEquals(2 * count, store.getLastSequence(), "Every change should be logged");
+            for (int i = 0; i < count; i++) {
+                List<BookingEvent.Type> history = store.getHistory("B" + i).stream().map(BookingEvent::getType).toList();
+                assertEquals(List.of(BookingEvent.Type.BOOKING_CREATED, BookingEvent.Type.SEAT_CHANGED), history,
+                    "Booking should be logged before its seat change");
+                assertEquals("A" + (count + i), store.getBooking("B" + i).getSeatNumber(),
+                    "Logged seat should match the table");
+            }
+        } finally {
+            executor.shutdownNow();
+            bookingDB.stopGroupCommit();
+            connectionProvider.shutdown();
+        }
+    }
+}
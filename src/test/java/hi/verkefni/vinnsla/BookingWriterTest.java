@@ -0,0 +1,131 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookingWriterTest {
+    private static final int SEATS = 200;
+    
+    @TempDir
+    Path tempDir;
+    
+    private ConnectionProvider connectionProvider;
+    private BookingDB bookingDB;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        List<String> seatNumbers = new ArrayList<>();
+        for (int i = 0; i < SEATS; i++) {
+            seatNumbers.add(seatNumber(i));
+        }
+        String url = TestDatabase.create(tempDir, seatNumbers);
+        connectionProvider = new ConnectionProvider(url);
+        connectionProvider.setStorageMode(StorageMode.WAL);
+        bookingDB = new BookingDB(connectionProvider);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        bookingDB.stopGroupCommit();
+        connectionProvider.shutdown();
+    }
+    
+    private static String seatNumber(int i) {
+        return (char) ('A' + i % 6) + String.valueOf(i / 6 + 1);
+    }
+    
+    private static Booking booking(String bookingId, String seatNumber) {
+        return new Booking(bookingId, LocalDateTime.parse("2020-10-01T12:00"), "CONFIRMED", "C1", "FI101", seatNumber);
+    }
+    
+    @Test
+    public void testConcurrentInsertsShareCommits() throws Exception {
+        BookingWriter writer = bookingDB.startGroupCommit(new GroupCommitPolicy(32, 5, 256));
+        
+        // Many agents booking at once through the usual blocking insert
+        ExecutorService agents = Executors.newFixedThreadPool(16);
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int i = 0; i < SEATS; i++) {
+            Booking booking = booking("B" + i, seatNumber(i));
+            done.add(CompletableFuture.runAsync(() -> bookingDB.insert(booking), agents));
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+        agents.shutdown();
+        
+        assertTrue(bookingDB.getAvailableSeats("FI101").isEmpty(), "Every seat should be booked");
+        assertEquals(SEATS, writer.getWriteCount(), "Every booking should go through the writer");
+        assertTrue(writer.getBatchCount() < SEATS, "Bookings should share commits, got " + writer.getBatchCount());
+    }
+    
+    @Test
+    public void testConflictFailsOnlyItsChange() {
+        // Long enough delay that all three land in one batch
+        BookingWriter writer = bookingDB.startGroupCommit(new GroupCommitPolicy(8, 200, 8));
+        
+        CompletableFuture<Void> first = writer.insert(booking("B1", "A1"));
+        CompletableFuture<Void> second = writer.insert(booking("B2", "A1"));
+        CompletableFuture<Void> third = writer.insert(booking("B3", "B1"));
+        
+        first.join();
+        third.join();
+        CompletionException failure = assertThrows(CompletionException.class, second::join);
+        assertInstanceOf(SeatConflictException.class, failure.getCause(), "Second booking of the seat should fail");
+        assertEquals(1, writer.getBatchCount(), "All three should be one commit");
+        assertNotNull(bookingDB.selectById("B1"), "First booking should be saved");
+        assertNull(bookingDB.selectById("B2"), "Conflicting booking should not be saved");
+        assertNotNull(bookingDB.selectById("B3"), "Booking after the conflict should be saved");
+    }
+    
+    @Test
+    public void testUpdateThroughWriter() {
+        bookingDB.startGroupCommit(new GroupCommitPolicy(8, 0, 8));
+        bookingDB.insert(booking("B1", "A1"));
+        Booking first = bookingDB.selectById("B1");
+        Booking second = bookingDB.selectById("B1");
+        
+        first.setSeatNumber("A2");
+        bookingDB.update(first);
+        assertEquals(1, first.getVersion(), "Version should move on once committed");
+        assertThrows(BookingChangedException.class, () -> bookingDB.update(second),
+            "Stale booking should be turned down by the writer too");
+        
+        bookingDB.delete("B1");
+        assertNull(bookingDB.selectById("B1"), "Booking should be deleted");
+        assertEquals(SEATS, bookingDB.getAvailableSeats("FI101").size(), "Seat should be freed");
+    }
+    
+    @Test
+    public void testShutdownWritesQueuedChanges() {
+        BookingWriter writer = bookingDB.startGroupCommit(new GroupCommitPolicy(4, 50, 16));
+        List<CompletableFuture<Void>> queued = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            queued.add(writer.insert(booking("B" + i, seatNumber(i))));
+        }
+        
+        bookingDB.stopGroupCommit();
+        
+        for (CompletableFuture<Void> future : queued) {
+            assertTrue(future.isDone() && !future.isCompletedExceptionally(), "Queued booking should be written");
+        }
+        assertEquals(SEATS - 10, bookingDB.getAvailableSeats("FI101").size(), "Queued seats should be booked");
+        assertThrows(CompletionException.class, () -> writer.insert(booking("B99", seatNumber(99))).join(),
+            "Writer should turn down changes after shutdown");
+        
+        // Writes go straight to the database again
+        bookingDB.insert(booking("B99", seatNumber(99)));
+        assertNotNull(bookingDB.selectById("B99"), "Booking should be saved without the writer");
+    }
+}
@@ -0,0 +1,89 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkLoaderTest {
+    @TempDir
+    Path tempDir;
+    
+    private Connection conn;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("test.db"));
+        new MigrationRunner(conn).migrate();
+    }
+    
+    @AfterEach
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+    
+    @Test
+    public void testLoadScript() throws Exception {
+        List<Long> progress = new ArrayList<>();
+        BulkLoader loader = new BulkLoader(conn, 100, 50, (source, rows) -> progress.add(rows));
+        
+        long rows = loader.loadScript("db/insert.sql");
+        
+        // The script also marks the 3 booked seats as taken
+        assertEquals(count("Customer") + count("Flight") + count("Seat") + count("Booking") + 3, rows,
+                     "Every changed row should be counted");
+        assertFalse(progress.isEmpty(), "Progress should be reported");
+        assertEquals(rows, progress.get(progress.size() - 1), "Last report should be the total");
+    }
+    
+    @Test
+    public void testLoadCsv() throws Exception {
+        Path csv = tempDir.resolve("seats.csv");
+        StringBuilder content = new StringBuilder("seatNumber,seatStatus,flightNumber\n");
+        for (int i = 0; i < 250; i++) {
+            content.append("S").append(i).append(",0,\"FI,1\"\n");
+        }
+        Files.writeString(csv, content);
+        
+        BulkLoader loader = new BulkLoader(conn, 100, 100, (source, rows) -> { });
+        
+        assertEquals(250, loader.loadCsv("Seat", csv.toString()));
+        assertEquals(250, count("Seat"));
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT flightNumber FROM Seat")) {
+            assertTrue(rs.next());
+            assertEquals("FI,1", rs.getString(1), "Quoted field should keep its comma");
+        }
+    }
+    
+    @Test
+    public void testLoadCsvRollsBackOnBadRow() throws Exception {
+        Path csv = tempDir.resolve("seats.csv");
+        Files.writeString(csv, "seatNumber,seatStatus,flightNumber\nA1,0,FI101\nA2,0\n");
+        
+        BulkLoader loader = new BulkLoader(conn);
+        
+        assertThrows(IOException.class, () -> loader.loadCsv("Seat", csv.toString()));
+        assertEquals(0, count("Seat"), "Nothing should be loaded from a file with a bad row");
+        assertTrue(conn.getAutoCommit(), "Auto-commit should be restored");
+    }
+    
+    private long count(String table) throws Exception {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.getLong(1);
+        }
+    }
+}
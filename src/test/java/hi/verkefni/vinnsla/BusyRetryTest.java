@@ -0,0 +1,106 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BusyRetryTest {
+    @TempDir
+    Path tempDir;
+    
+    private static SQLException busy() {
+        return new SQLException("[SQLITE_BUSY] The database file is locked (database is locked)", null, 5);
+    }
+    
+    @Test
+    public void testBusyRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        String result = BusyRetry.call(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw busy();
+            }
+            return "done";
+        }, 5, 1);
+        
+        assertEquals("done", result, "Work should succeed once the database is free");
+        assertEquals(3, attempts.get(), "Work should be tried until it succeeds");
+    }
+    
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+        SQLException thrown = assertThrows(SQLException.class, () -> BusyRetry.call(() -> {
+            attempts.incrementAndGet();
+            throw busy();
+        }, 3, 1));
+        
+        assertTrue(BusyRetry.isBusy(thrown), "Last busy error should be rethrown");
+        assertEquals(3, attempts.get(), "Work should be tried maxAttempts times");
+    }
+    
+    @Test
+    public void testOtherErrorsNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(SQLException.class, () -> BusyRetry.call(() -> {
+            attempts.incrementAndGet();
+            throw new SQLException("[SQLITE_CONSTRAINT] Abort due to constraint violation", null, 19);
+        }, 5, 1));
+        assertEquals(1, attempts.get(), "Constraint error should not be retried");
+        
+        assertThrows(IllegalArgumentException.class, () -> BusyRetry.run(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("Seat is taken");
+        }));
+        assertEquals(2, attempts.get(), "Runtime errors should pass straight through");
+    }
+    
+    @Test
+    public void testIsBusy() {
+        assertTrue(BusyRetry.isBusy(new SQLException("locked", null, 6)), "SQLITE_LOCKED is busy");
+        assertTrue(BusyRetry.isBusy(new SQLException("recovering", null, 5 | (1 << 8))),
+            "Extended busy codes are busy");
+        assertTrue(BusyRetry.isBusy(new SQLException("[SQLITE_BUSY] database is locked")),
+            "Busy error without a code is recognised by its message");
+        assertFalse(BusyRetry.isBusy(new SQLException("constraint", null, 19)));
+        assertFalse(BusyRetry.isBusy(new SQLException("no code")));
+    }
+    
+    @Test
+    public void testRetriesRealLock() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("test.db");
+        try (Connection holder = DriverManager.getConnection(url);
+             Connection waiter = DriverManager.getConnection(url);
+             Statement holderStmt = holder.createStatement();
+             Statement waiterStmt = waiter.createStatement()) {
+            holderStmt.executeUpdate("CREATE TABLE Item (name TEXT)");
+            waiterStmt.execute("PRAGMA busy_timeout = 0");
+            
+            // The holder keeps the write lock for a moment
+            holder.setAutoCommit(false);
+            holderStmt.executeUpdate("INSERT INTO Item (name) VALUES ('holder')");
+            SQLException locked = assertThrows(SQLException.class,
+                () -> waiterStmt.executeUpdate("INSERT INTO Item (name) VALUES ('waiter')"));
+            assertTrue(BusyRetry.isBusy(locked), "Driver's lock error should count as busy");
+            
+            Thread committer = new Thread(() -> {
+                try {
+                    Thread.sleep(30);
+                    holder.commit();
+                } catch (InterruptedException | SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            committer.start();
+            BusyRetry.run(() -> waiterStmt.executeUpdate("INSERT INTO Item (name) VALUES ('waiter')"));
+            committer.join();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionProviderTest {
+    @TempDir
+    Path tempDir;
+    
+    private ConnectionProvider connectionProvider;
+    
+    private ConnectionProvider provider(int readerPoolSize, long leakThresholdMillis) {
+        connectionProvider = new ConnectionProvider("jdbc:sqlite:" + tempDir.resolve("test.db"),
+                                                    readerPoolSize, leakThresholdMillis);
+        return connectionProvider;
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        if (connectionProvider != null) {
+            connectionProvider.shutdown();
+        }
+    }
+    
+    @Test
+    public void testReaderBorrowTimesOut() throws Exception {
+        ConnectionProvider provider = provider(1, 0);
+        provider.setBorrowTimeoutMillis(50);
+        
+        try (Connection held = provider.getReadConnection()) {
+            SQLException timeout = assertThrows(SQLException.class, provider::getReadConnection,
+                "Borrowing from an empty pool should time out");
+            assertTrue(timeout.getMessage().contains("Timed out"), "Error should say the borrow timed out");
+        }
+        try (Connection again = provider.getReadConnection()) {
+            assertFalse(again.isClosed(), "Returned reader should be borrowed again");
+        }
+    }
+    
+    @Test
+    public void testWriterIsExclusive() throws Exception {
+        ConnectionProvider provider = provider(1, 0);
+        
+        Connection first = provider.getWriteConnection();
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            try (Connection conn = provider.getWriteConnection()) {
+                assertFalse(conn.isClosed());
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(second.isDone(), "Second writer should wait while the first holds the connection");
+        
+        first.close();
+        second.get(5, TimeUnit.SECONDS);
+        
+        provider.setBorrowTimeoutMillis(50);
+        try (Connection held = provider.getWriteConnection()) {
+            assertThrows(SQLException.class, provider::getWriteConnection,
+                "Writer should time out while it is held");
+        }
+    }
+    
+    @Test
+    public void testReleaseRollsBackOpenTransaction() throws Exception {
+        ConnectionProvider provider = provider(1, 0);
+        try (Connection conn = provider.getWriteConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE Item (name TEXT)");
+        }
+        
+        try (Connection conn = provider.getWriteConnection();
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("INSERT INTO Item (name) VALUES ('uncommitted')");
+            // Returned without commit or rollback
+        }
+        
+        try (Connection conn = provider.getWriteConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Item")) {
+            assertTrue(conn.getAutoCommit(), "Next borrower should get the connection in auto-commit");
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1), "Uncommitted insert should have been rolled back");
+        }
+    }
+    
+    @Test
+    public void testReturnedConnectionCantBeUsed() throws Exception {
+        ConnectionProvider provider = provider(1, 0);
+        Connection conn = provider.getReadConnection();
+        conn.close();
+        
+        assertTrue(conn.isClosed(), "Returned connection should read as closed");
+        assertThrows(SQLException.class, conn::createStatement, "Returned connection should not be usable");
+    }
+    
+    @Test
+    public void testFailedWarmUpKeepsPoolSize() throws Exception {
+        ConnectionProvider provider = provider(2, 0);
+        provider.getWriteConnection().close();
+        
+        // Readers fail to open while the pragma is broken
+        provider.setPragma("cache_size", "(");
+        assertThrows(SQLException.class, provider::warmUp);
+        provider.setPragma("cache_size", "-8000");
+        provider.warmUp();
+        
+        provider.setBorrowTimeoutMillis(50);
+        try (Connection first = provider.getReadConnection();
+             Connection second = provider.getReadConnection()) {
+            assertNotSame(first, second, "Both readers of the pool should still be available");
+        }
+    }
+    
+    @Test
+    public void testLeakReported() throws Exception {
+        ConnectionProvider provider = provider(1, 1);
+        PrintStream err = System.err;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(output));
+        try (Connection held = provider.getReadConnection()) {
+            Thread.sleep(20);
+            assertEquals(1, provider.detectLeaks(), "Connection held past the threshold should be reported");
+            assertEquals(0, provider.detectLeaks(), "Leak should only be reported once");
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(output.toString().contains("Possible connection leak"), "Leak should be printed");
+        assertTrue(output.toString().contains("Connection borrowed here"), "Where it was borrowed should be printed");
+        assertEquals(0, provider.detectLeaks(), "Returned connection should not be reported");
+    }
+    
+    @Test
+    public void testNoLeaksReportedWhenDisabled() throws Exception {
+        ConnectionProvider provider = provider(1, 0);
+        try (Connection held = provider.getReadConnection()) {
+            Thread.sleep(20);
+            assertEquals(0, provider.detectLeaks(), "Nothing should be reported with leak detection off");
+            assertEquals(1, provider.getActiveConnectionCount(), "Borrowed connection should still be counted");
+        }
+        assertEquals(0, provider.getActiveConnectionCount(), "Returned connection should not be counted");
+    }
+    
+    private static String queryPragma(Connection conn, String name) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+    
+    @Test
+    public void testStorageModeAppliedToOpenWriter() throws Exception {
+        ConnectionProvider provider = provider(1, 0);
+        try (Connection conn = provider.getWriteConnection()) {
+            assertEquals("delete", queryPragma(conn, "journal_mode"), "Database should start in rollback journal mode");
+        }
+        
+        // Writer is already open when the mode is set
+        provider.setStorageMode(StorageMode.WAL);
+        
+        assertEquals(StorageMode.WAL, provider.getStorageMode());
+        try (Connection conn = provider.getWriteConnection()) {
+            assertEquals("wal", queryPragma(conn, "journal_mode"), "Open writer should be switched to WAL");
+            assertEquals("1", queryPragma(conn, "synchronous"), "Open writer should use synchronous NORMAL");
+        }
+        try (Connection conn = provider.getReadConnection()) {
+            assertEquals("wal", queryPragma(conn, "journal_mode"), "Readers should follow the database file");
+        }
+    }
+    
+    @Test
+    public void testCheckpointPolicyAppliedToOpenWriter() throws Exception {
+        ConnectionProvider provider = provider(1, 0);
+        assertThrows(IllegalStateException.class,
+            () -> provider.startCheckpoints(CheckpointPolicy.defaults()), "Checkpoints need WAL mode");
+        
+        provider.setStorageMode(StorageMode.WAL);
+        provider.warmUp();
+        provider.startCheckpoints(new CheckpointPolicy(60_000, CheckpointPolicy.Mode.PASSIVE, 1234));
+        
+        try (Connection conn = provider.getWriteConnection()) {
+            assertEquals("1234", queryPragma(conn, "wal_autocheckpoint"), "Open writer should get the new threshold");
+        }
+    }
+    
+    @Test
+    public void testCheckpoint() throws Exception {
+        ConnectionProvider provider = provider(1, 0);
+        provider.setStorageMode(StorageMode.WAL);
+        try (Connection conn = provider.getWriteConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE Item (name TEXT)");
+            stmt.executeUpdate("INSERT INTO Item (name) VALUES ('first')");
+        }
+        
+        try (Connection reader = provider.getReadConnection();
+             Statement readStmt = reader.createStatement()) {
+            // Reader holds on to the state before the next insert
+            reader.setAutoCommit(false);
+            readStmt.executeQuery("SELECT COUNT(*) FROM Item").close();
+            try (Connection conn = provider.getWriteConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO Item (name) VALUES ('second')");
+            }
+            assertFalse(provider.checkpoint(CheckpointPolicy.Mode.PASSIVE),
+                "Log written after the reader started can't be checkpointed yet");
+        }
+        
+        assertTrue(provider.checkpoint(CheckpointPolicy.Mode.TRUNCATE), "Whole log should be checkpointed");
+        assertEquals(0, Files.size(tempDir.resolve("test.db-wal")), "Truncate should empty the log file");
+    }
+}
@@ -0,0 +1,59 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatabaseInitializerTest {
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    public void testInitializeKeepsExistingData() throws Exception {
+        String dbPath = tempDir.resolve("test.db").toString();
+        DatabaseInitializer.initialize(dbPath, "db");
+        long customers = count(dbPath, "Customer");
+        long seats = count(dbPath, "Seat");
+        assertTrue(customers > 0, "Test data should be loaded into a new database");
+        
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO Customer (customerId, name, email) VALUES ('9999999999', 'Nýr', 'nyr@hi.is')");
+        }
+        
+        DatabaseInitializer.initialize(dbPath, "db");
+        
+        assertEquals(customers + 1, count(dbPath, "Customer"), "Existing data should be kept and not loaded twice");
+        assertEquals(seats, count(dbPath, "Seat"));
+    }
+    
+    @Test
+    public void testRecreateStartsOver() throws Exception {
+        String dbPath = tempDir.resolve("test.db").toString();
+        DatabaseInitializer.initialize(dbPath, "db");
+        long customers = count(dbPath, "Customer");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO Customer (customerId, name, email) VALUES ('9999999999', 'Nýr', 'nyr@hi.is')");
+        }
+        
+        DatabaseInitializer.recreate(dbPath, "db");
+        
+        assertEquals(customers, count(dbPath, "Customer"));
+    }
+    
+    private long count(String dbPath, String table) throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightDBTest {
+    private static final String[] AIRPORTS = { "KEF", "JFK", "LHR", "CPH" };
+    
+    @TempDir
+    Path tempDir;
+    
+    private ConnectionProvider connectionProvider;
+    private FlightDB flightDB;
+    private List<Flight> flights;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("test.db");
+        flights = new ArrayList<>();
+        Random random = new Random(7);
+        LocalDateTime start = LocalDateTime.parse("2020-11-01T00:00");
+        // Distinct departures, flights leaving at the same time may come back in any order
+        List<Integer> minutes = new ArrayList<>();
+        for (int minute = 0; minute < 14 * 24 * 60; minute += 7) {
+            minutes.add(minute);
+        }
+        Collections.shuffle(minutes, random);
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime departure = start.plusMinutes(minutes.get(i));
+            flights.add(new Flight("F" + i, AIRPORTS[random.nextInt(AIRPORTS.length)],
+                AIRPORTS[random.nextInt(AIRPORTS.length)], departure, departure.plusHours(2)));
+        }
+        
+        try (Connection conn = DriverManager.getConnection(url)) {
+            new MigrationRunner(conn).migrate();
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO Flight (flightNumber, origin, destination, departureTime, arrivalTime) VALUES (?, ?, ?, ?, ?)")) {
+                for (Flight flight : flights) {
+                    pstmt.setString(1, flight.getFlightNumber());
+                    pstmt.setString(2, flight.getOrigin());
+                    pstmt.setString(3, flight.getDestination());
+                    pstmt.setLong(4, Timestamps.toEpochSecond(flight.getDepartureTime()));
+                    pstmt.setLong(5, Timestamps.toEpochSecond(flight.getArrivalTime()));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+        connectionProvider = new ConnectionProvider(url);
+        flightDB = new FlightDB(connectionProvider);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        connectionProvider.shutdown();
+    }
+    
+    // Expected result of a range search, worked out the slow way
+    private List<String> expected(String origin, String destination, DepartureRange range, int limit) {
+        return flights.stream()
+            .filter(f -> origin == null || f.getOrigin().equals(origin))
+            .filter(f -> destination == null || f.getDestination().equals(destination))
+            .filter(f -> range.contains(f.getDepartureTime()))
+            .sorted((a, b) -> a.getDepartureTime().compareTo(b.getDepartureTime()))
+            .limit(limit)
+            .map(Flight::getFlightNumber)
+            .toList();
+    }
+    
+    private static List<String> flightNumbers(List<Flight> flights) {
+        return flights.stream().map(Flight::getFlightNumber).toList();
+    }
+    
+    @Test
+    public void testSearchFlightsInRange() {
+        FlightSearchIndex index = new FlightSearchIndex(flights);
+        List<DepartureRange> ranges = List.of(
+            DepartureRange.around(LocalDate.parse("2020-11-07"), 3),
+            DepartureRange.onDay(LocalDate.parse("2020-11-02")).withTimeOfDay(LocalTime.of(6, 0), LocalTime.of(10, 0)),
+            DepartureRange.anyDate().withTimeOfDay(LocalTime.of(22, 0), LocalTime.of(2, 0)));
+        String[] origins = { null, "KEF" };
+        String[] destinations = { null, "JFK" };
+        
+        for (DepartureRange range : ranges) {
+            for (String origin : origins) {
+                for (String destination : destinations) {
+                    for (int limit : new int[] { 5, 1000 }) {
+                        List<String> expected = expected(origin, destination, range, limit);
+                        assertEquals(expected, flightNumbers(flightDB.searchFlights(origin, destination, range, limit)),
+                            "Database search should match for " + origin + " " + destination + " " + limit);
+                        assertEquals(expected, flightNumbers(index.search(origin, destination, range, limit)),
+                            "Index search should match for " + origin + " " + destination + " " + limit);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testStreamFlightsStopsAtLimit() {
+        List<Flight> streamed = new ArrayList<>();
+        flightDB.streamFlights("KEF", null, DepartureRange.anyDate(), 3, streamed::add);
+        
+        assertEquals(expected("KEF", null, DepartureRange.anyDate(), 3), flightNumbers(streamed),
+            "The three earliest flights from KEF should be streamed");
+        assertThrows(IllegalArgumentException.class,
+            () -> flightDB.searchFlights(null, null, DepartureRange.anyDate(), 0));
+    }
+    
+    @Test
+    public void testInvalidRanges() {
+        LocalDateTime time = LocalDateTime.parse("2020-11-01T12:00");
+        
+        assertThrows(IllegalArgumentException.class, () -> DepartureRange.between(time, time));
+        assertThrows(IllegalArgumentException.class, () -> DepartureRange.around(time.toLocalDate(), -1));
+        assertThrows(IllegalArgumentException.class,
+            () -> DepartureRange.anyDate().withTimeOfDay(LocalTime.NOON, LocalTime.NOON));
+        assertThrows(IllegalArgumentException.class,
+            () -> DepartureRange.anyDate().withTimeOfDay(LocalTime.NOON, null));
+    }
+}
@@ -0,0 +1,131 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightSearchIndexTest {
+    private static final String[] AIRPORTS = { "KEF", "JFK", "LHR", "CPH", "AMS" };
+
+    private List<Flight> flights;
+    private FlightSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        flights = new ArrayList<>();
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.parse("2020-11-01T00:00");
+        for (int i = 0; i < 500; i++) {
+            String origin = AIRPORTS[random.nextInt(AIRPORTS.length)];
+            String destination = AIRPORTS[random.nextInt(AIRPORTS.length)];
+            LocalDateTime departure = start.plusMinutes(random.nextInt(10 * 24 * 60));
+            flights.add(new Flight("FI" + i, origin, destination, departure, departure.plusHours(3)));
+        }
+        index = new FlightSearchIndex(flights);
+    }
+
+    // Expected result of a search, worked out the slow way
+    private List<String> expected(String origin, String destination, LocalDateTime date) {
+        return flights.stream()
+            .filter(f -> origin == null || f.getOrigin().equals(origin))
+            .filter(f -> destination == null || f.getDestination().equals(destination))
+            .filter(f -> date == null || f.getDepartureTime().toLocalDate().equals(date.toLocalDate()))
+            .sorted((a, b) -> a.getDepartureTime().equals(b.getDepartureTime())
+                ? a.getFlightNumber().compareTo(b.getFlightNumber())
+                : a.getDepartureTime().compareTo(b.getDepartureTime()))
+            .map(Flight::getFlightNumber)
+            .toList();
+    }
+
+    private static List<String> flightNumbers(List<Flight> flights) {
+        return flights.stream().map(Flight::getFlightNumber).toList();
+    }
+
+    private void assertSearchesMatch() {
+        List<String> origins = new ArrayList<>(List.of(AIRPORTS));
+        origins.add(null);
+        List<LocalDateTime> dates = new ArrayList<>();
+        dates.add(null);
+        dates.add(LocalDateTime.parse("2020-11-03T15:00"));
+        dates.add(LocalDateTime.parse("2020-12-01T00:00"));
+
+        for (String origin : origins) {
+            for (String destination : origins) {
+                for (LocalDateTime date : dates) {
+                    assertEquals(expected(origin, destination, date),
+                        flightNumbers(index.search(origin, destination, date)),
+                        "Search " + origin + " " + destination + " " + date + " should match");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSearchCombinations() {
+        assertSearchesMatch();
+        assertTrue(index.search("XXX", null, null).isEmpty(), "Unknown origin should match nothing");
+        assertEquals(List.of("AMS", "CPH", "JFK", "KEF", "LHR"), index.getOrigins(), "Origins should be sorted");
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        Flight moved = flights.get(7);
+        moved.setOrigin("CPH");
+        moved.setDepartureTime(moved.getDepartureTime().plusDays(2));
+        index.put(moved);
+
+        Flight added = new Flight("FI999", "KEF", "OSL",
+            LocalDateTime.parse("2020-11-03T09:00"), LocalDateTime.parse("2020-11-03T11:00"));
+        flights.add(added);
+        index.put(added);
+
+        Flight removed = flights.remove(20);
+        assertTrue(index.remove(removed.getFlightNumber()), "Flight should be removed");
+        assertFalse(index.remove(removed.getFlightNumber()), "Flight should only be removed once");
+
+        assertEquals(flights.size(), index.size(), "Index should have one entry per flight");
+        assertSearchesMatch();
+        assertEquals(List.of("FI999"), flightNumbers(index.search(null, "OSL", null)), "New destination should be found");
+    }
+
+    @Test
+    public void testIndexKeepsItsOwnCopies() {
+        Flight flight = flights.get(0);
+        String origin = flight.getOrigin();
+        flight.setOrigin("OSL");
+        index.get(flight.getFlightNumber()).setOrigin("OSL");
+
+        assertEquals(origin, index.get(flight.getFlightNumber()).getOrigin(), "Changing a flight should not change the index");
+        assertTrue(index.search("OSL", null, null).isEmpty(), "No flight should leave OSL");
+    }
+
+    @Test
+    public void testAirportLists() {
+        for (String origin : AIRPORTS) {
+            List<String> expected = flights.stream()
+                .filter(f -> f.getOrigin().equals(origin))
+                .map(Flight::getDestination)
+                .distinct()
+                .sorted()
+                .toList();
+            assertEquals(expected, index.getDestinationsFrom(origin), "Destinations from " + origin + " should match");
+        }
+        assertTrue(index.getDestinationsFrom("OSL").isEmpty(), "Unknown origin should have no destinations");
+
+        index.put(new Flight("FI999", "OSL", "KEF",
+            LocalDateTime.parse("2020-11-03T09:00"), LocalDateTime.parse("2020-11-03T11:00")));
+        assertEquals(List.of("KEF"), index.getDestinationsFrom("OSL"), "New route should be added");
+        assertTrue(index.getOriginsTo("KEF").contains("OSL"), "New route should be reachable backwards");
+        assertTrue(index.getOrigins().contains("OSL"), "New origin should be listed");
+
+        index.remove("FI999");
+        assertFalse(index.getOrigins().contains("OSL"), "Origin without flights should be dropped");
+        assertFalse(index.getOriginsTo("KEF").contains("OSL"), "Removed route should be dropped");
+    }
+}
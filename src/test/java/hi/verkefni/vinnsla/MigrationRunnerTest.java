@@ -0,0 +1,129 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MigrationRunnerTest {
+    @TempDir
+    Path tempDir;
+    
+    private Connection conn;
+    private MigrationRunner runner;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("test.db"));
+        runner = new MigrationRunner(conn);
+    }
+    
+    @AfterEach
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+    
+    @Test
+    public void testMigrateNewDatabase() throws Exception {
+        assertEquals(0, runner.getCurrentVersion(), "New database should be at version 0");
+        
+        int applied = runner.migrate();
+        
+        assertEquals(runner.getLatestVersion(), applied, "All migrations should be applied");
+        assertEquals(runner.getLatestVersion(), runner.getCurrentVersion(), "Database should be at the latest version");
+        assertFalse(runner.hasPendingMigrations(), "No migrations should be pending");
+    }
+    
+    @Test
+    public void testMigrateIsIncremental() throws Exception {
+        runner.migrate();
+        
+        assertEquals(0, runner.migrate(), "Second run should apply nothing");
+    }
+    
+    @Test
+    public void testTimestampsConvertedToEpochSeconds() throws Exception {
+        // Text timestamps as stored before V3
+        runner.migrateTo(2);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO Flight (flightNumber, origin, destination, departureTime, arrivalTime) " +
+                         "VALUES ('FI101', 'KEF', 'JFK', '2020-11-01 12:00:00', '2020-11-01 18:00:00')");
+        }
+        
+        runner.migrate();
+        
+        try (Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery(
+                "SELECT departureTime, typeof(departureTime) FROM Flight WHERE flightNumber = 'FI101'");
+            assertTrue(rs.next());
+            assertEquals("integer", rs.getString(2), "Departure time should be stored as an integer");
+            assertEquals(LocalDateTime.of(2020, 11, 1, 12, 0), Timestamps.fromEpochSecond(rs.getLong(1)),
+                         "Departure time should be unchanged");
+        }
+    }
+    
+    @Test
+    public void testHotQueriesUseIndexes() throws Exception {
+        runner.migrate();
+        
+        QueryPlan search = QueryPlan.explain(conn,
+            "SELECT flightNumber, origin, destination, departureTime, arrivalTime FROM Flight " +
+            "WHERE 1=1 AND origin = ? AND destination = ? AND departureTime >= ? AND departureTime < ? " +
+            "ORDER BY departureTime", "KEF", "JFK", 1604188800L, 1604275200L);
+        assertTrue(search.usesIndex("idx_flight_route"), search.toString());
+        
+        QueryPlan byDate = QueryPlan.explain(conn,
+            "SELECT flightNumber, origin, destination, departureTime, arrivalTime FROM Flight " +
+            "WHERE 1=1 AND departureTime >= ? AND departureTime < ? ORDER BY departureTime",
+            1604188800L, 1604275200L);
+        assertTrue(byDate.usesIndex("idx_flight_departure"), byDate.toString());
+        
+        // A range search from one origin reads the flights in departure order and stops at the limit
+        QueryPlan range = QueryPlan.explain(conn,
+            "SELECT flightNumber, origin, destination, departureTime, arrivalTime FROM Flight " +
+            "WHERE departureTime >= ? AND departureTime < ? AND origin = ? " +
+            "AND (departureTime % 86400 >= ? AND departureTime % 86400 < ?) ORDER BY departureTime LIMIT ?",
+            1604188800L, 1604793600L, "KEF", 21600, 36000, 500);
+        assertTrue(range.usesIndex("idx_flight_origin"), range.toString());
+        assertFalse(range.toString().contains("TEMP B-TREE"), range.toString());
+        
+        QueryPlan bookings = QueryPlan.explain(conn,
+            "SELECT bookingId, bookingDate, status, customerId, flightNumber, seatNumber, version " +
+            "FROM Booking WHERE customerId = ?", "2404012070");
+        assertTrue(bookings.usesIndex("idx_booking_customer"), bookings.toString());
+        assertFalse(bookings.scansTable("Booking"), bookings.toString());
+        
+        QueryPlan summaries = QueryPlan.explain(conn,
+            "SELECT b.bookingId, b.bookingDate, b.status, b.customerId, b.flightNumber, b.seatNumber, b.version, " +
+            "f.origin, f.destination, f.departureTime " +
+            "FROM Booking b LEFT JOIN Flight f ON f.flightNumber = b.flightNumber " +
+            "WHERE b.customerId = ?", "2404012070");
+        assertTrue(summaries.usesIndex("idx_booking_customer"), summaries.toString());
+        // Tables are named by their alias in the plan
+        assertFalse(summaries.scansTable("b"), summaries.toString());
+        assertFalse(summaries.scansTable("f"), summaries.toString());
+        
+        // A later page continues in the index and needs no sorting
+        QueryPlan page = QueryPlan.explain(conn,
+            "SELECT b.bookingId, b.bookingDate, b.status, b.customerId, b.flightNumber, b.seatNumber, b.version, " +
+            "f.origin, f.destination, f.departureTime " +
+            "FROM Booking b LEFT JOIN Flight f ON f.flightNumber = b.flightNumber " +
+            "WHERE b.customerId = ? AND (b.bookingDate, b.bookingId) < (?, ?) " +
+            "ORDER BY b.bookingDate DESC, b.bookingId DESC LIMIT ?", "2404012070", 1604232000L, "B100", 50);
+        assertTrue(page.usesIndex("idx_booking_customer"), page.toString());
+        assertFalse(page.toString().contains("TEMP B-TREE"), page.toString());
+        
+        QueryPlan seats = QueryPlan.explain(conn,
+            "SELECT seatNumber, seatStatus FROM Seat WHERE flightNumber = ? AND seatStatus = 0", "FI101");
+        assertTrue(seats.usesIndex("idx_seat_flight_status"), seats.toString());
+    }
+}
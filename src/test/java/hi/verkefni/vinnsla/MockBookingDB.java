@@ -1,6 +1,7 @@
 package hi.verkefni.vinnsla;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,10 +14,17 @@ public class MockBookingDB extends BookingDB {
     // Track method calls for verification in tests
     private int selectByIdCalls = 0;
     private int selectByCustomerIdCalls = 0;
+    private int selectSummariesByCustomerIdCalls = 0;
     private int insertCalls = 0;
+    private int insertAllCalls = 0;
     private int updateCalls = 0;
     private int deleteCalls = 0;
     private int getAvailableSeatsCalls = 0;  // This field needs to be accessed
+    private int getSeatsCalls = 0;
+    // Number of coming updates that find the booking changed by another agent first
+    private int concurrentChanges = 0;
+    // Number of coming writes that fail like a database error, saving nothing
+    private int writeFailures = 0;
     
     public MockBookingDB() {
         // Initialize with some test flights and seats
@@ -41,10 +49,28 @@ public class MockBookingDB extends BookingDB {
         }
     }
     
+    // Routes of the test flights, as in db/insert.sql
+    private static final Map<String, String[]> ROUTES = Map.of(
+        "FI101", new String[] {"KEF", "JFK"},
+        "FI102", new String[] {"JFK", "KEF"},
+        "FI103", new String[] {"KEF", "LHR"}
+    );
+    
     @Override
     public Booking selectById(String bookingId) {
         selectByIdCalls++;
-        return bookings.get(bookingId);
+        return copy(bookings.get(bookingId));
+    }
+    
+    // Hands out copies like a real database, so changing a booking doesn't change the stored one
+    private static Booking copy(Booking booking) {
+        if (booking == null) {
+            return null;
+        }
+        Booking copy = new Booking(booking.getBookingId(), booking.getBookingDate(), booking.getStatus(),
+                                   booking.getCustomerId(), booking.getFlightNumber(), booking.getSeatNumber());
+        copy.setVersion(booking.getVersion());
+        return copy;
     }
     
     @Override
@@ -56,9 +82,45 @@ public class MockBookingDB extends BookingDB {
     }
     
     @Override
-    public void insert(Booking booking) {
+    public List<BookingSummary> selectSummariesByCustomerId(String customerId) {
+        selectSummariesByCustomerIdCalls++;
+        List<BookingSummary> summaries = new ArrayList<>();
+        for (Booking booking : bookings.values()) {
+            if (booking.getCustomerId().equals(customerId)) {
+                String[] route = ROUTES.get(booking.getFlightNumber());
+                summaries.add(new BookingSummary(booking,
+                    route != null ? route[0] : null,
+                    route != null ? route[1] : null,
+                    null));
+            }
+        }
+        return summaries;
+    }
+    
+    @Override
+    public List<BookingSummary> selectSummaryPage(String customerId, BookingSummary after, int limit) {
+        // Newest first, continuing after the given booking
+        Comparator<BookingSummary> newestFirst = Comparator
+            .comparing((BookingSummary summary) -> summary.getBooking().getBookingDate())
+            .thenComparing(summary -> summary.getBooking().getBookingId())
+            .reversed();
+        return selectSummariesByCustomerId(customerId).stream()
+            .sorted(newestFirst)
+            .filter(summary -> after == null || newestFirst.compare(summary, after) > 0)
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+    
+    @Override
+    public boolean insert(Booking booking) {
         insertCalls++;
-        bookings.put(booking.getBookingId(), booking);
+        if (failWrite()) {
+            return false;
+        }
+        if (isSeatBooked(booking.getFlightNumber(), booking.getSeatNumber())) {
+            throw new SeatConflictException(booking.getFlightNumber(), booking.getSeatNumber());
+        }
+        bookings.put(booking.getBookingId(), copy(booking));
         
         // Mark seat as booked
         if (flightSeats.containsKey(booking.getFlightNumber())) {
@@ -71,22 +133,60 @@ public class MockBookingDB extends BookingDB {
                                  " on flight " + booking.getFlightNumber() + " as booked");
             }
         }
+        logEvents(List.of(BookingEvent.created(booking)));
+        return true;
+    }
+    
+    @Override
+    public boolean insertAll(List<Booking> newBookings) {
+        insertAllCalls++;
+        if (failWrite()) {
+            return false;
+        }
+        
+        // Nothing is saved if any seat is taken, as in the real transaction
+        for (Booking booking : newBookings) {
+            if (isSeatBooked(booking.getFlightNumber(), booking.getSeatNumber())) {
+                throw new SeatConflictException(booking.getFlightNumber(), booking.getSeatNumber());
+            }
+        }
+        for (Booking booking : newBookings) {
+            bookings.put(booking.getBookingId(), copy(booking));
+            Map<String, Seat> seats = flightSeats.get(booking.getFlightNumber());
+            if (seats != null && seats.containsKey(booking.getSeatNumber())) {
+                seats.get(booking.getSeatNumber()).setBooked(true);
+            }
+        }
+        logEvents(newBookings.stream().map(BookingEvent::created).toList());
+        return true;
     }
     
     @Override
-    public void update(Booking booking) {
+    public boolean update(Booking booking) {
         updateCalls++;
         
-        if (!bookings.containsKey(booking.getBookingId())) {
-            return;
+        if (!bookings.containsKey(booking.getBookingId()) || failWrite()) {
+            return false;
         }
         
         Booking oldBooking = bookings.get(booking.getBookingId());
+        if (concurrentChanges > 0) {
+            concurrentChanges--;
+            oldBooking.setVersion(oldBooking.getVersion() + 1);
+        }
+        if (oldBooking.getVersion() != booking.getVersion()) {
+            throw new BookingChangedException(booking.getBookingId());
+        }
         
         // If seat has changed, free the old one and book the new one
         if (!oldBooking.getSeatNumber().equals(booking.getSeatNumber()) ||
             !oldBooking.getFlightNumber().equals(booking.getFlightNumber())) {
             
+            // Nothing is changed if the new seat is taken
+            if (isSeatBooked(booking.getFlightNumber(), booking.getSeatNumber())) {
+                throw new SeatConflictException(booking.getFlightNumber(), booking.getSeatNumber());
+            }
+            
             // Free old seat
             if (flightSeats.containsKey(oldBooking.getFlightNumber())) {
                 Seat oldSeat = flightSeats.get(oldBooking.getFlightNumber()).get(oldBooking.getSeatNumber());
@@ -104,12 +204,23 @@ public class MockBookingDB extends BookingDB {
             }
         }
         
-        bookings.put(booking.getBookingId(), booking);
+        booking.setVersion(booking.getVersion() + 1);
+        bookings.put(booking.getBookingId(), copy(booking));
+        logEvents(updateEvents(oldBooking, copy(booking)));
+        return true;
+    }
+    
+    @Override
+    public int attachEventStore(BookingEventStore store) {
+        return attach(store, new ArrayList<>(bookings.values()));
     }
     
     @Override
-    public void delete(String bookingId) {
+    public boolean delete(String bookingId) {
         deleteCalls++;
+        if (failWrite()) {
+            return false;
+        }
         
         Booking booking = bookings.get(bookingId);
         if (booking != null) {
@@ -122,7 +233,9 @@ public class MockBookingDB extends BookingDB {
             }
             
             bookings.remove(bookingId);
+            logEvents(List.of(BookingEvent.deleted(booking)));
         }
+        return true;
     }
     
     @Override
@@ -145,6 +258,64 @@ public class MockBookingDB extends BookingDB {
         return availableSeats;
     }
     
+    @Override
+    public List<Seat> getSeats(String flightNumber) {
+        getSeatsCalls++;
+        
+        List<Seat> seats = new ArrayList<>();
+        if (flightSeats.containsKey(flightNumber)) {
+            for (Seat seat : flightSeats.get(flightNumber).values()) {
+                seats.add(new Seat(seat.getSeatNumber(), seat.isBooked(), flightNumber));
+            }
+        }
+        return seats;
+    }
+    
+    @Override
+    public List<Seat> getAllSeats() {
+        List<Seat> seats = new ArrayList<>();
+        for (String flightNumber : flightSeats.keySet()) {
+            seats.addAll(getSeats(flightNumber));
+        }
+        return seats;
+    }
+    
+    private boolean isSeatBooked(String flightNumber, String seatNumber) {
+        Map<String, Seat> seats = flightSeats.get(flightNumber);
+        return seats != null && seats.containsKey(seatNumber) && seats.get(seatNumber).isBooked();
+    }
+    
+    // Adds free seats to a flight, like a schedule import
+    public void addSeats(String flightNumber, String... seatNumbers) {
+        Map<String, Seat> seats = flightSeats.computeIfAbsent(flightNumber, k -> new HashMap<>());
+        for (String seatNumber : seatNumbers) {
+            seats.put(seatNumber, new Seat(seatNumber, false, flightNumber));
+        }
+    }
+    
+    // Marks a seat as booked without a booking, like another application booking it
+    public void markSeatBooked(String flightNumber, String seatNumber) {
+        flightSeats.get(flightNumber).get(seatNumber).setBooked(true);
+    }
+    
+    // Makes the next updates find their booking changed by another agent since it was read
+    public void simulateConcurrentChanges(int count) {
+        concurrentChanges = count;
+    }
+    
+    // Makes the next writes fail as if the database couldn't save them
+    public void simulateWriteFailures(int count) {
+        writeFailures = count;
+    }
+    
+    private boolean failWrite() {
+        if (writeFailures > 0) {
+            writeFailures--;
+            return true;
+        }
+        return false;
+    }
+    
     // Methods to help with test verification
     public int getSelectByIdCalls() {
         return selectByIdCalls;
@@ -154,10 +325,18 @@ public class MockBookingDB extends BookingDB {
         return selectByCustomerIdCalls;
     }
     
+    public int getSelectSummariesByCustomerIdCalls() {
+        return selectSummariesByCustomerIdCalls;
+    }
+    
     public int getInsertCalls() {
         return insertCalls;
     }
     
+    public int getInsertAllCalls() {
+        return insertAllCalls;
+    }
+    
     public int getUpdateCalls() {
         return updateCalls;
     }
@@ -170,6 +349,10 @@ public class MockBookingDB extends BookingDB {
         return getAvailableSeatsCalls;
     }
     
+    public int getGetSeatsCalls() {
+        return getSeatsCalls;
+    }
+    
     // Add this method to reset the counter
     public void resetGetAvailableSeatsCalls() {
         this.getAvailableSeatsCalls = 0;
@@ -187,10 +370,15 @@ public class MockBookingDB extends BookingDB {
         
         selectByIdCalls = 0;
         selectByCustomerIdCalls = 0;
+        selectSummariesByCustomerIdCalls = 0;
         insertCalls = 0;
+        insertAllCalls = 0;
         updateCalls = 0;
         deleteCalls = 0;
         getAvailableSeatsCalls = 0;
+        getSeatsCalls = 0;
+        concurrentChanges = 0;
+        writeFailures = 0;
     }
     
     public int getBookingCount() {
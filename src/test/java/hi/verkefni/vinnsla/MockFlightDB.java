@@ -15,6 +15,7 @@ public class MockFlightDB extends FlightDB {
     private int selectByFlightNumberCalls = 0;
     private int searchFlightsCalls = 0;
     private int getAllFlightsCalls = 0;
+    private int updateCalls = 0;
     
     public MockFlightDB() {
         // Initialize with some test flights
@@ -47,6 +48,12 @@ public class MockFlightDB extends FlightDB {
         return flights.get(flightNumber);
     }
     
+    @Override
+    public void update(Flight flight) {
+        updateCalls++;
+        flights.put(flight.getFlightNumber(), flight);
+    }
+    
     @Override
     public List<Flight> searchFlights(String origin, String destination, LocalDateTime date) {
         searchFlightsCalls++;
@@ -76,11 +83,16 @@ public class MockFlightDB extends FlightDB {
         return getAllFlightsCalls;
     }
     
+    public int getUpdateCalls() {
+        return updateCalls;
+    }
+    
     public void reset() {
         flights.clear();
         selectByFlightNumberCalls = 0;
         searchFlightsCalls = 0;
         getAllFlightsCalls = 0;
+        updateCalls = 0;
     }
     
     public int getFlightCount() {
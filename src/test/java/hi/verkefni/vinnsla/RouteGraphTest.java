@@ -0,0 +1,110 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteGraphTest {
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private List<Flight> flights;
+
+    @BeforeEach
+    public void setUp() {
+        flights = new ArrayList<>();
+        flights.add(flight("FI201", "KEF", "JFK", "2020-11-01T08:00", "2020-11-01T14:00"));
+        flights.add(flight("FI202", "JFK", "LAX", "2020-11-01T14:30", "2020-11-01T20:00"));
+        flights.add(flight("FI203", "JFK", "LAX", "2020-11-01T16:00", "2020-11-01T22:00"));
+        flights.add(flight("FI204", "KEF", "LHR", "2020-11-01T07:00", "2020-11-01T10:00"));
+        flights.add(flight("FI205", "LHR", "LAX", "2020-11-01T12:00", "2020-11-01T23:00"));
+        flights.add(flight("FI206", "KEF", "LAX", "2020-11-02T09:00", "2020-11-02T17:00"));
+    }
+
+    private static Flight flight(String number, String origin, String destination, String departure, String arrival) {
+        return new Flight(number, origin, destination, LocalDateTime.parse(departure), LocalDateTime.parse(arrival));
+    }
+
+    private static List<String> flightNumbers(Itinerary itinerary) {
+        return itinerary.getLegs().stream().map(Flight::getFlightNumber).toList();
+    }
+
+    @Test
+    public void testEarliestArrivalWithConnection() {
+        RouteGraph graph = new RouteGraph(flights, 0);
+        Itinerary itinerary = graph.findEarliestArrival("KEF", "LAX", LocalDateTime.parse("2020-11-01T00:00"));
+
+        assertNotNull(itinerary, "LAX should be reachable from KEF");
+        assertEquals(List.of("FI201", "FI202"), flightNumbers(itinerary), "Should connect at JFK to the first LAX flight");
+        assertEquals(1, itinerary.getStops(), "Trip should have one stop");
+        assertEquals(LocalDateTime.parse("2020-11-01T20:00"), itinerary.getArrivalTime(), "Arrival should match");
+    }
+
+    @Test
+    public void testMinimumConnectionTime() {
+        RouteGraph graph = new RouteGraph(flights, HOUR);
+        Itinerary itinerary = graph.findEarliestArrival("KEF", "LAX", LocalDateTime.parse("2020-11-01T00:00"));
+
+        assertEquals(List.of("FI201", "FI203"), flightNumbers(itinerary), "30 minutes at JFK should be too short");
+    }
+
+    @Test
+    public void testDepartAfter() {
+        RouteGraph graph = new RouteGraph(flights, HOUR);
+        Itinerary itinerary = graph.findEarliestArrival("KEF", "LAX", LocalDateTime.parse("2020-11-01T09:00"));
+
+        assertEquals(List.of("FI206"), flightNumbers(itinerary), "Only the direct flight the next day should be left");
+        assertEquals(0, itinerary.getStops(), "Direct flight should have no stops");
+    }
+
+    @Test
+    public void testUnreachable() {
+        RouteGraph graph = new RouteGraph(flights, 0);
+
+        assertNull(graph.findEarliestArrival("LAX", "KEF", LocalDateTime.parse("2020-11-01T00:00")),
+            "There are no flights out of LAX");
+        assertNull(graph.findEarliestArrival("KEF", "CDG", LocalDateTime.parse("2020-11-01T00:00")),
+            "Unknown airport should not be reachable");
+        assertTrue(graph.findItineraries("KEF", "CDG", LocalDateTime.parse("2020-11-01T00:00"), 3, 3).isEmpty(),
+            "Unknown airport should have no trips");
+    }
+
+    @Test
+    public void testItinerariesInArrivalOrder() {
+        RouteGraph graph = new RouteGraph(flights, 0);
+        List<Itinerary> itineraries = graph.findItineraries("KEF", "LAX", LocalDateTime.parse("2020-11-01T00:00"), 10, 3);
+
+        assertEquals(4, itineraries.size(), "Should find every trip to LAX");
+        assertEquals(List.of("FI201", "FI202"), flightNumbers(itineraries.get(0)), "First trip should match");
+        assertEquals(List.of("FI201", "FI203"), flightNumbers(itineraries.get(1)), "Second trip should match");
+        assertEquals(List.of("FI204", "FI205"), flightNumbers(itineraries.get(2)), "Third trip should match");
+        assertEquals(List.of("FI206"), flightNumbers(itineraries.get(3)), "Fourth trip should match");
+    }
+
+    @Test
+    public void testItinerariesLimits() {
+        RouteGraph graph = new RouteGraph(flights, 0);
+        LocalDateTime start = LocalDateTime.parse("2020-11-01T00:00");
+
+        assertEquals(2, graph.findItineraries("KEF", "LAX", start, 2, 3).size(), "Should stop at two trips");
+        List<Itinerary> direct = graph.findItineraries("KEF", "LAX", start, 10, 1);
+        assertEquals(1, direct.size(), "Only one trip should be a direct flight");
+        assertEquals(List.of("FI206"), flightNumbers(direct.get(0)), "Direct flight should match");
+        assertThrows(IllegalArgumentException.class, () -> graph.findItineraries("KEF", "LAX", start, 0, 3));
+    }
+
+    @Test
+    public void testNoRepeatedAirports() {
+        flights.add(flight("FI207", "JFK", "KEF", "2020-11-01T15:00", "2020-11-01T21:00"));
+        flights.add(flight("FI208", "KEF", "LAX", "2020-11-01T22:00", "2020-11-02T06:00"));
+        RouteGraph graph = new RouteGraph(flights, 0);
+
+        for (Itinerary itinerary : graph.findItineraries("KEF", "LAX", LocalDateTime.parse("2020-11-01T00:00"), 10, 4)) {
+            assertFalse(flightNumbers(itinerary).contains("FI207"), "No trip should come back to KEF");
+        }
+    }
+}
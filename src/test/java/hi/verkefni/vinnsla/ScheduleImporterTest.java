@@ -0,0 +1,157 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScheduleImporterTest {
+    @TempDir
+    Path tempDir;
+    
+    private ConnectionProvider connectionProvider;
+    private ScheduleImporter importer;
+    private FlightDB flightDB;
+    private BookingDB bookingDB;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("test.db");
+        try (Connection conn = DriverManager.getConnection(url)) {
+            new MigrationRunner(conn).migrate();
+        }
+        connectionProvider = new ConnectionProvider(url);
+        importer = new ScheduleImporter(connectionProvider, 2);
+        flightDB = new FlightDB(connectionProvider);
+        bookingDB = new BookingDB(connectionProvider);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        connectionProvider.shutdown();
+    }
+    
+    @Test
+    public void testImportFlightsCsv() throws Exception {
+        Path feed = tempDir.resolve("flights.csv");
+        Files.writeString(feed,
+            "flightNumber,origin,destination,departureTime,arrivalTime\n" +
+            "FI101,KEF,JFK,2025-05-01 12:00:00,2025-05-01 18:00:00\n" +
+            "FI102,JFK,KEF,2025-05-02T12:00,2025-05-02T18:00\n" +
+            "FI103,KEF,KEF,2025-05-03 12:00:00,2025-05-03 18:00:00\n" +
+            "FI104,KEF,LHR,not a time,2025-05-04 18:00:00\n" +
+            "FI105,KEF,CPH,1746446400,1746457200\n");
+        
+        ImportResult result = importer.importFlights(feed);
+        
+        assertEquals(5, result.getRowsRead());
+        assertEquals(3, result.getRowsWritten());
+        assertEquals(2, result.getRowsRejected());
+        assertEquals(2, result.getErrors().size());
+        assertTrue(result.getErrors().get(0).startsWith("Line 4"), "Errors should name the line");
+        
+        Flight flight = flightDB.selectByFlightNumber("FI102");
+        assertEquals(LocalDateTime.of(2025, 5, 2, 12, 0), flight.getDepartureTime());
+        assertEquals(LocalDateTime.of(2025, 5, 5, 12, 0), flightDB.selectByFlightNumber("FI105").getDepartureTime());
+    }
+    
+    @Test
+    public void testImportFlightsUpserts() throws Exception {
+        Path feed = tempDir.resolve("flights.jsonl");
+        Files.writeString(feed,
+            "{\"flightNumber\": \"FI101\", \"origin\": \"KEF\", \"destination\": \"JFK\", " +
+            "\"departureTime\": \"2025-05-01 12:00:00\", \"arrivalTime\": \"2025-05-01 18:00:00\"}\n");
+        importer.importFlights(feed);
+        
+        assertEquals(0, importer.importFlights(feed).getRowsWritten(), "Unchanged flights should not be written");
+        
+        Files.writeString(feed,
+            "{\"flightNumber\": \"FI101\", \"origin\": \"KEF\", \"destination\": \"JFK\", " +
+            "\"departureTime\": \"2025-05-01 14:00:00\", \"arrivalTime\": \"2025-05-01 20:00:00\"}\n");
+        assertEquals(1, importer.importFlights(feed).getRowsWritten());
+        assertEquals(LocalDateTime.of(2025, 5, 1, 14, 0), flightDB.selectByFlightNumber("FI101").getDepartureTime());
+    }
+    
+    @Test
+    public void testImportSeatsJsonArray() throws Exception {
+        Path flights = tempDir.resolve("flights.csv");
+        Files.writeString(flights,
+            "flightNumber,origin,destination,departureTime,arrivalTime\n" +
+            "FI101,KEF,JFK,2025-05-01 12:00:00,2025-05-01 18:00:00\n");
+        importer.importFlights(flights);
+        
+        Path seats = tempDir.resolve("seats.json");
+        Files.writeString(seats, "[\n" +
+            "  {\"seatNumber\": \"A1\", \"flightNumber\": \"FI101\", \"seatStatus\": 1},\n" +
+            "  {\"seatNumber\": \"A2\", \"flightNumber\": \"FI101\"},\n" +
+            "  {\"seatNumber\": \"A3\", \"flightNumber\": \"FI101\", \"seatStatus\": \"maybe\"},\n" +
+            "  {\"seatNumber\": \"A1\", \"flightNumber\": \"XX999\"}\n" +
+            "]\n");
+        
+        ImportResult result = importer.importSeats(seats);
+        
+        assertEquals(4, result.getRowsRead());
+        assertEquals(2, result.getRowsWritten(), "Seats of unknown flights should be skipped");
+        assertEquals(1, result.getRowsRejected());
+        
+        List<Seat> available = bookingDB.getAvailableSeats("FI101");
+        assertEquals(1, available.size());
+        assertEquals("A2", available.get(0).getSeatNumber());
+    }
+    
+    @Test
+    public void testListenerToldFlightsOfEachBatch() throws Exception {
+        List<Set<String>> batches = new ArrayList<>();
+        ScheduleImporter listening = new ScheduleImporter(connectionProvider, 2, batches::add);
+        Path feed = tempDir.resolve("flights.csv");
+        Files.writeString(feed,
+            "flightNumber,origin,destination,departureTime,arrivalTime\n" +
+            "FI101,KEF,JFK,2025-05-01 12:00:00,2025-05-01 18:00:00\n" +
+            "FI102,JFK,KEF,2025-05-02 12:00:00,2025-05-02 18:00:00\n" +
+            "FI103,KEF,KEF,2025-05-03 12:00:00,2025-05-03 18:00:00\n" +
+            "FI104,KEF,LHR,2025-05-04 12:00:00,2025-05-04 18:00:00\n");
+        
+        listening.importFlights(feed);
+        
+        assertEquals(List.of(Set.of("FI101", "FI102"), Set.of("FI104")), batches,
+            "Each committed batch should be reported with its flights, rejected rows left out");
+    }
+    
+    @Test
+    public void testImportedSeatsReachLoadedInventory() throws Exception {
+        SeatInventory seatInventory = new SeatInventory(bookingDB);
+        ScheduleImporter listening = new ScheduleImporter(connectionProvider, 2,
+            flightNumbers -> flightNumbers.forEach(seatInventory::invalidate));
+        Path flights = tempDir.resolve("flights.csv");
+        Files.writeString(flights,
+            "flightNumber,origin,destination,departureTime,arrivalTime\n" +
+            "FI101,KEF,JFK,2025-05-01 12:00:00,2025-05-01 18:00:00\n");
+        listening.importFlights(flights);
+        Path first = tempDir.resolve("first.csv");
+        Files.writeString(first, "seatNumber,flightNumber\nA1,FI101\n");
+        listening.importSeats(first);
+        assertTrue(seatInventory.hasSeat("FI101", "A1"));
+        
+        Path second = tempDir.resolve("second.csv");
+        Files.writeString(second, "seatNumber,flightNumber\nA2,FI101\n");
+        listening.importSeats(second);
+        
+        assertTrue(seatInventory.hasSeat("FI101", "A2"), "Seats imported after the flight was loaded should be found");
+    }
+    
+    @Test
+    public void testUnsupportedFeed() {
+        assertThrows(IllegalArgumentException.class, () -> importer.importFlights(tempDir.resolve("flights.xml")));
+    }
+}
@@ -0,0 +1,145 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeatInventoryTest {
+    private static final int THREADS = 8;
+    
+    private MockBookingDB mockBookingDB;
+    private SeatInventory inventory;
+    
+    @BeforeEach
+    public void setUp() {
+        mockBookingDB = new MockBookingDB();
+        inventory = new SeatInventory(mockBookingDB);
+    }
+    
+    // Runs the task on every thread at once and waits for all of them
+    private static <T> List<T> runTogether(Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testClaimAndRelease() {
+        assertTrue(inventory.claim("FI101", "A1"), "Free seat should be claimed");
+        assertFalse(inventory.claim("FI101", "A1"), "Taken seat should not be claimed again");
+        assertFalse(inventory.isAvailable("FI101", "A1"));
+        assertEquals(29, inventory.getAvailableCount("FI101"));
+        
+        assertTrue(inventory.release("FI101", "A1"), "Taken seat should be released");
+        assertFalse(inventory.release("FI101", "A1"), "Free seat should not be released again");
+        assertTrue(inventory.isAvailable("FI101", "A1"));
+        
+        assertFalse(inventory.claim("FI101", "Z99"), "Seat that doesn't exist can't be claimed");
+        assertFalse(inventory.hasSeat("FI101", "Z99"));
+    }
+    
+    @Test
+    public void testOneWinnerPerSeat() throws Exception {
+        // Every thread tries every seat, each seat must go to exactly one of them
+        List<String> seatNumbers = mockBookingDB.getSeats("FI101").stream().map(Seat::getSeatNumber).toList();
+        List<Integer> claimedCounts = runTogether(() -> {
+            int claimed = 0;
+            for (String seatNumber : seatNumbers) {
+                if (inventory.claim("FI101", seatNumber)) {
+                    claimed++;
+                }
+            }
+            return claimed;
+        });
+        
+        assertEquals(30, claimedCounts.stream().mapToInt(Integer::intValue).sum(), "Every seat should be claimed once");
+        assertEquals(0, inventory.getAvailableCount("FI101"), "No seat should be left");
+    }
+    
+    @Test
+    public void testConcurrentClaimAndRelease() throws Exception {
+        // Threads keep claiming and giving back seats that share the same words of bits
+        AtomicInteger overlaps = new AtomicInteger();
+        List<String> seatNumbers = mockBookingDB.getSeats("FI101").stream().map(Seat::getSeatNumber).toList();
+        runTogether(() -> {
+            for (int round = 0; round < 2000; round++) {
+                String seatNumber = seatNumbers.get(round % seatNumbers.size());
+                if (inventory.claim("FI101", seatNumber)) {
+                    // Nobody else may claim the seat while this thread holds it
+                    if (inventory.claim("FI101", seatNumber)) {
+                        overlaps.incrementAndGet();
+                    }
+                    assertTrue(inventory.release("FI101", seatNumber), "Held seat should be released by its holder");
+                }
+            }
+            return null;
+        });
+        
+        assertEquals(0, overlaps.get(), "A seat should never be held twice");
+        assertEquals(30, inventory.getAvailableCount("FI101"), "Every seat should be free again");
+    }
+    
+    @Test
+    public void testSeatMapVersionMovesOn() {
+        SeatMap before = inventory.getSeatMap("FI101");
+        assertSame(before, inventory.getSeatMap("FI101", before), "Unchanged seat map should be reused");
+        
+        inventory.claim("FI101", "B2");
+        SeatMap after = inventory.getSeatMap("FI101", before);
+        assertNotSame(before, after, "Claiming a seat should give a new seat map");
+        assertTrue(after.isTaken("B2"));
+        
+        inventory.release("FI101", "B2");
+        assertTrue(inventory.getSeatMap("FI101", after).isAvailable("B2"), "Released seat should show as free");
+    }
+    
+    @Test
+    public void testFlightWithoutSeatsNotKept() {
+        assertFalse(inventory.hasSeat("FI999", "A1"), "Flight has no seats yet");
+        
+        mockBookingDB.addSeats("FI999", "A1", "A2");
+        
+        assertTrue(inventory.hasSeat("FI999", "A1"), "Seats added later should be found");
+        assertTrue(inventory.claim("FI999", "A1"));
+        assertEquals(1, inventory.getAvailableCount("FI999"), "Loaded seats should be kept");
+    }
+    
+    @Test
+    public void testInvalidateReloads() {
+        inventory.claim("FI101", "A1");
+        mockBookingDB.markSeatBooked("FI101", "C3");
+        
+        // Claims in memory are dropped in favour of the database
+        inventory.invalidate("FI101");
+        assertTrue(inventory.isAvailable("FI101", "A1"), "Seat only claimed in memory should be free after reload");
+        assertFalse(inventory.isAvailable("FI101", "C3"), "Seat taken in the database should be taken after reload");
+        assertEquals(2, mockBookingDB.getGetSeatsCalls(), "Seats should be loaded again");
+    }
+}
@@ -0,0 +1,120 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeatMapTest {
+    
+    private static List<Seat> cabin(String flightNumber, int rows, String columns) {
+        List<Seat> seats = new ArrayList<>();
+        for (int row = 1; row <= rows; row++) {
+            for (char column : columns.toCharArray()) {
+                seats.add(new Seat(row + String.valueOf(column), false, flightNumber));
+            }
+        }
+        return seats;
+    }
+    
+    @Test
+    public void testLayout() {
+        SeatLayout layout = SeatLayout.of(List.of("A2", "B1", "A1", "C1", "C2"));
+        
+        assertEquals(2, layout.getRowCount(), "Rows are the seat numbers");
+        assertEquals(3, layout.getColumnCount(), "Columns are the seat letters");
+        assertEquals(5, layout.getSeatCount(), "Every seat should be counted");
+        assertEquals("B1", layout.seatNumberAt(layout.cellAt(0, 1)), "Cell should name its seat");
+        assertFalse(layout.hasSeat(layout.cellAt(1, 1)), "B2 is a gap in the grid");
+        assertNull(layout.seatNumberAt(layout.cellAt(1, 1)), "A gap has no seat number");
+        assertEquals(-1, layout.cellOf("B2"), "Missing seat should have no cell");
+        assertEquals(-1, layout.cellOf("Z9"), "Unknown seat should have no cell");
+    }
+    
+    @Test
+    public void testLayoutNumberFirst() {
+        SeatLayout layout = SeatLayout.of(List.of("10A", "9A", "10K", "9K"));
+        
+        assertEquals(9, layout.getRow(0), "Rows should be in numeric order");
+        assertEquals("K", layout.getColumn(1), "Columns should be in letter order");
+        assertEquals("10K", layout.seatNumberAt(layout.cellAt(1, 1)), "Seat number should keep its format");
+    }
+    
+    @Test
+    public void testLayoutKeepsSeatNumbers() {
+        SeatLayout layout = SeatLayout.of(List.of("A01", "B01", "A02", "12C"));
+        
+        assertEquals(3, layout.getRowCount(), "Rows 1, 2 and 12");
+        assertEquals("A01", layout.seatNumberAt(layout.cellAt(0, 0)), "Zero-padded seat number should be kept");
+        assertEquals("12C", layout.seatNumberAt(layout.cellAt(2, 2)), "Seat numbered the other way round should fit in");
+        assertEquals(layout.cellAt(1, 0), layout.cellOf("A02"));
+        assertEquals(-1, layout.cellOf("A2"), "Only the seat number as given should be found");
+    }
+    
+    @Test
+    public void testLayoutFallsBackToSingleColumn() {
+        // One seat number isn't a row and a column, another names the same place as A1
+        for (List<String> seatNumbers : List.of(List.of("A1", "B1", "Window-1"), List.of("A1", "B1", "1A"))) {
+            SeatLayout layout = SeatLayout.of(seatNumbers);
+            
+            assertEquals(1, layout.getColumnCount(), "Seats should be in one column");
+            assertEquals(3, layout.getSeatCount(), "Every seat should be kept");
+            for (int i = 0; i < seatNumbers.size(); i++) {
+                assertEquals(seatNumbers.get(i), layout.seatNumberAt(layout.cellAt(i, 0)), "Seats should be in the given order");
+                assertEquals(layout.cellAt(i, 0), layout.cellOf(seatNumbers.get(i)));
+            }
+        }
+    }
+    
+    @Test
+    public void testSeatMapOfUnusualSeatNumbers() {
+        List<Seat> seats = List.of(new Seat("A01", true, "FI900"), new Seat("A02", false, "FI900"),
+                                   new Seat("Jump seat", false, "FI900"));
+        SeatMap map = SeatMap.of("FI900", seats);
+        
+        assertTrue(map.isTaken("A01"), "A01 should be taken");
+        List<String> available = map.getAvailableSeats().stream().map(Seat::getSeatNumber).toList();
+        assertEquals(List.of("A02", "Jump seat"), available, "Free seats should be named as in the Seat table");
+    }
+    
+    @Test
+    public void testSeatMapOfSeats() {
+        List<Seat> seats = cabin("FI900", 40, "ABCDEFGHJK");
+        seats.get(0).setBooked(true);
+        seats.get(399).setBooked(true);
+        
+        SeatMap map = SeatMap.of("FI900", seats);
+        
+        assertEquals(400, map.getLayout().getSeatCount(), "Cabin should have 400 seats");
+        assertEquals(398, map.getAvailableCount(), "Two seats should be taken");
+        assertTrue(map.isTaken("1A"), "1A should be taken");
+        assertTrue(map.isTaken(39, 9), "40K should be taken");
+        assertTrue(map.isAvailable("1B"), "1B should be free");
+        assertFalse(map.isAvailable("41A"), "A seat that doesn't exist is not free");
+        assertEquals("1B", map.getAvailableSeats().get(0).getSeatNumber(), "First free seat should be 1B");
+    }
+    
+    @Test
+    public void testInventorySeatMapRefresh() {
+        MockBookingDB bookingDB = new MockBookingDB();
+        SeatInventory inventory = new SeatInventory(bookingDB);
+        
+        SeatMap first = inventory.getSeatMap("FI101");
+        assertEquals(30, first.getAvailableCount(), "All seats should be free");
+        assertSame(first, inventory.getSeatMap("FI101", first), "Unchanged seat map should be reused");
+        
+        inventory.claim("FI101", "B3");
+        SeatMap second = inventory.getSeatMap("FI101", first);
+        
+        assertNotSame(first, second, "Claiming a seat should give a new seat map");
+        assertSame(first.getLayout(), second.getLayout(), "Layout should be shared");
+        assertTrue(second.getVersion() > first.getVersion(), "Version should go up");
+        assertTrue(second.isTaken("B3"), "Claimed seat should be taken");
+        assertFalse(first.isTaken("B3"), "Earlier seat map should not change");
+        
+        inventory.invalidate("FI101");
+        assertNotSame(second, inventory.getSeatMap("FI101", second), "Reloaded flight should give a new seat map");
+    }
+}
@@ -0,0 +1,171 @@
+package hi.verkefni.vinnsla;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCacheTest {
+    @TempDir
+    Path tempDir;
+    
+    private String url;
+    private Connection connection;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        url = "jdbc:sqlite:" + tempDir.resolve("test.db");
+        connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE Item (name TEXT)");
+        }
+    }
+    
+    @AfterEach
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+    
+    private static PreparedStatement underlying(PreparedStatement statement) throws Exception {
+        return statement.unwrap(PreparedStatement.class);
+    }
+    
+    @Test
+    public void testStatementReused() throws Exception {
+        StatementCache cache = new StatementCache(connection, 4);
+        PreparedStatement first;
+        try (PreparedStatement pstmt = cache.prepare("SELECT name FROM Item")) {
+            first = underlying(pstmt);
+        }
+        try (PreparedStatement pstmt = cache.prepare("SELECT name FROM Item")) {
+            assertSame(first, underlying(pstmt), "Same SQL should get the same statement back");
+        }
+        
+        assertEquals(1, cache.getMisses(), "Statement should be prepared once");
+        assertEquals(1, cache.getHits(), "Second prepare should come from the cache");
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    public void testStatementInUseNotShared() throws Exception {
+        StatementCache cache = new StatementCache(connection, 4);
+        try (PreparedStatement outer = cache.prepare("SELECT name FROM Item");
+             PreparedStatement inner = cache.prepare("SELECT name FROM Item")) {
+            assertNotSame(underlying(outer), underlying(inner), "Open statement should not be handed out again");
+        }
+        assertEquals(2, cache.getMisses(), "Both statements should have been prepared");
+        assertEquals(1, cache.size(), "Only the first statement should be cached");
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        StatementCache cache = new StatementCache(connection, 2);
+        PreparedStatement first = underlying(cache.prepare("SELECT 1"));
+        cache.prepare("SELECT 2").close();
+        cache.prepare("SELECT 1").close();
+        // SELECT 2 is now the least recently used
+        cache.prepare("SELECT 3").close();
+        
+        assertEquals(2, cache.size(), "Cache should stay at its size");
+        assertFalse(first.isClosed(), "Recently used statement should be kept");
+        long misses = cache.getMisses();
+        cache.prepare("SELECT 2").close();
+        assertEquals(misses + 1, cache.getMisses(), "Evicted statement should be prepared again");
+    }
+    
+    @Test
+    public void testStatementInUseNotEvicted() throws Exception {
+        StatementCache cache = new StatementCache(connection, 2);
+        PreparedStatement held = cache.prepare("SELECT 1");
+        cache.prepare("SELECT 2").close();
+        cache.prepare("SELECT 3").close();
+        
+        // SELECT 1 is the least recently used but still open, so SELECT 2 goes instead
+        assertFalse(underlying(held).isClosed(), "Statement in use should not be closed");
+        try (ResultSet rs = held.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1), "Statement in use should still work");
+        }
+        held.close();
+        assertEquals(2, cache.size(), "Cache should stay at its size");
+        
+        long hits = cache.getHits();
+        cache.prepare("SELECT 1").close();
+        cache.prepare("SELECT 3").close();
+        assertEquals(hits + 2, cache.getHits(), "Statements that weren't evicted should still be cached");
+    }
+    
+    @Test
+    public void testCloseClearsParametersAndBatch() throws Exception {
+        StatementCache cache = new StatementCache(connection, 4);
+        try (PreparedStatement pstmt = cache.prepare("INSERT INTO Item (name) VALUES (?)")) {
+            pstmt.setString(1, "left behind");
+            pstmt.addBatch();
+            // Closed without executing the batch
+        }
+        try (PreparedStatement pstmt = cache.prepare("INSERT INTO Item (name) VALUES (?)")) {
+            assertEquals(0, pstmt.executeBatch().length, "Batch of the last user should be cleared");
+        }
+        
+        try (PreparedStatement pstmt = cache.prepare("SELECT ?")) {
+            pstmt.setString(1, "left behind");
+        }
+        try (PreparedStatement pstmt = cache.prepare("SELECT ?");
+             ResultSet rs = pstmt.executeQuery()) {
+            assertTrue(rs.next());
+            assertNull(rs.getString(1), "Parameters of the last user should be cleared");
+        }
+    }
+    
+    @Test
+    public void testClosedHandleCantBeUsed() throws Exception {
+        StatementCache cache = new StatementCache(connection, 4);
+        PreparedStatement pstmt = cache.prepare("SELECT 1");
+        pstmt.close();
+        
+        assertTrue(pstmt.isClosed(), "Handle should read as closed");
+        assertThrows(SQLException.class, pstmt::executeQuery, "Closed handle should not be usable");
+        assertFalse(underlying(cache.prepare("SELECT 1")).isClosed(), "Cached statement should stay open");
+    }
+    
+    @Test
+    public void testCountersThroughProvider() throws Exception {
+        ConnectionProvider provider = new ConnectionProvider(url);
+        try {
+            for (int i = 0; i < 3; i++) {
+                try (Connection conn = provider.getReadConnection();
+                     PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM Item")) {
+                    pstmt.executeQuery().close();
+                }
+            }
+            assertEquals(1, provider.getStatementCacheMisses(), "Query should be prepared once");
+            assertEquals(2, provider.getStatementCacheHits(), "Later queries should come from the cache");
+        } finally {
+            provider.shutdown();
+        }
+        
+        ConnectionProvider uncached = new ConnectionProvider(url, 1, 0, 0);
+        try {
+            for (int i = 0; i < 2; i++) {
+                try (Connection conn = uncached.getReadConnection();
+                     PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM Item")) {
+                    pstmt.executeQuery().close();
+                }
+            }
+            assertEquals(2, uncached.getStatementCacheMisses(), "Without a cache every query should be prepared");
+            assertEquals(0, uncached.getStatementCacheHits());
+        } finally {
+            uncached.shutdown();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package hi.verkefni.vinnsla;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Migrated test database with customer C1 and flight FI101 KEF to JFK
+ */
+public class TestDatabase {
+    private TestDatabase() {
+    }
+    
+    /**
+     * Creates the database in the directory with the given seats on FI101
+     * @param directory where test.db is created
+     * @param seatNumbers seats of FI101, all free
+     * @return JDBC URL of the database
+     */
+    public static String create(Path directory, List<String> seatNumbers) throws SQLException, IOException {
+        String url = "jdbc:sqlite:" + directory.resolve("test.db");
+        try (Connection conn = DriverManager.getConnection(url)) {
+            new MigrationRunner(conn).migrate();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO Customer (customerId, name, email, phoneNumber) " +
+                                   "VALUES ('C1', 'Test User', 'test@example.com', '5551234')");
+                stmt.executeUpdate("INSERT INTO Flight (flightNumber, origin, destination, departureTime, arrivalTime) " +
+                                   "VALUES ('FI101', 'KEF', 'JFK', 1604217600, 1604239200)");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO Seat (seatNumber, seatStatus, flightNumber) VALUES (?, 0, 'FI101')")) {
+                for (String seatNumber : seatNumbers) {
+                    pstmt.setString(1, seatNumber);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+        return url;
+    }
+}